@@ -0,0 +1,180 @@
+package org.example.bench;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.bulk.BulkLoader;
+import org.example.index.IndexManager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A seeded copy of the enrollment schema in its own database, shared by the benchmarks that need a
+ * server. The URI comes from -Dbench.mongodb.uri (default mongodb://localhost:27017) and the data
+ * lives in the "studentManagementBench" database, which is dropped and re-created on every seed.
+ * Each student gets the same number of referenced and embedded enrollments, so both models
+ * are measured against identical data.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    public static final String DATABASE_NAME = "studentManagementBench";
+
+    private static final String[] GRADES = {"A", "A-", "B+", "B", "B-", "C+", "C", "D", "F"};
+
+    private final MongoClient client;
+    private final MongoDatabase database;
+    private final List<ObjectId> studentIds = new ArrayList<>();
+    private final List<String> studentKeys = new ArrayList<>();
+    private final List<String> courseKeys = new ArrayList<>();
+
+    public BenchmarkDatabase() {
+        this.client = MongoClients.create(System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017"));
+        this.database = client.getDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * Drops the benchmark database and loads students, courses and enrollments.
+     *
+     * @param studentCount          number of students
+     * @param courseCount           number of courses
+     * @param enrollmentsPerStudent enrollments per student and per model
+     */
+    public void seed(int studentCount, int courseCount, int enrollmentsPerStudent) {
+        database.drop();
+        studentIds.clear();
+        studentKeys.clear();
+        courseKeys.clear();
+        Random random = new Random(42);
+
+        List<Document> students = new ArrayList<>(studentCount);
+        for (int i = 0; i < studentCount; i++) {
+            String key = "S" + (100000 + i);
+            Document student = new Document("_id", new ObjectId())
+                    .append("name", "Student " + i)
+                    .append("studentId", key)
+                    .append("email", "student" + i + "@example.com")
+                    .append("age", 18 + random.nextInt(8));
+            students.add(student);
+            studentIds.add(student.getObjectId("_id"));
+            studentKeys.add(key);
+        }
+        List<Document> courses = new ArrayList<>(courseCount);
+        for (int i = 0; i < courseCount; i++) {
+            String key = "C" + (1000 + i);
+            courses.add(new Document("_id", new ObjectId())
+                    .append("name", "Course " + i)
+                    .append("courseId", key)
+                    .append("credits", 1 + random.nextInt(5))
+                    .append("instructor", "Prof. " + (i % 50)));
+            courseKeys.add(key);
+        }
+        new BulkLoader(students()).load(students.iterator());
+        new BulkLoader(courses()).load(courses.iterator());
+        new BulkLoader(enrollments()).load(new EnrollmentGenerator(students, courses, enrollmentsPerStudent, random));
+        new IndexManager(students(), courses(), enrollments()).ensureIndexes();
+    }
+
+    public MongoDatabase database() {
+        return database;
+    }
+
+    public MongoCollection<Document> students() {
+        return database.getCollection("students");
+    }
+
+    public MongoCollection<Document> courses() {
+        return database.getCollection("courses");
+    }
+
+    public MongoCollection<Document> enrollments() {
+        return database.getCollection("enrollments");
+    }
+
+    public ObjectId studentId(int index) {
+        return studentIds.get(index);
+    }
+
+    public String studentKey(int index) {
+        return studentKeys.get(index);
+    }
+
+    public String courseKey(int index) {
+        return courseKeys.get(index);
+    }
+
+    public int studentCount() {
+        return studentIds.size();
+    }
+
+    public int courseCount() {
+        return courseKeys.size();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * Produces a referenced and an embedded enrollment for each (student, course) pair without
+     * holding all of them in memory.
+     */
+    private static class EnrollmentGenerator implements Iterator<Document> {
+        private final List<Document> students;
+        private final List<Document> courses;
+        private final int perStudent;
+        private final Random random;
+        private final Date date = new Date();
+        private int student;
+        private int enrollment;
+        private Document pendingEmbedded;
+
+        EnrollmentGenerator(List<Document> students, List<Document> courses, int perStudent, Random random) {
+            this.students = students;
+            this.courses = courses;
+            this.perStudent = perStudent;
+            this.random = random;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pendingEmbedded != null || (student < students.size() && perStudent > 0);
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (pendingEmbedded != null) {
+                Document embedded = pendingEmbedded;
+                pendingEmbedded = null;
+                return embedded;
+            }
+            Document studentDocument = students.get(student);
+            Document courseDocument = courses.get(random.nextInt(courses.size()));
+            String grade = GRADES[random.nextInt(GRADES.length)];
+            if (++enrollment == perStudent) {
+                enrollment = 0;
+                student++;
+            }
+            pendingEmbedded = new Document("enrollmentType", "embedded")
+                    .append("date", date)
+                    .append("student", studentDocument)
+                    .append("course", courseDocument)
+                    .append("grade", grade);
+            return new Document("enrollmentType", "referenced")
+                    .append("date", date)
+                    .append("studentId", studentDocument.getObjectId("_id"))
+                    .append("courseId", courseDocument.getObjectId("_id"))
+                    .append("grade", grade);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.bench;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.example.bulk.BulkLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk loader throughput in documents per second for different batch sizes and numbers
+ * of batches in flight. The target collection is dropped before every iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+    private static final int DOCUMENTS = 20_000;
+
+    @Param({"500", "1000", "5000"})
+    public int batchSize;
+
+    @Param({"1", "4"})
+    public int inFlight;
+
+    private BenchmarkDatabase db;
+    private MongoCollection<Document> collection;
+    private BulkLoader loader;
+    private final List<Document> students = new ArrayList<>(DOCUMENTS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        collection = db.database().getCollection("bulk_insert");
+        loader = new BulkLoader(collection, batchSize, BulkLoader.DEFAULT_BATCH_BYTES, inFlight);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCollection() {
+        collection.drop();
+    }
+
+    // Fresh documents each time, since the driver adds an _id to the ones it inserts
+    @Setup(Level.Invocation)
+    public void createDocuments() {
+        students.clear();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            students.add(new Document("name", "Student " + i)
+                    .append("studentId", "B" + i)
+                    .append("email", "student" + i + "@example.com")
+                    .append("age", 18 + i % 8));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        collection.drop();
+        db.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public long insertStudents() {
+        return loader.load(students.iterator()).getInserted();
+    }
+}
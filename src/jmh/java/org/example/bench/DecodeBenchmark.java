@@ -0,0 +1,107 @@
+package org.example.bench;
+
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.example.codec.ModelCodecs;
+import org.example.model.Enrollment;
+import org.example.model.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of the generic Document path against the typed record codecs, for the
+ * documents the application reads most. Run with "-prof gc" to compare allocation per document.
+ * Each benchmark decodes the BSON and reads the fields the application actually prints.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+    private static final DecoderContext CONTEXT = DecoderContext.builder().build();
+
+    private final Codec<Document> documentCodec = new DocumentCodec();
+    private byte[] studentBytes;
+    private byte[] embeddedEnrollmentBytes;
+
+    @Setup
+    public void setUp() {
+        Document student = new Document("_id", new ObjectId())
+                .append("name", "Emily Johnson")
+                .append("studentId", "S1002")
+                .append("email", "emily.johnson@example.com")
+                .append("age", 21);
+        Document course = new Document("_id", new ObjectId())
+                .append("name", "Database Management Systems")
+                .append("courseId", "CS202")
+                .append("credits", 4)
+                .append("instructor", "Prof. Martinez");
+        Document embeddedEnrollment = new Document("_id", new ObjectId())
+                .append("enrollmentType", "embedded")
+                .append("date", new Date())
+                .append("student", student)
+                .append("course", course)
+                .append("grade", "B+");
+
+        studentBytes = toBytes(student);
+        embeddedEnrollmentBytes = toBytes(embeddedEnrollment);
+    }
+
+    private byte[] toBytes(Document document) {
+        ByteBuffer buffer = new RawBsonDocument(document, documentCodec).getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static BsonBinaryReader reader(byte[] bytes) {
+        return new BsonBinaryReader(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public int studentAsDocument() {
+        Document student = documentCodec.decode(reader(studentBytes), CONTEXT);
+        return student.getString("name").length() + student.getInteger("age");
+    }
+
+    @Benchmark
+    public int studentAsRecord() {
+        Student student = ModelCodecs.STUDENT.decode(reader(studentBytes), CONTEXT);
+        return student.name().length() + student.age();
+    }
+
+    @Benchmark
+    public int embeddedEnrollmentAsDocument() {
+        Document enrollment = documentCodec.decode(reader(embeddedEnrollmentBytes), CONTEXT);
+        Document student = (Document) enrollment.get("student");
+        Document course = (Document) enrollment.get("course");
+        return student.getString("name").length() + course.getString("name").length()
+                + enrollment.getString("grade").length();
+    }
+
+    @Benchmark
+    public int embeddedEnrollmentAsRecord() {
+        Enrollment enrollment = ModelCodecs.ENROLLMENT.decode(reader(embeddedEnrollmentBytes), CONTEXT);
+        return enrollment.student().name().length() + enrollment.course().name().length()
+                + enrollment.grade().length();
+    }
+}
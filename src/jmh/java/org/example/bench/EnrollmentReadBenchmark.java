@@ -0,0 +1,110 @@
+package org.example.bench;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.query.EnrollmentQueries;
+import org.example.query.JoinBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of the two enrollment models against a local mongod: a student's enrollments
+ * resolved client-side from references versus read from embedded copies, and a course roster
+ * built with the client-side join versus the $lookup aggregation.
+ * SampleTime mode reports the p99 latency next to the throughput.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnrollmentReadBenchmark {
+
+    @Param("10000")
+    public int students;
+
+    @Param("200")
+    public int courses;
+
+    @Param("5")
+    public int enrollmentsPerStudent;
+
+    private BenchmarkDatabase db;
+    private JoinBenchmark joins;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        db.seed(students, courses, enrollmentsPerStudent);
+        EnrollmentQueries queries = new EnrollmentQueries(db.students(), db.courses(), db.enrollments());
+        joins = new JoinBenchmark(db.students(), db.courses(), db.enrollments(), queries);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * A student's referenced enrollments, with the student and each course fetched by _id.
+     */
+    @Benchmark
+    public int referencedEnrollmentsOfStudent() {
+        ObjectId studentId = db.studentId(ThreadLocalRandom.current().nextInt(db.studentCount()));
+        Document student = db.students().find(Filters.eq("_id", studentId)).first();
+        int length = student == null ? 0 : student.getString("name").length();
+        try (MongoCursor<Document> cursor = db.enrollments().find(Filters.and(
+                Filters.eq("enrollmentType", "referenced"), Filters.eq("studentId", studentId))).iterator()) {
+            while (cursor.hasNext()) {
+                Document enrollment = cursor.next();
+                Document course = db.courses().find(Filters.eq("_id", enrollment.getObjectId("courseId"))).first();
+                length += course == null ? 0 : course.getString("name").length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The same data read from embedded enrollments in one query.
+     */
+    @Benchmark
+    public int embeddedEnrollmentsOfStudent() {
+        ObjectId studentId = db.studentId(ThreadLocalRandom.current().nextInt(db.studentCount()));
+        int length = 0;
+        try (MongoCursor<Document> cursor = db.enrollments().find(Filters.eq("student._id", studentId)).iterator()) {
+            while (cursor.hasNext()) {
+                Document enrollment = cursor.next();
+                length += ((Document) enrollment.get("student")).getString("name").length();
+                length += ((Document) enrollment.get("course")).getString("name").length();
+            }
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long rosterClientSideJoin() {
+        return joins.clientSideJoin(db.courseKey(ThreadLocalRandom.current().nextInt(db.courseCount())));
+    }
+
+    @Benchmark
+    public long rosterLookupJoin() {
+        return joins.lookupJoin(db.courseKey(ThreadLocalRandom.current().nextInt(db.courseCount())));
+    }
+}
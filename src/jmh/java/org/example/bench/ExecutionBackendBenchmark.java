@@ -0,0 +1,97 @@
+package org.example.bench;
+
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.example.cache.DocumentCache;
+import org.example.config.OperationSettings;
+import org.example.exec.OperationType;
+import org.example.exec.RequestExecutor;
+import org.example.propagation.PropagationEngine;
+import org.example.service.EnrollmentService;
+import org.example.service.Publishers;
+import org.example.service.ReactiveEnrollmentService;
+import org.example.service.SyncEnrollmentService;
+import org.example.stats.EnrollmentStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sync and async enrollment services under the same load: each invocation starts
+ * {@value #REQUESTS} roster reads at once and waits for all of them. The sync backend
+ * parks a virtual thread per request in flight; the async backend needs none.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionBackendBenchmark {
+    private static final int REQUESTS = 1000;
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    @Param("100")
+    public int maxConcurrentRosters;
+
+    private BenchmarkDatabase db;
+    private EnrollmentService service;
+    private PropagationEngine propagationEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        db.seed(10_000, 200, 5);
+        propagationEngine = new PropagationEngine(db.enrollments());
+        DocumentCache studentCache = new DocumentCache(db.students(), "studentId",
+                DocumentCache.DEFAULT_MAX_BYTES, DocumentCache.DEFAULT_TTL);
+        EnrollmentStats enrollmentStats = new EnrollmentStats(db.database(), db.enrollments(), db.courses(),
+                new DocumentCache(db.courses(), "courseId", DocumentCache.DEFAULT_MAX_BYTES, DocumentCache.DEFAULT_TTL));
+        if ("sync".equals(mode)) {
+            service = new SyncEnrollmentService(db.students(), db.courses(), db.enrollments(),
+                    new RequestExecutor(Map.of(OperationType.ROSTER, maxConcurrentRosters)), new OperationSettings(),
+                    propagationEngine, studentCache, enrollmentStats);
+        } else {
+            service = new ReactiveEnrollmentService(
+                    MongoClients.create(System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017")),
+                    BenchmarkDatabase.DATABASE_NAME, "students", "courses", "enrollments", new OperationSettings(), 500,
+                    propagationEngine, studentCache, enrollmentStats);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        propagationEngine.close();
+        db.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public long concurrentRosters() {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            String courseId = db.courseKey(ThreadLocalRandom.current().nextInt(db.courseCount()));
+            requests[i] = Publishers.forEach(service.rosterForCourse(courseId), row -> { }, 256);
+        }
+        CompletableFuture.allOf(requests).join();
+        return requests.length;
+    }
+}
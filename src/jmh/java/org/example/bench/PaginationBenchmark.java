@@ -0,0 +1,81 @@
+package org.example.bench;
+
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.example.query.KeysetPager;
+import org.example.query.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of fetching page N of the student listing (ordered by studentId) with skip/limit
+ * versus a keyset continuation token. Skip walks every earlier index entry, so its cost grows
+ * with the page number; the keyset page starts with an index seek and stays flat.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+
+    @Param("1000000")
+    public int students;
+
+    @Param("50")
+    public int pageSize;
+
+    @Param({"1", "100", "1000", "10000"})
+    public int page;
+
+    private BenchmarkDatabase db;
+    private KeysetPager pager;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        // Only the students collection is paged, so no enrollments are seeded
+        db.seed(students, 10, 0);
+        pager = KeysetPager.students(db.students());
+        // The token that a client would hold after reading the previous pages
+        int offset = (page - 1) * pageSize;
+        token = offset == 0 ? null : pager.tokenAfter(db.students().find()
+                .sort(Sorts.ascending("studentId")).skip(offset - 1).first());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Document> skipLimit() {
+        return db.students().find()
+                .sort(Sorts.ascending("studentId"))
+                .skip((page - 1) * pageSize)
+                .limit(pageSize)
+                .into(new ArrayList<>(pageSize));
+    }
+
+    @Benchmark
+    public Page keyset() {
+        return pager.page(pageSize, token);
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.bench;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.propagation.PropagationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a student name change in each model: the referenced model only updates the student,
+ * the embedded model also rewrites every embedded copy through the propagation engine.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PropagationBenchmark {
+
+    @Param("10000")
+    public int students;
+
+    @Param("5")
+    public int enrollmentsPerStudent;
+
+    private BenchmarkDatabase db;
+    private PropagationEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        db.seed(students, 200, enrollmentsPerStudent);
+        engine = new PropagationEngine(db.enrollments());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+        db.close();
+    }
+
+    @Benchmark
+    public long renameReferenced() {
+        ObjectId studentId = db.studentId(ThreadLocalRandom.current().nextInt(db.studentCount()));
+        return db.students().updateOne(Filters.eq("_id", studentId),
+                Updates.set("name", "Renamed " + System.nanoTime())).getModifiedCount();
+    }
+
+    @Benchmark
+    public long renameAndPropagate() {
+        ObjectId studentId = db.studentId(ThreadLocalRandom.current().nextInt(db.studentCount()));
+        String name = "Renamed " + System.nanoTime();
+        long modified = db.students().updateOne(Filters.eq("_id", studentId), Updates.set("name", name))
+                .getModifiedCount();
+        engine.submitStudentChange(studentId, new Document("name", name)).join();
+        return modified;
+    }
+}
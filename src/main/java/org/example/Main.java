@@ -1,42 +1,146 @@
 package org.example;
 
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.client.*;
 import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.bson.json.JsonWriterSettings;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.example.bulk.BulkLoadReport;
+import org.example.cache.DocumentCache;
+import org.example.changestream.ChangeListeners;
+import org.example.changestream.ChangeStreamWatcher;
+import org.example.changestream.ResumeTokenStore;
+import org.example.codec.ModelCodecs;
+import org.example.config.ClientSettingsFactory;
+import org.example.config.OperationSettings;
+import org.example.bulk.BulkLoader;
+import org.example.bulk.RecordReader;
+import org.example.enrollment.EnrollmentEngine;
+import org.example.enrollment.EnrollmentRequest;
+import org.example.exec.OperationType;
+import org.example.export.DocumentExporter;
+import org.example.graph.CoEnrollment;
+import org.example.graph.EnrollmentGraph;
+import org.example.graph.EnrollmentGraphLoader;
+import org.example.index.IndexManager;
+import org.example.index.QueryPlanReport;
+import org.example.loadtest.DatasetSeeder;
+import org.example.loadtest.LoadGenerator;
+import org.example.loadtest.LoadTestSettings;
+import org.example.migration.EnrollmentMigration;
+import org.example.migration.MigrationReport;
+import org.example.model.Course;
+import org.example.metrics.DatabaseMetrics;
+import org.example.model.Student;
+import org.example.propagation.PropagationEngine;
+import org.example.service.EnrollmentService;
+import org.example.service.EnrollmentServices;
+import org.example.service.Publishers;
+import org.example.snapshot.Snapshot;
+import org.example.snapshot.SnapshotBuilder;
+import org.example.snapshot.SnapshotCollection;
+import org.example.stats.CourseStats;
+import org.example.stats.EnrollmentStats;
+import org.example.stats.StudentStats;
+import org.example.storage.StorageAnalytics;
+import org.example.util.OutputLogger;
+import org.example.writebehind.WriteBehindBenchmark;
+import org.example.writebehind.WriteBehindBuffer;
+import org.example.writebehind.WriteBehindSettings;
+import org.example.query.EnrollmentQueries;
+import org.example.query.JoinBenchmark;
+import org.example.query.KeysetPager;
+import org.example.query.Page;
+import org.example.query.ProjectedReads;
+import org.example.query.ReadShape;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 public class Main {
     private static MongoClient mongoClient;
+    private static DatabaseMetrics metrics;
+    private static OperationSettings operationSettings;
     private static MongoDatabase database;
     private static MongoCollection<Document> studentsCollection;
     private static MongoCollection<Document> coursesCollection;
     private static MongoCollection<Document> enrollmentsCollection;
+    private static EnrollmentQueries enrollmentQueries;
+    private static IndexManager indexManager;
+    private static PropagationEngine propagationEngine;
+    private static DocumentCache studentCache;
+    private static DocumentCache courseCache;
+    private static ChangeStreamWatcher changeStreamWatcher;
+    private static EnrollmentStats enrollmentStats;
+    private static WriteBehindBuffer writeBehind;
+    private static ProjectedReads projectedReads;
+    private static EnrollmentService enrollmentService;
     private static Properties properties;
     // Create a pretty JSON writer setting
     private static final JsonWriterSettings prettyPrint = JsonWriterSettings.builder().indent(true).build();
 
     public static void main(String[] args) {
+        Options options = buildOptions();
+        CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("Main", options);
+            return;
+        }
+        if (commandLine.hasOption("help")) {
+            new HelpFormatter().printHelp("Main", options);
+            return;
+        }
+
         try {
 
             properties = loadProperties();
+            OutputLogger.configure(properties);
 
+            if (commandLine.hasOption("snapshot-get")) {
+                // Served from the snapshot files alone, without connecting
+                runSnapshotGet(commandLine);
+                return;
+            }
 
             String connectionString = properties.getProperty("mongodb.connection.string");
             String databaseName = properties.getProperty("mongodb.database.name");
 
             System.out.println("Connecting to MongoDB at: " + connectionString);
-            mongoClient = MongoClients.create(connectionString);
+            metrics = DatabaseMetrics.fromProperties(properties);
+            metrics.start();
+            mongoClient = MongoClients.create(ClientSettingsFactory.build(properties,
+                    metrics.getPoolMetrics(), metrics.getCommandMetrics()));
+            operationSettings = OperationSettings.fromProperties(properties);
+            projectedReads = new ProjectedReads(metrics.getProjectionMetrics(), Double.parseDouble(properties.getProperty(
+                    "mongodb.metrics.projectionSampleRate", String.valueOf(ProjectedReads.DEFAULT_SAMPLE_RATE)).trim()));
 
 
             System.out.println("Creating/accessing database: " + databaseName);
@@ -48,9 +152,10 @@ public class Main {
             String enrollmentsCollectionName = properties.getProperty("mongodb.collection.enrollments");
 
 
-            boolean studentsExists = collectionExists(database, studentsCollectionName);
-            boolean coursesExists = collectionExists(database, coursesCollectionName);
-            boolean enrollmentsExists = collectionExists(database, enrollmentsCollectionName);
+            Set<String> existingCollections = database.listCollectionNames().into(new HashSet<>());
+            boolean studentsExists = collectionExists(existingCollections, studentsCollectionName);
+            boolean coursesExists = collectionExists(existingCollections, coursesCollectionName);
+            boolean enrollmentsExists = collectionExists(existingCollections, enrollmentsCollectionName);
 
             if (!studentsExists) {
                 System.out.println("Creating students collection...");
@@ -72,8 +177,42 @@ public class Main {
             coursesCollection = database.getCollection(coursesCollectionName);
             enrollmentsCollection = database.getCollection(enrollmentsCollectionName);
 
+            enrollmentQueries = new EnrollmentQueries(studentsCollection, coursesCollection, enrollmentsCollection,
+                    intOption(commandLine, "query-batch-size", EnrollmentQueries.DEFAULT_BATCH_SIZE));
+
             System.out.println("Collections initialized successfully");
 
+            indexManager = new IndexManager(studentsCollection, coursesCollection, enrollmentsCollection);
+            indexManager.ensureIndexes();
+
+            propagationEngine = new PropagationEngine(enrollmentsCollection);
+
+            long cacheBytes = Long.parseLong(properties.getProperty("mongodb.cache.maxBytes",
+                    String.valueOf(DocumentCache.DEFAULT_MAX_BYTES)));
+            java.time.Duration cacheTtl = java.time.Duration.ofSeconds(Long.parseLong(properties.getProperty(
+                    "mongodb.cache.ttlSeconds", String.valueOf(DocumentCache.DEFAULT_TTL.toSeconds()))));
+            studentCache = new DocumentCache(studentsCollection, "studentId", cacheBytes, cacheTtl);
+            courseCache = new DocumentCache(coursesCollection, "courseId", cacheBytes, cacheTtl);
+            enrollmentStats = new EnrollmentStats(database, enrollmentsCollection, coursesCollection, courseCache);
+
+            if (Boolean.parseBoolean(properties.getProperty("mongodb.writeBehind.enabled", "false"))) {
+                // Enrollments count in the statistics once a flush has inserted them
+                writeBehind = new WriteBehindBuffer(database, WriteBehindSettings.fromProperties(properties),
+                        (collection, inserted) -> {
+                            if (collection.equals(enrollmentsCollectionName)) {
+                                enrollmentStats.recordInserted(inserted);
+                            }
+                        });
+            }
+
+            if (Boolean.parseBoolean(properties.getProperty("mongodb.changestream.enabled", "false"))) {
+                startChangeStreamWatcher(studentsCollectionName, coursesCollectionName, enrollmentsCollectionName);
+            }
+
+            if (runCommandLineMode(commandLine)) {
+                return;
+            }
+
 
             displayMenu();
 
@@ -100,9 +239,15 @@ public class Main {
                     case 1:
                         // Clear previous data (for testing purposes)
                         System.out.println("Clearing previous data from collections...");
+                        if (writeBehind != null) {
+                            writeBehind.flush();
+                        }
                         studentsCollection.deleteMany(new Document());
                         coursesCollection.deleteMany(new Document());
                         enrollmentsCollection.deleteMany(new Document());
+                        enrollmentStats.clear();
+                        studentCache.invalidateAll();
+                        courseCache.invalidateAll();
                         System.out.println("All collections cleared.");
                         break;
                     case 2:
@@ -122,24 +267,31 @@ public class Main {
                         updateStudentName();
                         break;
                     case 6:
-                        // Create indexes for querying students
-                        //createIndexes();
+                        // Create indexes and check which queries use them
+                        createIndexes();
                         break;
                     case 7:
                         // Run all operations in sequence
                         System.out.println("Running all operations in sequence...");
 
                         // Clear previous data
+                        if (writeBehind != null) {
+                            writeBehind.flush();
+                        }
                         studentsCollection.deleteMany(new Document());
                         coursesCollection.deleteMany(new Document());
                         enrollmentsCollection.deleteMany(new Document());
+                        enrollmentStats.clear();
+                        studentCache.invalidateAll();
+                        courseCache.invalidateAll();
 
                         // Run all operations
                         insertSampleData();
                         createEnrollments();
                         queryEnrollments();
                         updateStudentName();
-                        //createIndexes();
+                        createIndexes();
+                        metrics.print();
 
                         System.out.println("\nAll operations completed successfully!");
                         break;
@@ -160,12 +312,530 @@ public class Main {
             System.err.println("An error occurred: " + e.getMessage());
             e.printStackTrace();
         } finally {
+            if (changeStreamWatcher != null) {
+                changeStreamWatcher.close();
+            }
+            // Before the propagation engine, which the service submits renames to
+            if (enrollmentService != null) {
+                enrollmentService.close();
+            }
+            if (propagationEngine != null) {
+                propagationEngine.close();
+            }
+            if (writeBehind != null) {
+                writeBehind.close();
+            }
             if (mongoClient != null) {
                 mongoClient.close();
             }
+            if (metrics != null) {
+                metrics.close();
+            }
+            OutputLogger.shutdown();
+        }
+    }
+
+    private static Options buildOptions() {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("import-students").hasArg().argName("file")
+                .desc("Bulk import students from a CSV or NDJSON file").build());
+        options.addOption(Option.builder().longOpt("import-courses").hasArg().argName("file")
+                .desc("Bulk import courses from a CSV or NDJSON file").build());
+        options.addOption(Option.builder().longOpt("import-enrollments").hasArg().argName("file")
+                .desc("Bulk create referenced enrollments from studentId,courseId,grade records").build());
+        options.addOption(Option.builder().longOpt("preload-keys")
+                .desc("Load all studentId/courseId mappings before enrolling instead of per chunk").build());
+        options.addOption(Option.builder().longOpt("batch-size").hasArg().argName("docs")
+                .desc("Maximum documents per batch (default " + BulkLoader.DEFAULT_BATCH_SIZE + ")").build());
+        options.addOption(Option.builder().longOpt("batch-bytes").hasArg().argName("bytes")
+                .desc("Maximum BSON bytes per batch (default " + BulkLoader.DEFAULT_BATCH_BYTES + ")").build());
+        options.addOption(Option.builder().longOpt("in-flight").hasArg().argName("batches")
+                .desc("Batches written concurrently (default " + BulkLoader.DEFAULT_IN_FLIGHT + ")").build());
+        options.addOption(Option.builder().longOpt("roster").hasArg().argName("courseId")
+                .desc("Print the roster of a course").build());
+        options.addOption(Option.builder().longOpt("transcript").hasArg().argName("studentId")
+                .desc("Print the transcript of a student").build());
+        options.addOption(Option.builder().longOpt("query-batch-size").hasArg().argName("docs")
+                .desc("Cursor batch size for roster and transcript queries (default "
+                        + EnrollmentQueries.DEFAULT_BATCH_SIZE + ", " + DocumentExporter.DEFAULT_BATCH_SIZE
+                        + " for exports)").build());
+        options.addOption(Option.builder().longOpt("export-collection").hasArg().argName("name")
+                .desc("Export a whole collection: students, courses or enrollments").build());
+        options.addOption(Option.builder().longOpt("export-roster").hasArg().argName("courseId")
+                .desc("Export the roster of a course").build());
+        options.addOption(Option.builder().longOpt("export-transcript").hasArg().argName("studentId")
+                .desc("Export the transcript of a student").build());
+        options.addOption(Option.builder().longOpt("export-to").hasArg().argName("file")
+                .desc("Export target; .csv writes CSV, anything else NDJSON").build());
+        options.addOption(Option.builder().longOpt("fields").hasArg().argName("a,b.c")
+                .desc("Fields to export or list, also the CSV columns (default: whole rows)").build());
+        options.addOption(Option.builder().longOpt("partitions").hasArg().argName("n")
+                .desc("Export _id ranges in parallel, one file each (default 1)").build());
+        options.addOption(Option.builder().longOpt("list").hasArg().argName("name")
+                .desc("List one page of students, courses or enrollments").build());
+        options.addOption(Option.builder().longOpt("page-size").hasArg().argName("n")
+                .desc("Rows per page for --list (default " + KeysetPager.DEFAULT_PAGE_SIZE + ")").build());
+        options.addOption(Option.builder().longOpt("page-token").hasArg().argName("token")
+                .desc("Continue --list after the page that printed this token").build());
+        options.addOption(Option.builder().longOpt("rebuild-stats")
+                .desc("Recompute the per-course and per-student statistics from all enrollments").build());
+        options.addOption(Option.builder().longOpt("course-stats").hasArg().argName("courseId")
+                .desc("Print the enrollment count and grade distribution of a course").build());
+        options.addOption(Option.builder().longOpt("student-stats").hasArg().argName("studentId")
+                .desc("Print the enrollments, credits and GPA of a student").build());
+        options.addOption(Option.builder().longOpt("migrate-enrollments").hasArg().argName("embedded|referenced")
+                .desc("Convert all enrollments to one model, resuming an interrupted run").build());
+        options.addOption(Option.builder().longOpt("parallelism").hasArg().argName("threads")
+                .desc("Threads for --migrate-enrollments (default: available processors),"
+                        + " --benchmark-write-behind (default 64) and --load-test (mongodb.loadtest.workers)").build());
+        options.addOption(Option.builder().longOpt("checkpoint-file").hasArg().argName("file")
+                .desc("Progress file for --migrate-enrollments (default "
+                        + EnrollmentMigration.DEFAULT_CHECKPOINT_FILE + ")").build());
+        options.addOption(Option.builder().longOpt("benchmark-write-behind").hasArg().argName("writes")
+                .desc("Compare direct writes with the write-behind buffer on a scratch collection").build());
+        options.addOption(Option.builder().longOpt("load-test")
+                .desc("Run the mixed workload from mongodb.loadtest.* at each target rate").build());
+        options.addOption(Option.builder().longOpt("seed")
+                .desc("Replace all collections with the generated load test dataset first").build());
+        options.addOption(Option.builder().longOpt("rate").hasArg().argName("ops,ops")
+                .desc("Target operations per second for --load-test, one step each (default mongodb.loadtest.rates)").build());
+        options.addOption(Option.builder().longOpt("enrollment-graph")
+                .desc("Load enrollments into memory and print co-enrollment and prerequisite figures").build());
+        options.addOption(Option.builder().longOpt("co-enrolled").hasArg().argName("studentId")
+                .desc("Print the students sharing the most courses with a student, from the in-memory graph").build());
+        options.addOption(Option.builder().longOpt("write-snapshot")
+                .desc("Write all collections to memory-mapped snapshot files").build());
+        options.addOption(Option.builder().longOpt("refresh-snapshot")
+                .desc("Bring the snapshot files up to date with the changes made since they were written").build());
+        options.addOption(Option.builder().longOpt("snapshot-get").hasArg().argName("collection:key")
+                .desc("Look a document up by key or _id in the snapshot files, without connecting").build());
+        options.addOption(Option.builder().longOpt("snapshot-dir").hasArg().argName("dir")
+                .desc("Directory of the snapshot files (default " + SnapshotBuilder.DEFAULT_DIRECTORY + ")").build());
+        options.addOption(Option.builder().longOpt("benchmark-join").hasArg().argName("courseId")
+                .desc("Compare the client-side join with the $lookup roster query").build());
+        options.addOption(Option.builder().longOpt("iterations").hasArg().argName("n")
+                .desc("Iterations for --benchmark-join (default 20)").build());
+        options.addOption(Option.builder().longOpt("storage-report")
+                .desc("Print collection storage statistics and project both models at scale").build());
+        options.addOption(Option.builder().longOpt("project-students").hasArg().argName("n")
+                .desc("Students for --storage-report (default 100000)").build());
+        options.addOption(Option.builder().longOpt("project-courses").hasArg().argName("n")
+                .desc("Courses for --storage-report (default 1000)").build());
+        options.addOption(Option.builder().longOpt("project-enrollments").hasArg().argName("n")
+                .desc("Enrollments per student for --storage-report (default 10)").build());
+        options.addOption(Option.builder("h").longOpt("help").desc("Show this help").build());
+        return options;
+    }
+
+    /**
+     * Returns the enrollment service for the configured execution mode, creating it on first use.
+     * One instance is shared so async mode opens a single reactive client; it is closed on exit.
+     */
+    private static EnrollmentService enrollmentService() {
+        if (enrollmentService == null) {
+            enrollmentService = EnrollmentServices.create(properties, database, operationSettings, metrics,
+                    propagationEngine, studentCache, enrollmentStats);
+        }
+        return enrollmentService;
+    }
+
+    private static int intOption(CommandLine commandLine, String name, int defaultValue) {
+        String value = commandLine.getOptionValue(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " expects a number but got: " + value);
+        }
+    }
+
+    /**
+     * Runs the non-interactive mode selected on the command line, if any.
+     *
+     * @return true if a mode was run and the menu should be skipped
+     */
+    private static boolean runCommandLineMode(CommandLine commandLine) throws IOException {
+        boolean ran = false;
+        if (commandLine.hasOption("import-students") || commandLine.hasOption("import-courses")
+                || commandLine.hasOption("import-enrollments")) {
+            runBulkImport(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("roster")) {
+            String courseId = commandLine.getOptionValue("roster");
+            System.out.println("\n--- ROSTER FOR " + courseId + " ---");
+            // Goes through the configured execution backend (mongodb.execution.mode)
+            long count = Publishers.forEach(enrollmentService().rosterForCourse(courseId),
+                    row -> System.out.println("  - " + row.toJson()), 100).join();
+            System.out.println(count + " enrollments");
+            ran = true;
+        }
+        if (commandLine.hasOption("transcript")) {
+            String studentId = commandLine.getOptionValue("transcript");
+            System.out.println("\n--- TRANSCRIPT FOR " + studentId + " ---");
+            EnrollmentQueries transcriptQueries = new EnrollmentQueries(
+                    operationSettings.apply(OperationType.TRANSCRIPT, studentsCollection),
+                    operationSettings.apply(OperationType.TRANSCRIPT, coursesCollection),
+                    operationSettings.apply(OperationType.TRANSCRIPT, enrollmentsCollection),
+                    intOption(commandLine, "query-batch-size", EnrollmentQueries.DEFAULT_BATCH_SIZE));
+            printRows(transcriptQueries.transcriptForStudent(studentId));
+            ran = true;
+        }
+        if (commandLine.hasOption("export-collection") || commandLine.hasOption("export-roster")
+                || commandLine.hasOption("export-transcript")) {
+            runExport(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("list")) {
+            runList(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("rebuild-stats")) {
+            enrollmentStats.rebuild();
+            ran = true;
+        }
+        if (commandLine.hasOption("course-stats")) {
+            Document course = courseCache.getByKey(commandLine.getOptionValue("course-stats"));
+            if (course == null) {
+                System.out.println("No course " + commandLine.getOptionValue("course-stats"));
+            } else {
+                printCourseStats(course.getObjectId("_id"));
+            }
+            ran = true;
+        }
+        if (commandLine.hasOption("student-stats")) {
+            Document student = studentCache.getByKey(commandLine.getOptionValue("student-stats"));
+            if (student == null) {
+                System.out.println("No student " + commandLine.getOptionValue("student-stats"));
+            } else {
+                printStudentStats(student.getObjectId("_id"));
+            }
+            ran = true;
+        }
+        if (commandLine.hasOption("migrate-enrollments")) {
+            runMigration(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("benchmark-join")) {
+            new JoinBenchmark(studentsCollection, coursesCollection, enrollmentsCollection, enrollmentQueries)
+                    .run(commandLine.getOptionValue("benchmark-join"), intOption(commandLine, "iterations", 20));
+            ran = true;
+        }
+        if (commandLine.hasOption("benchmark-write-behind")) {
+            new WriteBehindBenchmark(database, WriteBehindSettings.fromProperties(properties)).run(
+                    intOption(commandLine, "benchmark-write-behind", 10_000), intOption(commandLine, "parallelism", 64));
+            ran = true;
+        }
+        if (commandLine.hasOption("seed") || commandLine.hasOption("load-test")) {
+            runLoadTest(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("enrollment-graph") || commandLine.hasOption("co-enrolled")) {
+            runEnrollmentGraph(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("write-snapshot") || commandLine.hasOption("refresh-snapshot")) {
+            runSnapshotWrite(commandLine);
+            ran = true;
+        }
+        if (commandLine.hasOption("storage-report")) {
+            new StorageAnalytics(studentsCollection, coursesCollection, enrollmentsCollection).printReport(
+                    intOption(commandLine, "project-students", 100_000),
+                    intOption(commandLine, "project-courses", 1000),
+                    intOption(commandLine, "project-enrollments", 10));
+            ran = true;
+        }
+        if (ran) {
+            metrics.print();
+        }
+        return ran;
+    }
+
+    private static void printRows(MongoCursor<Document> cursor) {
+        long count = 0;
+        try (cursor) {
+            while (cursor.hasNext()) {
+                System.out.println("  - " + cursor.next().toJson());
+                count++;
+            }
+        }
+        System.out.println(count + " enrollments");
+    }
+
+    private static void runList(CommandLine commandLine) {
+        String name = commandLine.getOptionValue("list");
+        KeysetPager pager = switch (name) {
+            case "students" -> KeysetPager.students(studentsCollection);
+            case "courses" -> KeysetPager.courses(coursesCollection);
+            case "enrollments" -> KeysetPager.enrollments(enrollmentsCollection);
+            default -> throw new IllegalArgumentException("Unknown collection for --list: " + name);
+        };
+        Page page = pager.page(new Document(), fieldsOption(commandLine),
+                intOption(commandLine, "page-size", KeysetPager.DEFAULT_PAGE_SIZE),
+                commandLine.getOptionValue("page-token"));
+        System.out.println("\n--- " + name.toUpperCase() + " ---");
+        for (Document row : page.items()) {
+            System.out.println("  - " + row.toJson());
+        }
+        System.out.println(page.items().size() + " " + name);
+        if (page.hasMore()) {
+            System.out.println("Next page: --page-token " + page.nextToken());
+        }
+    }
+
+    private static List<String> fieldsOption(CommandLine commandLine) {
+        if (!commandLine.hasOption("fields")) {
+            return List.of();
+        }
+        return Arrays.stream(commandLine.getOptionValue("fields").split(",")).map(String::trim)
+                .filter(field -> !field.isEmpty()).toList();
+    }
+
+    private static void runMigration(CommandLine commandLine) throws IOException {
+        String target = commandLine.getOptionValue("migrate-enrollments");
+        EnrollmentMigration.Target migrationTarget = switch (target) {
+            case "embedded" -> EnrollmentMigration.Target.EMBEDDED;
+            case "referenced" -> EnrollmentMigration.Target.REFERENCED;
+            default -> throw new IllegalArgumentException("Unknown enrollment model for --migrate-enrollments: " + target);
+        };
+        EnrollmentMigration migration = new EnrollmentMigration(enrollmentsCollection, studentCache, courseCache,
+                intOption(commandLine, "parallelism", Runtime.getRuntime().availableProcessors()),
+                intOption(commandLine, "batch-size", EnrollmentMigration.DEFAULT_BATCH_SIZE),
+                commandLine.hasOption("checkpoint-file")
+                        ? Path.of(commandLine.getOptionValue("checkpoint-file"))
+                        : EnrollmentMigration.DEFAULT_CHECKPOINT_FILE);
+        MigrationReport report = migration.run(migrationTarget);
+        report.print();
+        // Counts and grades stay the same either way, but referenced enrollments take the course's current
+        // credits where embedded ones kept the credits of their copy, so student totals can move
+        if (migrationTarget == EnrollmentMigration.Target.REFERENCED && report.migrated() > 0) {
+            enrollmentStats.rebuild();
+        }
+    }
+
+    private static void runLoadTest(CommandLine commandLine) {
+        LoadTestSettings settings = LoadTestSettings.fromProperties(properties);
+        if (commandLine.hasOption("rate")) {
+            settings = settings.withRates(LoadTestSettings.parseRates(commandLine.getOptionValue("rate")));
+        }
+        if (commandLine.hasOption("parallelism")) {
+            settings = settings.withWorkers(intOption(commandLine, "parallelism", settings.workers()));
+        }
+        if (commandLine.hasOption("seed")) {
+            new DatasetSeeder(studentsCollection, coursesCollection, enrollmentsCollection).seed(settings);
+            indexManager.ensureIndexes();
+            studentCache.invalidateAll();
+            courseCache.invalidateAll();
+            enrollmentStats.rebuild();
+        }
+        if (commandLine.hasOption("load-test")) {
+            new LoadGenerator(studentsCollection, coursesCollection, enrollmentService()).run(settings);
+        }
+    }
+
+    private static void runEnrollmentGraph(CommandLine commandLine) {
+        EnrollmentGraphLoader loader = new EnrollmentGraphLoader(studentsCollection, coursesCollection, enrollmentsCollection);
+        EnrollmentGraph graph = loader.load();
+        System.out.println("\n--- ENROLLMENT GRAPH ---");
+        System.out.println("  - " + graph.getStudentCount() + " students, " + graph.getCourseCount() + " courses, "
+                + graph.getEnrollmentCount() + " distinct enrollments"
+                + (loader.getSkipped() > 0 ? " (" + loader.getSkipped() + " with a missing student or course left out)" : ""));
+        System.out.println("  - Loaded in " + String.format("%.2f", loader.getLoadNanos() / 1_000_000_000.0) + " s, about "
+                + StorageAnalytics.formatBytes(graph.sizeInBytes()) + " in memory");
+
+        if (commandLine.hasOption("enrollment-graph")) {
+            long start = System.nanoTime();
+            List<CoEnrollment> pairs = graph.topCoursePairs(10);
+            System.out.println("\nCourses most often taken together (" + elapsedMillis(start) + " ms):");
+            for (CoEnrollment pair : pairs) {
+                System.out.println("  - " + graph.courseKey(pair.first()) + " + " + graph.courseKey(pair.second())
+                        + ": " + pair.shared() + " students");
+            }
+            if (graph.hasPrerequisites()) {
+                start = System.nanoTime();
+                int[] missing = graph.studentsMissingPrerequisites();
+                System.out.println("\nStudents enrolled without a prerequisite (" + elapsedMillis(start) + " ms):");
+                IntStream.range(0, missing.length).boxed()
+                        .filter(course -> missing[course] > 0)
+                        .sorted((a, b) -> Integer.compare(missing[b], missing[a]))
+                        .limit(10)
+                        .forEach(course -> System.out.println("  - " + graph.courseKey(course) + ": " + missing[course]));
+            }
+        }
+        if (commandLine.hasOption("co-enrolled")) {
+            String studentId = commandLine.getOptionValue("co-enrolled");
+            Document student = studentCache.getByKey(studentId);
+            int index = student == null ? -1 : graph.studentIndex(student.getObjectId("_id"));
+            if (index < 0) {
+                System.out.println("No student " + studentId);
+                return;
+            }
+            long start = System.nanoTime();
+            List<CoEnrollment> classmates = graph.coEnrolledStudents(index, 10);
+            System.out.println("\nStudents sharing the most courses with " + studentId + " (" + elapsedMillis(start) + " ms):");
+            for (CoEnrollment classmate : classmates) {
+                System.out.println("  - " + graph.studentKey(classmate.second()) + ": " + classmate.shared() + " courses");
+            }
+        }
+    }
+
+    private static void runSnapshotWrite(CommandLine commandLine) throws IOException {
+        boolean refresh = commandLine.hasOption("refresh-snapshot");
+        Path directory = snapshotDirectory(commandLine);
+        SnapshotBuilder builder = new SnapshotBuilder(database, directory);
+        System.out.println("\n--- " + (refresh ? "REFRESHING" : "WRITING") + " SNAPSHOT: " + directory + " ---");
+        for (MongoCollection<Document> collection : List.of(studentsCollection, coursesCollection, enrollmentsCollection)) {
+            String name = collection.getNamespace().getCollectionName();
+            String keyField = collection == studentsCollection ? "studentId"
+                    : collection == coursesCollection ? "courseId" : null;
+            if (refresh) {
+                builder.refresh(name, keyField);
+            } else {
+                builder.write(name, keyField);
+            }
+        }
+    }
+
+    private static void runSnapshotGet(CommandLine commandLine) throws IOException {
+        String lookup = commandLine.getOptionValue("snapshot-get");
+        int separator = lookup.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("--snapshot-get needs <collection>:<key or _id>");
+        }
+        String collectionName = lookup.substring(0, separator);
+        String key = lookup.substring(separator + 1);
+
+        long start = System.nanoTime();
+        Snapshot snapshot = Snapshot.open(snapshotDirectory(commandLine), ModelCodecs.REGISTRY);
+        String openMillis = elapsedMillis(start);
+        snapshot.print();
+        SnapshotCollection collection = snapshot.get(collectionName);
+        if (collection == null) {
+            System.out.println("No snapshot of " + collectionName);
+            return;
+        }
+
+        start = System.nanoTime();
+        Document document = ObjectId.isValid(key) ? collection.findById(new ObjectId(key))
+                : collection.getKeyField() != null ? collection.findByKey(key) : null;
+        String lookupMillis = elapsedMillis(start);
+        System.out.println("\nOpened in " + openMillis + " ms, looked up in " + lookupMillis + " ms");
+        System.out.println(document == null ? "No document " + key + " in " + collectionName : document.toJson(prettyPrint));
+    }
+
+    private static Path snapshotDirectory(CommandLine commandLine) {
+        return commandLine.hasOption("snapshot-dir") ? Path.of(commandLine.getOptionValue("snapshot-dir"))
+                : SnapshotBuilder.DEFAULT_DIRECTORY;
+    }
+
+    private static String elapsedMillis(long start) {
+        return String.format("%.2f", (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    private static void runExport(CommandLine commandLine) throws IOException {
+        if (!commandLine.hasOption("export-to")) {
+            throw new IllegalArgumentException("Exports need --export-to <file>");
+        }
+        Path out = Path.of(commandLine.getOptionValue("export-to"));
+        List<String> fields = fieldsOption(commandLine);
+        int partitions = intOption(commandLine, "partitions", 1);
+        DocumentExporter exporter = new DocumentExporter(studentsCollection, coursesCollection, enrollmentsCollection,
+                intOption(commandLine, "query-batch-size", DocumentExporter.DEFAULT_BATCH_SIZE));
+
+        if (commandLine.hasOption("export-collection")) {
+            String name = commandLine.getOptionValue("export-collection");
+            MongoCollection<Document> collection = switch (name) {
+                case "students" -> studentsCollection;
+                case "courses" -> coursesCollection;
+                case "enrollments" -> enrollmentsCollection;
+                default -> throw new IllegalArgumentException("Unknown collection for --export-collection: " + name);
+            };
+            exporter.exportCollection(collection, fields, out, partitions).print(name);
+        } else if (commandLine.hasOption("export-roster")) {
+            String courseId = commandLine.getOptionValue("export-roster");
+            exporter.exportRoster(courseId, fields, out, partitions).print("roster " + courseId);
+        } else {
+            String studentId = commandLine.getOptionValue("export-transcript");
+            exporter.exportTranscript(studentId, fields, out, partitions).print("transcript " + studentId);
+        }
+    }
+
+    private static void runBulkImport(CommandLine commandLine) throws IOException {
+        int batchSize = intOption(commandLine, "batch-size", BulkLoader.DEFAULT_BATCH_SIZE);
+        int batchBytes = intOption(commandLine, "batch-bytes", BulkLoader.DEFAULT_BATCH_BYTES);
+        int inFlight = intOption(commandLine, "in-flight", BulkLoader.DEFAULT_IN_FLIGHT);
+
+        if (commandLine.hasOption("import-students")) {
+            Path file = Path.of(commandLine.getOptionValue("import-students"));
+            System.out.println("Importing students from: " + file);
+            try (RecordReader reader = RecordReader.open(file)) {
+                new BulkLoader(operationSettings.apply(OperationType.BULK_LOAD, studentsCollection), batchSize, batchBytes, inFlight).load(reader).print("students");
+            }
+        }
+
+        if (commandLine.hasOption("import-courses")) {
+            Path file = Path.of(commandLine.getOptionValue("import-courses"));
+            System.out.println("Importing courses from: " + file);
+            try (RecordReader reader = RecordReader.open(file)) {
+                new BulkLoader(operationSettings.apply(OperationType.BULK_LOAD, coursesCollection), batchSize, batchBytes, inFlight).load(reader).print("courses");
+            }
+        }
+
+        if (commandLine.hasOption("import-enrollments")) {
+            Path file = Path.of(commandLine.getOptionValue("import-enrollments"));
+            System.out.println("Importing enrollments from: " + file);
+            // Each acknowledged batch is counted in the statistics, merged into one $inc per course and student
+            EnrollmentEngine engine = new EnrollmentEngine(studentsCollection, coursesCollection,
+                    new BulkLoader(operationSettings.apply(OperationType.BULK_LOAD, enrollmentsCollection), batchSize, batchBytes, inFlight,
+                            enrollmentStats::recordInserted),
+                    EnrollmentEngine.DEFAULT_CHUNK_SIZE);
+            if (commandLine.hasOption("preload-keys")) {
+                engine.preloadKeys();
+            }
+            try (RecordReader reader = RecordReader.open(file)) {
+                Iterator<EnrollmentRequest> requests = new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return reader.hasNext();
+                    }
+
+                    @Override
+                    public EnrollmentRequest next() {
+                        return EnrollmentRequest.fromDocument(reader.next());
+                    }
+                };
+                BulkLoadReport report = engine.enroll(requests);
+                report.print("enrollments");
+                System.out.println("  - Key lookup queries: " + engine.getLookupQueries());
+                if (engine.getSkipped() > 0) {
+                    System.out.println("  - Skipped (unknown student or course): " + engine.getSkipped());
+                }
+            }
         }
     }
 
+    private static void startChangeStreamWatcher(String studentsCollectionName, String coursesCollectionName,
+                                                 String enrollmentsCollectionName) {
+        Path tokenFile = Path.of(properties.getProperty("mongodb.changestream.resumeTokenFile",
+                "changestream-resume-token.json"));
+        changeStreamWatcher = new ChangeStreamWatcher(database,
+                List.of(studentsCollectionName, coursesCollectionName, enrollmentsCollectionName),
+                new ResumeTokenStore(tokenFile));
+
+        changeStreamWatcher.addListener(studentsCollectionName, ChangeListeners.invalidating(studentCache));
+        changeStreamWatcher.addListener(coursesCollectionName, ChangeListeners.invalidating(courseCache));
+        // Changes may have been missed, so nothing cached can be trusted any more
+        changeStreamWatcher.addHistoryLostListener(() -> {
+            studentCache.invalidateAll();
+            courseCache.invalidateAll();
+        });
+
+        changeStreamWatcher.start();
+        System.out.println("Watching for changes (resume token: " + tokenFile + ")");
+    }
+
     private static void displayMenu() {
         System.out.println("\n--- MONGODB STUDENT ENROLLMENT SYSTEM ---");
         System.out.println("Please select an operation to perform:");
@@ -174,17 +844,15 @@ public class Main {
         System.out.println("3. Create enrollments (embedded and referenced)");
         System.out.println("4. Query enrollments and show document structures");
         System.out.println("5. Update student name (demonstrate reference vs. embedded)");
-        //System.out.println("6. Create indexes for querying students");
+        System.out.println("6. Create indexes and report query plans");
         System.out.println("7. Run all operations in sequence");
         System.out.println("0. Exit");
     }
 
-    private static boolean collectionExists(MongoDatabase database, String collectionName) {
-        for (String name : database.listCollectionNames()) {
-            if (name.equals(collectionName)) {
-                System.out.println("Collection already exists: " + collectionName);
-                return true;
-            }
+    private static boolean collectionExists(Set<String> existingCollections, String collectionName) {
+        if (existingCollections.contains(collectionName)) {
+            System.out.println("Collection already exists: " + collectionName);
+            return true;
         }
         return false;
     }
@@ -221,8 +889,13 @@ public class Main {
                 .append("email", "michael.brown@example.com")
                 .append("age", 19);
 
-        studentsCollection.insertMany(java.util.Arrays.asList(student1, student2, student3));
-        System.out.println("Inserted 3 students into the database");
+        try {
+            studentsCollection.insertMany(java.util.Arrays.asList(student1, student2, student3));
+            System.out.println("Inserted 3 students into the database");
+        } catch (MongoBulkWriteException e) {
+            // studentId is unique, so running this twice without clearing is rejected
+            System.out.println("Sample students already exist (" + e.getWriteErrors().size() + " duplicate keys)");
+        }
 
         // Insert courses
         Document course1 = new Document()
@@ -241,31 +914,32 @@ public class Main {
                 .append("credits", 3)
                 .append("instructor", "Prof. Wilson");
 
-        coursesCollection.insertMany(java.util.Arrays.asList(course1, course2, course3));
-        System.out.println("Inserted 3 courses into the database");
+        try {
+            coursesCollection.insertMany(java.util.Arrays.asList(course1, course2, course3));
+            System.out.println("Inserted 3 courses into the database");
+        } catch (MongoBulkWriteException e) {
+            System.out.println("Sample courses already exist (" + e.getWriteErrors().size() + " duplicate keys)");
+        }
 
 
+        // Only the listed fields come back; the codecs leave the others empty
         System.out.println("\nStudents in database:");
-        try (MongoCursor<Document> cursor = studentsCollection.find().iterator()) {
-            while (cursor.hasNext()) {
-                Document student = cursor.next();
-                System.out.println("  - " + student.getString("name") +
-                        " (ID: " + student.getString("studentId") +
-                        ", Email: " + student.getString("email") +
-                        ", Age: " + student.getInteger("age") + ")");
-            }
-        }
+        projectedReads.forEach(studentsCollection, ReadShape.STUDENT_SUMMARY, new Document(), raw -> {
+            Student student = raw.decode(ModelCodecs.STUDENT);
+            System.out.println("  - " + student.name() +
+                    " (ID: " + student.studentId() +
+                    ", Email: " + student.email() +
+                    ", Age: " + student.age() + ")");
+        });
 
         System.out.println("\nCourses in database:");
-        try (MongoCursor<Document> cursor = coursesCollection.find().iterator()) {
-            while (cursor.hasNext()) {
-                Document course = cursor.next();
-                System.out.println("  - " + course.getString("name") +
-                        " (ID: " + course.getString("courseId") +
-                        ", Credits: " + course.getInteger("credits") +
-                        ", Instructor: " + course.getString("instructor") + ")");
-            }
-        }
+        projectedReads.forEach(coursesCollection, ReadShape.COURSE_SUMMARY, new Document(), raw -> {
+            Course course = raw.decode(ModelCodecs.COURSE);
+            System.out.println("  - " + course.name() +
+                    " (ID: " + course.courseId() +
+                    ", Credits: " + course.credits() +
+                    ", Instructor: " + course.instructor() + ")");
+        });
 
 
     }
@@ -274,10 +948,16 @@ public class Main {
         System.out.println("\n--- CREATING ENROLLMENTS ---");
 
 
-        Document student = studentsCollection.find().first();
-        Document course = coursesCollection.find().first();
-
+        // The first page of two in a stable order, instead of a find() plus a skip() each
+        List<Document> students = KeysetPager.students(studentsCollection).page(2, null).items();
+        List<Document> courses = KeysetPager.courses(coursesCollection).page(2, null).items();
+        if (students.size() < 2 || courses.size() < 2) {
+            System.out.println("At least two students and two courses are needed. Insert sample data first.");
+            return;
+        }
 
+        Document student = students.get(0);
+        Document course = courses.get(0);
 
         String studentName = student.getString("name");
         String studentId = student.getString("studentId");
@@ -295,7 +975,7 @@ public class Main {
                 .append("courseId", courseObjId)
                 .append("grade", "A");
 
-        enrollmentsCollection.insertOne(referencedEnrollment);
+        CompletableFuture<Void> referencedWritten = insertEnrollment(referencedEnrollment);
         System.out.println("Created referenced enrollment with the following details:");
         System.out.println("  - Student: " + studentName + " (ID: " + studentId + ")");
         System.out.println("  - Course: " + courseName + " (ID: " + courseId + ")");
@@ -303,8 +983,8 @@ public class Main {
         System.out.println("  - Using MongoDB ObjectIds as references");
 
 
-        Document student2 = studentsCollection.find().skip(1).first();
-        Document course2 = coursesCollection.find().skip(1).first();
+        Document student2 = students.get(1);
+        Document course2 = courses.get(1);
 
 
         String student2Name = student2.getString("name");
@@ -320,7 +1000,7 @@ public class Main {
                 .append("course", course2)
                 .append("grade", "B+");
 
-        enrollmentsCollection.insertOne(embeddedEnrollment);
+        CompletableFuture<Void> embeddedWritten = insertEnrollment(embeddedEnrollment);
         System.out.println("\nCreated embedded enrollment with the following details:");
         System.out.println("  - Student: " + student2Name + " (ID: " + student2Id + ")");
         System.out.println("  - Course: " + course2Name + " (ID: " + course2Id + ")");
@@ -328,12 +1008,55 @@ public class Main {
         System.out.println("  - Using embedded documents (entire student and course documents included)");
 
 
+        // With write-behind both inserts go out in one bulkWrite; wait for it so the queries below see them
+        CompletableFuture.allOf(referencedWritten, embeddedWritten).join();
+        if (writeBehind != null) {
+            System.out.println();
+            writeBehind.getMetrics().print();
+        }
+
         System.out.println("\nDocument structure comparison:");
         System.out.println("1. Referenced Enrollment (JSON):");
         System.out.println(referencedEnrollment.toJson(prettyPrint));
 
         System.out.println("\n2. Embedded Enrollment (JSON):");
         System.out.println(embeddedEnrollment.toJson(prettyPrint));
+
+        System.out.println("\nCourse and student statistics after these enrollments:");
+        printCourseStats(courseObjId);
+        printCourseStats(course2.getObjectId("_id"));
+        printStudentStats(student2.getObjectId("_id"));
+    }
+
+    // Statistics are updated once the insert is acknowledged; with write-behind that is when it is flushed
+    private static CompletableFuture<Void> insertEnrollment(Document enrollment) {
+        if (writeBehind != null) {
+            return writeBehind.insert(enrollmentsCollection, enrollment);
+        }
+        enrollmentsCollection.insertOne(enrollment);
+        enrollmentStats.recordInserted(enrollment);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static void printCourseStats(ObjectId courseObjId) {
+        CourseStats stats = enrollmentStats.getCourseStats(courseObjId);
+        if (stats == null) {
+            System.out.println("  - Course " + courseObjId + ": no enrollments");
+            return;
+        }
+        System.out.println("  - Course " + courseObjId + ": " + stats.enrollmentCount() + " enrollments, grades "
+                + stats.gradeCounts());
+    }
+
+    private static void printStudentStats(ObjectId studentObjId) {
+        StudentStats stats = enrollmentStats.getStudentStats(studentObjId);
+        if (stats == null) {
+            System.out.println("  - Student " + studentObjId + ": no enrollments");
+            return;
+        }
+        System.out.println("  - Student " + studentObjId + ": " + stats.enrollmentCount() + " enrollments, "
+                + stats.credits() + " credits, GPA "
+                + (Double.isNaN(stats.gpa()) ? "n/a" : String.format("%.2f", stats.gpa())));
     }
 
     private static void queryEnrollments() {
@@ -341,15 +1064,13 @@ public class Main {
 
         // Query enrollment with references
         System.out.println("Referenced enrollment:");
-        Document referencedEnrollment = enrollmentsCollection.find(
-                Filters.eq("enrollmentType", "referenced")).first();
+        // Student and course are joined in the same aggregation instead of two extra finds
+        Document referencedEnrollment = enrollmentQueries.findReferencedWithDetails(
+                Filters.eq("enrollmentType", "referenced"));
 
         if (referencedEnrollment != null) {
-            ObjectId studentId = referencedEnrollment.getObjectId("studentId");
-            ObjectId courseId = referencedEnrollment.getObjectId("courseId");
-
-            Document student = studentsCollection.find(Filters.eq("_id", studentId)).first();
-            Document course = coursesCollection.find(Filters.eq("_id", courseId)).first();
+            Document student = (Document) referencedEnrollment.remove("student");
+            Document course = (Document) referencedEnrollment.remove("course");
 
             if (student != null && course != null) {
                 System.out.println("Enrollment Date: " + referencedEnrollment.get("date"));
@@ -377,8 +1098,11 @@ public class Main {
 
 
         System.out.println("\nEmbedded enrollment:");
-        Document embeddedEnrollment = enrollmentsCollection.find(
-                Filters.eq("enrollmentType", "embedded")).first();
+        // The whole document is displayed below, so this read declares every field
+        Codec<Document> documentCodec = enrollmentsCollection.getCodecRegistry().get(Document.class);
+        RawBsonDocument embeddedRaw = projectedReads.first(enrollmentsCollection, ReadShape.FULL_DOCUMENT,
+                Filters.eq("enrollmentType", "embedded"));
+        Document embeddedEnrollment = embeddedRaw == null ? null : embeddedRaw.decode(documentCodec);
 
         if (embeddedEnrollment != null) {
             Document embeddedStudent = (Document) embeddedEnrollment.get("student");
@@ -403,22 +1127,14 @@ public class Main {
         }
 
 
-        long referencedSize = 0;
-        Document refEnrollment = enrollmentsCollection.find(Filters.eq("enrollmentType", "referenced")).first();
-        if (refEnrollment != null) {
-            referencedSize = refEnrollment.toJson().length();
-        }
-
-        long embeddedSize = 0;
-        Document embEnrollment = enrollmentsCollection.find(Filters.eq("enrollmentType", "embedded")).first();
-        if (embEnrollment != null) {
-            embeddedSize = embEnrollment.toJson().length();
-        }
+        // Exact BSON sizes of the documents already read above, no extra queries
+        long referencedSize = referencedEnrollment == null ? 0 : StorageAnalytics.bsonSize(referencedEnrollment, documentCodec);
+        long embeddedSize = embeddedRaw == null ? 0 : embeddedRaw.getByteBuffer().remaining();
 
         if (referencedSize > 0 && embeddedSize > 0) {
-            System.out.println("\nDocument Size Comparison:");
-            System.out.println("Referenced Enrollment: ~" + referencedSize + " bytes");
-            System.out.println("Embedded Enrollment: ~" + embeddedSize + " bytes");
+            System.out.println("\nDocument Size Comparison (BSON):");
+            System.out.println("Referenced Enrollment: " + referencedSize + " bytes");
+            System.out.println("Embedded Enrollment: " + embeddedSize + " bytes");
 
             if (embeddedSize > referencedSize) {
                 double ratio = (double) embeddedSize / referencedSize;
@@ -427,11 +1143,17 @@ public class Main {
         }
     }
 
+    private static void createIndexes() {
+        System.out.println("\n--- CREATING INDEXES ---");
+        indexManager.ensureIndexes();
+        new QueryPlanReport(studentsCollection, coursesCollection, enrollmentsCollection).run();
+    }
+
     private static void updateStudentName() {
         System.out.println("\n--- UPDATING STUDENT NAME ---");
 
 
-        Document student = studentsCollection.find(Filters.eq("studentId", "S1001")).first();
+        Document student = studentCache.getByKey("S1001");
         if (student != null) {
             String oldName = student.getString("name");
             String newName = "John Smith-Updated";
@@ -443,11 +1165,18 @@ public class Main {
             Bson filter = Filters.eq("_id", studentId);
             Bson update = Updates.set("name", newName);
 
-            studentsCollection.updateOne(filter, update);
+            MongoCollection<Document> updateCollection = operationSettings.apply(OperationType.STUDENT_UPDATE, studentsCollection);
+            if (writeBehind != null) {
+                // The verifying read below needs the committed value
+                writeBehind.set(updateCollection, studentId, new Document("name", newName)).join();
+            } else {
+                updateCollection.updateOne(filter, update);
+            }
+            studentCache.invalidate(studentId);
 
 
 
-            Document updatedStudent = studentsCollection.find(Filters.eq("_id", studentId)).first();
+            Document updatedStudent = studentCache.getById(studentId);
             if (updatedStudent != null) {
                 System.out.println("\nVerifying update in students collection:");
                 System.out.println("  - Old name: " + oldName);
@@ -458,36 +1187,38 @@ public class Main {
 
 
 
-            Document referencedEnrollment = enrollmentsCollection.find(
-                    Filters.eq("enrollmentType", "referenced")).first();
-
-            if (referencedEnrollment != null) {
-                ObjectId refStudentId = referencedEnrollment.getObjectId("studentId");
-                Document retrievedStudent = studentsCollection.find(Filters.eq("_id", refStudentId)).first();
-
+            RawBsonDocument referencedEnrollment = projectedReads.first(enrollmentsCollection,
+                    ReadShape.ENROLLMENT_STUDENT_REF, Filters.eq("enrollmentType", "referenced"));
 
+            if (referencedEnrollment != null && referencedEnrollment.isObjectId("studentId")) {
+                ObjectId refStudentId = referencedEnrollment.getObjectId("studentId").getValue();
+                Document retrievedStudent = studentCache.getById(refStudentId);
+                if (retrievedStudent != null) {
+                    System.out.println("\nReferenced enrollment resolves its student to: " + retrievedStudent.getString("name"));
+                }
             }
 
 
-            Document embeddedEnrollment = enrollmentsCollection.find(
-                    Filters.eq("enrollmentType", "embedded")).first();
-
-            if (embeddedEnrollment != null) {
-                Document embeddedStudent = (Document) embeddedEnrollment.get("student");
-
-
-
-
-
-
-                Document updatedEmbeddedEnrollment = enrollmentsCollection.find(
-                        Filters.eq("enrollmentType", "embedded")).first();
-                if (updatedEmbeddedEnrollment != null) {
-                    Document updatedEmbeddedStudent = (Document) updatedEmbeddedEnrollment.get("student");
-                    System.out.println("  - After update, embedded student name: " + updatedEmbeddedStudent.getString("name"));
-                    System.out.println("  - This demonstrates that embedded documents require separate updates");
-                }
+            // Rewrite the embedded copies of this student so embedded reads do not serve the old name
+            System.out.println("\nPropagating the new name to embedded enrollments...");
+            try {
+                propagationEngine.submitStudentChange(studentId, new Document("name", newName)).join();
+            } catch (java.util.concurrent.CompletionException e) {
+                System.out.println("  - Propagation failed: " + e.getCause().getMessage());
             }
+            propagationEngine.getMetrics().print();
+
+            // Only the embedded name comes back, not the rest of the student and course copies
+            long embeddedCount = projectedReads.forEach(enrollmentsCollection, ReadShape.EMBEDDED_STUDENT_NAME,
+                    Filters.eq("student._id", studentId), enrollment -> System.out.println(
+                            "  - After update, embedded student name: "
+                                    + enrollment.getDocument("student", new BsonDocument())
+                                    .getString("name", new BsonString("(no name)")).getValue()));
+            if (embeddedCount == 0) {
+                System.out.println("  - This student has no embedded enrollments");
+            }
+
+            studentCache.printStats("students");
         }
     }
 
@@ -0,0 +1,67 @@
+package org.example.bulk;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Summary of one bulk load: document counts, overall throughput and per-batch latency.
+ */
+public class BulkLoadReport {
+    private final long inserted;
+    private final long failed;
+    private final int batches;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+
+    BulkLoadReport(long inserted, long failed, int batches, long elapsedNanos, List<Long> batchLatencies) {
+        this.inserted = inserted;
+        this.failed = failed;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+        this.sortedLatencies = batchLatencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(this.sortedLatencies);
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public double getDocsPerSecond() {
+        return elapsedNanos == 0 ? 0 : inserted * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    /**
+     * Returns the batch latency at the given percentile in milliseconds.
+     *
+     * @param percentile a value between 0 and 100
+     */
+    public double getBatchLatencyMillis(double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        index = Math.max(0, Math.min(sortedLatencies.length - 1, index));
+        return sortedLatencies[index] / 1_000_000.0;
+    }
+
+    public void print(String label) {
+        System.out.println("\n--- BULK LOAD: " + label.toUpperCase() + " ---");
+        System.out.println("  - Inserted: " + inserted + " documents in " + batches + " batches");
+        if (failed > 0) {
+            System.out.println("  - Failed: " + failed + " documents");
+        }
+        System.out.println("  - Elapsed: " + String.format("%.2f", elapsedNanos / 1_000_000_000.0) + " s");
+        System.out.println("  - Throughput: " + String.format("%.0f", getDocsPerSecond()) + " docs/sec");
+        System.out.println("  - Batch latency (ms): p50=" + String.format("%.1f", getBatchLatencyMillis(50))
+                + ", p99=" + String.format("%.1f", getBatchLatencyMillis(99))
+                + ", max=" + String.format("%.1f", getBatchLatencyMillis(100)));
+    }
+}
@@ -0,0 +1,185 @@
+package org.example.bulk;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Loads large numbers of documents with unordered insertMany calls.
+ * Documents are grouped into batches bounded by both document count and encoded BSON size,
+ * and several batches are kept in flight at the same time. An optional insert listener is called
+ * with the documents of each batch that the server acknowledged.
+ */
+public class BulkLoader {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BATCH_BYTES = 4 * 1024 * 1024;
+    public static final int DEFAULT_IN_FLIGHT = 4;
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final MongoCollection<RawBsonDocument> collection;
+    private final Codec<Document> documentCodec;
+    private final int batchSize;
+    private final int batchBytes;
+    private final int inFlight;
+    private final Consumer<List<Document>> insertListener;
+
+    /**
+     * @param collection the target collection
+     * @param batchSize  maximum number of documents per insertMany call
+     * @param batchBytes maximum encoded size of one batch in bytes
+     * @param inFlight   maximum number of batches being written concurrently
+     */
+    public BulkLoader(MongoCollection<Document> collection, int batchSize, int batchBytes, int inFlight) {
+        this(collection, batchSize, batchBytes, inFlight, null);
+    }
+
+    /**
+     * @param insertListener called from the writing threads with the inserted documents of each batch,
+     *                       or null; the source documents of in-flight batches are kept for it
+     */
+    public BulkLoader(MongoCollection<Document> collection, int batchSize, int batchBytes, int inFlight,
+                      Consumer<List<Document>> insertListener) {
+        if (batchSize < 1 || batchBytes < 1 || inFlight < 1) {
+            throw new IllegalArgumentException("Batch size, batch bytes and in-flight count must be positive");
+        }
+        this.collection = collection.withDocumentClass(RawBsonDocument.class);
+        this.documentCodec = collection.getCodecRegistry().get(Document.class);
+        this.batchSize = batchSize;
+        this.batchBytes = batchBytes;
+        this.inFlight = inFlight;
+        this.insertListener = insertListener;
+    }
+
+    public BulkLoader(MongoCollection<Document> collection) {
+        this(collection, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_BYTES, DEFAULT_IN_FLIGHT);
+    }
+
+    /**
+     * Writes every document from the source and waits for all batches to finish.
+     * Each document is encoded exactly once; the encoded bytes are used both for the
+     * batch size bound and for the insert itself.
+     *
+     * @param source the documents to insert
+     * @return throughput and latency figures for the load
+     */
+    public BulkLoadReport load(Iterator<Document> source) {
+        ExecutorService executor = Executors.newFixedThreadPool(inFlight);
+        Semaphore permits = new Semaphore(inFlight);
+        AtomicLong inserted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<Long> batchLatencies = new ArrayList<>();
+        long start = System.nanoTime();
+        int batches = 0;
+
+        try {
+            List<RawBsonDocument> batch = new ArrayList<>(batchSize);
+            List<Document> originals = insertListener == null ? null : new ArrayList<>(batchSize);
+            long bytes = 0;
+            while (source.hasNext()) {
+                Document document = source.next();
+                RawBsonDocument encoded = new RawBsonDocument(document, documentCodec);
+                int size = encoded.getByteBuffer().remaining();
+                if (!batch.isEmpty() && (batch.size() >= batchSize || bytes + size > batchBytes)) {
+                    submit(executor, permits, batch, originals, inserted, failed, batchLatencies);
+                    batches++;
+                    batch = new ArrayList<>(batchSize);
+                    originals = insertListener == null ? null : new ArrayList<>(batchSize);
+                    bytes = 0;
+                }
+                batch.add(encoded);
+                if (originals != null) {
+                    originals.add(document);
+                }
+                bytes += size;
+            }
+            if (!batch.isEmpty()) {
+                submit(executor, permits, batch, originals, inserted, failed, batchLatencies);
+                batches++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk load interrupted", e);
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        synchronized (batchLatencies) {
+            return new BulkLoadReport(inserted.get(), failed.get(), batches, elapsed, batchLatencies);
+        }
+    }
+
+    private void submit(ExecutorService executor, Semaphore permits, List<RawBsonDocument> batch,
+                        List<Document> originals, AtomicLong inserted, AtomicLong failed, List<Long> batchLatencies)
+            throws InterruptedException {
+        // Blocks the reader once inFlight batches are outstanding so memory stays bounded
+        permits.acquire();
+        executor.execute(() -> {
+            long batchStart = System.nanoTime();
+            try {
+                collection.insertMany(batch, UNORDERED);
+                inserted.addAndGet(batch.size());
+                notifyInserted(originals, Set.of());
+            } catch (MongoBulkWriteException e) {
+                // Unordered inserts keep going past failures such as duplicate keys
+                inserted.addAndGet(e.getWriteResult().getInsertedCount());
+                failed.addAndGet(e.getWriteErrors().size());
+                if (e.getWriteConcernError() == null) {
+                    Set<Integer> rejected = new HashSet<>();
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        rejected.add(error.getIndex());
+                    }
+                    notifyInserted(originals, rejected);
+                }
+            } catch (RuntimeException e) {
+                failed.addAndGet(batch.size());
+                System.err.println("Batch of " + batch.size() + " documents failed: " + e.getMessage());
+            } finally {
+                long latency = System.nanoTime() - batchStart;
+                synchronized (batchLatencies) {
+                    batchLatencies.add(latency);
+                }
+                permits.release();
+            }
+        });
+    }
+
+    private void notifyInserted(List<Document> originals, Set<Integer> rejected) {
+        if (originals == null) {
+            return;
+        }
+        List<Document> accepted = new ArrayList<>(originals.size() - rejected.size());
+        for (int i = 0; i < originals.size(); i++) {
+            if (!rejected.contains(i)) {
+                accepted.add(originals.get(i));
+            }
+        }
+        try {
+            insertListener.accept(accepted);
+        } catch (RuntimeException e) {
+            System.err.println("Bulk load insert listener failed: " + e.getMessage());
+        }
+    }
+}
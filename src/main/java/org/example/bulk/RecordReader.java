@@ -0,0 +1,163 @@
+package org.example.bulk;
+
+import org.bson.Document;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Streams documents from a CSV or NDJSON file one line at a time.
+ * The format is picked from the file extension: ".csv" is read as CSV with a header row,
+ * everything else (".ndjson", ".jsonl", ".json") as one JSON document per line.
+ * CSV values are kept as text except in the numeric columns, so keys such as "1001" or a zip
+ * code of "007" stay strings.
+ */
+public class RecordReader implements Iterator<Document>, Closeable {
+    private static final Set<String> NUMERIC_COLUMNS = Set.of("age", "credits");
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    private final String[] header;
+    private Document next;
+    private long lineNumber;
+
+    private RecordReader(BufferedReader reader, boolean csv) throws IOException {
+        this.reader = reader;
+        this.csv = csv;
+        if (csv) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("CSV file is empty, expected a header row");
+            }
+            lineNumber++;
+            List<String> columns = parseCsvLine(headerLine);
+            this.header = columns.toArray(new String[0]);
+        } else {
+            this.header = null;
+        }
+    }
+
+    /**
+     * Opens a reader for the given file.
+     *
+     * @param path the CSV or NDJSON file
+     * @return a reader positioned at the first record
+     * @throws IOException if the file cannot be opened
+     */
+    public static RecordReader open(Path path) throws IOException {
+        String fileName = path.getFileName().toString().toLowerCase();
+        BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        try {
+            return new RecordReader(reader, fileName.endsWith(".csv"));
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                next = csv ? parseCsvRecord(line) : Document.parse(line);
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed record at line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Document result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Document parseCsvRecord(String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " columns but found " + values.size());
+        }
+        Document document = new Document();
+        for (int i = 0; i < header.length; i++) {
+            String value = values.get(i);
+            document.append(header[i], value.isEmpty() ? null
+                    : NUMERIC_COLUMNS.contains(header[i]) ? convertNumber(value) : value);
+        }
+        return document;
+    }
+
+    // "age" and "credits" are stored as integers, the same as insertSampleData()
+    private static Object convertNumber(String value) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                return (int) number;
+            }
+            return number;
+        } catch (NumberFormatException ignored) {
+            // not a whole number, keep it as text
+            return value;
+        }
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString().trim());
+        return values;
+    }
+}
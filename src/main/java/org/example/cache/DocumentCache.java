@@ -0,0 +1,256 @@
+package org.example.cache;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache for small, rarely written documents such as students and courses.
+ * Documents are looked up by _id or by their business key ("studentId", "courseId") and loaded
+ * from the collection on a miss. The cache is bounded by the encoded BSON size of its entries
+ * and evicts the least recently used ones first; entries also expire after a fixed time to live.
+ * Callers must call {@link #invalidate(ObjectId)} after writing a document. Entries are kept in
+ * encoded form and every read decodes its own copy, so callers may modify what they get back.
+ * A load that was already running when an invalidation happened returns its result without
+ * caching it, since it may have read the document before the write.
+ */
+public class DocumentCache {
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private record Entry(RawBsonDocument raw, String key, long expiresAt) {
+        int bytes() {
+            return raw.getByteBuffer().remaining();
+        }
+    }
+
+    private final MongoCollection<Document> collection;
+    private final Codec<Document> codec;
+    private final String keyField;
+    private final long maxBytes;
+    private final long ttlNanos;
+
+    // Guarded by this; access order makes iteration start at the least recently used entry
+    private final LinkedHashMap<ObjectId, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, ObjectId> idsByKey = new HashMap<>();
+    private long currentBytes;
+    // Bumped by every invalidation; a load only caches its result if this has not moved since it started
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public DocumentCache(MongoCollection<Document> collection, String keyField, long maxBytes, Duration ttl) {
+        if (maxBytes < 1 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive");
+        }
+        this.collection = collection;
+        this.codec = collection.getCodecRegistry().get(Document.class);
+        this.keyField = keyField;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the document with the given _id, loading it on a miss.
+     *
+     * @return the document, or null if it does not exist
+     */
+    public Document getById(ObjectId id) {
+        Document cached = lookup(id);
+        if (cached != null) {
+            return cached;
+        }
+        misses.increment();
+        long startGeneration = generation();
+        return load(collection.find(Filters.eq("_id", id)).first(), startGeneration);
+    }
+
+    /**
+     * Returns the document with the given business key, loading it on a miss.
+     *
+     * @return the document, or null if it does not exist
+     */
+    public Document getByKey(String key) {
+        ObjectId id;
+        synchronized (this) {
+            id = idsByKey.get(key);
+        }
+        if (id != null) {
+            Document cached = lookup(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        misses.increment();
+        long startGeneration = generation();
+        return load(collection.find(Filters.eq(keyField, key)).first(), startGeneration);
+    }
+
+    /**
+     * Returns the documents with the given ids. All misses are loaded with a single $in query.
+     *
+     * @return the found documents keyed by _id; ids that do not exist are absent
+     */
+    public Map<ObjectId, Document> getAllById(Collection<ObjectId> ids) {
+        Map<ObjectId, Document> result = new HashMap<>();
+        Set<ObjectId> missing = new LinkedHashSet<>();
+        for (ObjectId id : ids) {
+            if (result.containsKey(id) || missing.contains(id)) {
+                continue;
+            }
+            Document cached = lookup(id);
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            long startGeneration = generation();
+            try (MongoCursor<Document> cursor = collection.find(Filters.in("_id", missing)).iterator()) {
+                while (cursor.hasNext()) {
+                    Document document = load(cursor.next(), startGeneration);
+                    result.put(document.getObjectId("_id"), document);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached copy of a document so the next read goes to the database.
+     */
+    public synchronized void invalidate(ObjectId id) {
+        generation++;
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            invalidations.increment();
+            forget(id, entry);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.add(entries.size());
+        entries.clear();
+        idsByKey.clear();
+        currentBytes = 0;
+    }
+
+    private synchronized Document lookup(ObjectId id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt() > 0) {
+            entries.remove(id);
+            forget(id, entry);
+            expirations.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.raw().decode(codec);
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    // The loaded document itself goes back to the caller; the cache keeps its own encoded copy
+    private Document load(Document document, long startGeneration) {
+        if (document == null) {
+            return null;
+        }
+        RawBsonDocument raw = new RawBsonDocument(document, codec);
+        if (raw.getByteBuffer().remaining() > maxBytes) {
+            return document;
+        }
+        ObjectId id = document.getObjectId("_id");
+        Object key = document.get(keyField);
+        Entry entry = new Entry(raw, key == null ? null : key.toString(), System.nanoTime() + ttlNanos);
+        synchronized (this) {
+            if (generation != startGeneration) {
+                return document;
+            }
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                forget(id, previous);
+            }
+            currentBytes += entry.bytes();
+            if (entry.key() != null) {
+                idsByKey.put(entry.key(), id);
+            }
+            evictToFit();
+        }
+        return document;
+    }
+
+    // Called with the lock held
+    private void evictToFit() {
+        Iterator<Map.Entry<ObjectId, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<ObjectId, Entry> eldest = iterator.next();
+            iterator.remove();
+            forget(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+
+    // Called with the lock held, after the entry has been removed from the entries map
+    private void forget(ObjectId id, Entry entry) {
+        currentBytes -= entry.bytes();
+        if (entry.key() != null) {
+            idsByKey.remove(entry.key(), id);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return currentBytes;
+    }
+
+    public void printStats(String label) {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        System.out.println("Cache " + label + ": " + size() + " entries, " + sizeInBytes() + " bytes"
+                + ", hits " + hitCount + ", misses " + misses.sum()
+                + (total == 0 ? "" : " (" + String.format("%.0f", hitCount * 100.0 / total) + "% hit rate)")
+                + ", evictions " + evictions.sum()
+                + ", expirations " + expirations.sum()
+                + ", invalidations " + invalidations.sum());
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.changestream;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.cache.DocumentCache;
+
+import java.util.function.Consumer;
+
+/**
+ * Listeners that keep local state in line with changes seen on the change stream.
+ * Embedded copies are not rewritten from here: every instance sees every change, so each would
+ * repeat the same rewrite. The instance that makes a write hands it to its
+ * {@link org.example.propagation.PropagationEngine} instead.
+ */
+public final class ChangeListeners {
+
+    private ChangeListeners() {
+    }
+
+    /**
+     * Drops the cached copy of every updated, replaced or deleted document.
+     */
+    public static Consumer<ChangeStreamDocument<Document>> invalidating(DocumentCache cache) {
+        return change -> {
+            ObjectId id = documentId(change);
+            if (id != null && change.getOperationType() != OperationType.INSERT) {
+                cache.invalidate(id);
+            }
+        };
+    }
+
+    private static ObjectId documentId(ChangeStreamDocument<Document> change) {
+        BsonDocument key = change.getDocumentKey();
+        if (key == null || !key.isObjectId("_id")) {
+            return null;
+        }
+        return key.getObjectId("_id").getValue();
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.changestream;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Watches the students, courses and enrollments collections with one database change stream
+ * and hands every change to the listeners registered for its collection. This is how an instance
+ * learns about writes made by other instances. The resume token is saved periodically and on
+ * close, so a restart resumes from the last saved position rather than missing or replaying history.
+ * Change streams need a replica set; a single-node replica set is enough.
+ */
+public class ChangeStreamWatcher implements AutoCloseable {
+    // ChangeStreamHistoryLost: the saved token is older than the oplog window
+    private static final int HISTORY_LOST = 286;
+    private static final long SAVE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MongoDatabase database;
+    private final List<String> collectionNames;
+    private final ResumeTokenStore tokenStore;
+    private final Map<String, List<Consumer<ChangeStreamDocument<Document>>>> listeners = new ConcurrentHashMap<>();
+    private final List<Runnable> historyLostListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong eventsProcessed = new AtomicLong();
+    private final AtomicLong listenerFailures = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public ChangeStreamWatcher(MongoDatabase database, List<String> collectionNames, ResumeTokenStore tokenStore) {
+        this.database = database;
+        this.collectionNames = new ArrayList<>(collectionNames);
+        this.tokenStore = tokenStore;
+    }
+
+    /**
+     * Registers a listener for changes to one collection. Listeners run on the watcher thread,
+     * in the order the changes were made, so they should be quick.
+     */
+    public void addListener(String collectionName, Consumer<ChangeStreamDocument<Document>> listener) {
+        listeners.computeIfAbsent(collectionName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Registers a callback for when the saved resume token can no longer be used and changes may
+     * have been missed. Listeners should drop everything they derived from earlier changes.
+     */
+    public void addHistoryLostListener(Runnable listener) {
+        historyLostListeners.add(listener);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "change-stream-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long getEventsProcessed() {
+        return eventsProcessed.get();
+    }
+
+    public long getListenerFailures() {
+        return listenerFailures.get();
+    }
+
+    private void run() {
+        BsonDocument resumeToken = loadToken();
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open(resumeToken).cursor()) {
+                long lastSave = System.nanoTime();
+                BsonDocument savedToken = resumeToken;
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        dispatch(change);
+                    }
+                    // Also advances on empty batches (post-batch resume token), keeping restarts cheap
+                    BsonDocument token = cursor.getResumeToken();
+                    if (token != null) {
+                        resumeToken = token;
+                    }
+                    if (resumeToken != null && !resumeToken.equals(savedToken)
+                            && System.nanoTime() - lastSave > SAVE_INTERVAL_NANOS) {
+                        saveToken(resumeToken);
+                        savedToken = resumeToken;
+                        lastSave = System.nanoTime();
+                    }
+                }
+                if (resumeToken != null && !resumeToken.equals(savedToken)) {
+                    saveToken(resumeToken);
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == HISTORY_LOST && resumeToken != null) {
+                    System.err.println("Change stream history lost, starting from now: " + e.getErrorMessage());
+                    resumeToken = null;
+                    clearToken();
+                    historyLostListeners.forEach(Runnable::run);
+                } else {
+                    backOff(e);
+                }
+            } catch (MongoException e) {
+                if (running) {
+                    backOff(e);
+                }
+            }
+        }
+    }
+
+    private ChangeStreamIterable<Document> open(BsonDocument resumeToken) {
+        List<org.bson.conversions.Bson> pipeline = Collections.singletonList(Aggregates.match(Filters.and(
+                Filters.in("ns.coll", collectionNames),
+                Filters.in("operationType", Arrays.asList("insert", "update", "replace", "delete")))));
+        ChangeStreamIterable<Document> stream = database.watch(pipeline).maxAwaitTime(500, TimeUnit.MILLISECONDS);
+        return resumeToken == null ? stream : stream.resumeAfter(resumeToken);
+    }
+
+    private void dispatch(ChangeStreamDocument<Document> change) {
+        eventsProcessed.incrementAndGet();
+        if (change.getNamespace() == null) {
+            return;
+        }
+        List<Consumer<ChangeStreamDocument<Document>>> collectionListeners =
+                listeners.get(change.getNamespace().getCollectionName());
+        if (collectionListeners == null) {
+            return;
+        }
+        for (Consumer<ChangeStreamDocument<Document>> listener : collectionListeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                listenerFailures.incrementAndGet();
+                System.err.println("Change stream listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private BsonDocument loadToken() {
+        try {
+            return tokenStore.load();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable resume token " + tokenStore.getFile() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveToken(BsonDocument token) {
+        try {
+            tokenStore.save(token);
+        } catch (IOException e) {
+            System.err.println("Could not save resume token: " + e.getMessage());
+        }
+    }
+
+    private void clearToken() {
+        try {
+            tokenStore.clear();
+        } catch (IOException e) {
+            System.err.println("Could not delete resume token: " + e.getMessage());
+        }
+    }
+
+    private void backOff(MongoException e) {
+        System.err.println("Change stream interrupted, retrying: " + e.getMessage());
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Stops watching and saves the latest resume token.
+     */
+    @Override
+    public void close() {
+        Thread watcherThread;
+        synchronized (this) {
+            running = false;
+            watcherThread = thread;
+        }
+        if (watcherThread != null) {
+            try {
+                watcherThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.changestream;
+
+import org.bson.BsonDocument;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps the last change stream resume token in a local file so a restarted watcher
+ * continues where it stopped instead of rescanning. The file is replaced atomically,
+ * so a crash while saving leaves the previous token intact.
+ */
+public class ResumeTokenStore {
+    private final Path file;
+
+    public ResumeTokenStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the saved token, or null if none has been saved yet
+     */
+    public BsonDocument load() throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String json = Files.readString(file, StandardCharsets.UTF_8).trim();
+        return json.isEmpty() ? null : BsonDocument.parse(json);
+    }
+
+    public void save(BsonDocument token) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, token.toJson(), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public void clear() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.codec;
+
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonValueCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.Set;
+
+/**
+ * Shared read and write helpers for the hand-written model codecs.
+ * A known field holding a BSON type its record component cannot represent exactly, e.g. a string
+ * _id or an int64 age, reads as null and its original value is kept in {@code extra}; the writers
+ * put it back in place when the component is still null. Fields a codec does not model are
+ * collected with {@link #readExtra} and written back by {@link #writeExtra}, so a decode/encode
+ * round trip keeps them.
+ */
+final class CodecSupport {
+    private static final BsonValueCodec VALUE_CODEC = new BsonValueCodec();
+
+    private CodecSupport() {
+    }
+
+    static String readString(BsonReader reader, String name, BsonDocument extra, DecoderContext decoderContext) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            return reader.readString();
+        }
+        readExtra(reader, name, extra, decoderContext);
+        return null;
+    }
+
+    static ObjectId readObjectId(BsonReader reader, String name, BsonDocument extra, DecoderContext decoderContext) {
+        if (reader.getCurrentBsonType() == BsonType.OBJECT_ID) {
+            return reader.readObjectId();
+        }
+        readExtra(reader, name, extra, decoderContext);
+        return null;
+    }
+
+    // Only int32 is read into the Integer; int64 and double are kept as they are rather than narrowed
+    static Integer readInt(BsonReader reader, String name, BsonDocument extra, DecoderContext decoderContext) {
+        if (reader.getCurrentBsonType() == BsonType.INT32) {
+            return reader.readInt32();
+        }
+        readExtra(reader, name, extra, decoderContext);
+        return null;
+    }
+
+    static void readExtra(BsonReader reader, String name, BsonDocument extra, DecoderContext decoderContext) {
+        extra.put(name, VALUE_CODEC.decode(reader, decoderContext));
+    }
+
+    static void writeObjectId(BsonWriter writer, String name, ObjectId value, BsonDocument extra,
+                              EncoderContext encoderContext) {
+        if (value != null) {
+            writer.writeObjectId(name, value);
+        } else {
+            writeKept(writer, name, extra, encoderContext);
+        }
+    }
+
+    static void writeString(BsonWriter writer, String name, String value, BsonDocument extra,
+                            EncoderContext encoderContext) {
+        if (value != null) {
+            writer.writeString(name, value);
+        } else {
+            writeKept(writer, name, extra, encoderContext);
+        }
+    }
+
+    static void writeInt(BsonWriter writer, String name, Integer value, BsonDocument extra,
+                         EncoderContext encoderContext) {
+        if (value != null) {
+            writer.writeInt32(name, value);
+        } else {
+            writeKept(writer, name, extra, encoderContext);
+        }
+    }
+
+    /**
+     * Writes the original value of a known field from {@code extra}, if one was kept there on decode.
+     */
+    static void writeKept(BsonWriter writer, String name, BsonDocument extra, EncoderContext encoderContext) {
+        BsonValue value = extra == null ? null : extra.get(name);
+        if (value != null) {
+            writer.writeName(name);
+            VALUE_CODEC.encode(writer, value, encoderContext);
+        }
+    }
+
+    /**
+     * Writes the fields of {@code extra} other than the codec's known fields, which were written in place.
+     */
+    static void writeExtra(BsonWriter writer, BsonDocument extra, Set<String> knownFields,
+                           EncoderContext encoderContext) {
+        if (extra == null) {
+            return;
+        }
+        for (var field : extra.entrySet()) {
+            if (knownFields.contains(field.getKey())) {
+                continue;
+            }
+            writer.writeName(field.getKey());
+            VALUE_CODEC.encode(writer, field.getValue(), encoderContext);
+        }
+    }
+}
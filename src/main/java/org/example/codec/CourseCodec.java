@@ -0,0 +1,72 @@
+package org.example.codec;
+
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.example.model.Course;
+
+import java.util.Set;
+
+import static org.example.codec.CodecSupport.readInt;
+import static org.example.codec.CodecSupport.readExtra;
+import static org.example.codec.CodecSupport.readObjectId;
+import static org.example.codec.CodecSupport.readString;
+import static org.example.codec.CodecSupport.writeExtra;
+import static org.example.codec.CodecSupport.writeInt;
+import static org.example.codec.CodecSupport.writeObjectId;
+import static org.example.codec.CodecSupport.writeString;
+
+/**
+ * Reads and writes {@link Course} directly from BSON, without an intermediate Document.
+ */
+public class CourseCodec implements Codec<Course> {
+    private static final Set<String> FIELDS = Set.of("_id", "name", "courseId", "credits", "instructor");
+
+    @Override
+    public Course decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        String courseName = null;
+        String courseId = null;
+        Integer credits = null;
+        String instructor = null;
+
+        BsonDocument extra = new BsonDocument();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            switch (name) {
+                case "_id" -> id = readObjectId(reader, name, extra, decoderContext);
+                case "name" -> courseName = readString(reader, name, extra, decoderContext);
+                case "courseId" -> courseId = readString(reader, name, extra, decoderContext);
+                case "credits" -> credits = readInt(reader, name, extra, decoderContext);
+                case "instructor" -> instructor = readString(reader, name, extra, decoderContext);
+                default -> readExtra(reader, name, extra, decoderContext);
+            }
+        }
+        reader.readEndDocument();
+        return new Course(id, courseName, courseId, credits, instructor, extra);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Course course, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writeObjectId(writer, "_id", course.id(), course.extra(), encoderContext);
+        writeString(writer, "name", course.name(), course.extra(), encoderContext);
+        writeString(writer, "courseId", course.courseId(), course.extra(), encoderContext);
+        writeInt(writer, "credits", course.credits(), course.extra(), encoderContext);
+        writeString(writer, "instructor", course.instructor(), course.extra(), encoderContext);
+        writeExtra(writer, course.extra(), FIELDS, encoderContext);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Course> getEncoderClass() {
+        return Course.class;
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.codec;
+
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.example.model.Course;
+import org.example.model.Enrollment;
+import org.example.model.Student;
+
+import java.util.Date;
+import java.util.Set;
+
+import static org.example.codec.CodecSupport.readExtra;
+import static org.example.codec.CodecSupport.readObjectId;
+import static org.example.codec.CodecSupport.readString;
+import static org.example.codec.CodecSupport.writeExtra;
+import static org.example.codec.CodecSupport.writeKept;
+import static org.example.codec.CodecSupport.writeObjectId;
+import static org.example.codec.CodecSupport.writeString;
+
+/**
+ * Reads and writes {@link Enrollment} in both the referenced and the embedded shape.
+ * Embedded student and course copies are decoded straight into records by their own codecs.
+ */
+public class EnrollmentCodec implements Codec<Enrollment> {
+    private static final Set<String> FIELDS = Set.of("_id", "enrollmentType", "date", "studentId", "courseId",
+            "student", "course", "grade");
+
+    private final Codec<Student> studentCodec;
+    private final Codec<Course> courseCodec;
+
+    public EnrollmentCodec(Codec<Student> studentCodec, Codec<Course> courseCodec) {
+        this.studentCodec = studentCodec;
+        this.courseCodec = courseCodec;
+    }
+
+    @Override
+    public Enrollment decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        String enrollmentType = null;
+        Date date = null;
+        ObjectId studentId = null;
+        ObjectId courseId = null;
+        Student student = null;
+        Course course = null;
+        String grade = null;
+
+        BsonDocument extra = new BsonDocument();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            switch (name) {
+                case "_id" -> id = readObjectId(reader, name, extra, decoderContext);
+                case "enrollmentType" -> enrollmentType = readString(reader, name, extra, decoderContext);
+                case "date" -> {
+                    if (reader.getCurrentBsonType() == BsonType.DATE_TIME) {
+                        date = new Date(reader.readDateTime());
+                    } else {
+                        readExtra(reader, name, extra, decoderContext);
+                    }
+                }
+                case "studentId" -> studentId = readObjectId(reader, name, extra, decoderContext);
+                case "courseId" -> courseId = readObjectId(reader, name, extra, decoderContext);
+                case "student" -> student = readEmbedded(reader, name, studentCodec, extra, decoderContext);
+                case "course" -> course = readEmbedded(reader, name, courseCodec, extra, decoderContext);
+                case "grade" -> grade = readString(reader, name, extra, decoderContext);
+                default -> readExtra(reader, name, extra, decoderContext);
+            }
+        }
+        reader.readEndDocument();
+        return new Enrollment(id, enrollmentType, date, studentId, courseId, student, course, grade, extra);
+    }
+
+    private static <T> T readEmbedded(BsonReader reader, String name, Codec<T> codec, BsonDocument extra,
+                                      DecoderContext decoderContext) {
+        if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+            return codec.decode(reader, decoderContext);
+        }
+        readExtra(reader, name, extra, decoderContext);
+        return null;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Enrollment enrollment, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        BsonDocument extra = enrollment.extra();
+        writeObjectId(writer, "_id", enrollment.id(), extra, encoderContext);
+        writeString(writer, "enrollmentType", enrollment.enrollmentType(), extra, encoderContext);
+        if (enrollment.date() != null) {
+            writer.writeDateTime("date", enrollment.date().getTime());
+        } else {
+            writeKept(writer, "date", extra, encoderContext);
+        }
+        writeObjectId(writer, "studentId", enrollment.studentId(), extra, encoderContext);
+        writeObjectId(writer, "courseId", enrollment.courseId(), extra, encoderContext);
+        if (enrollment.student() != null) {
+            writer.writeName("student");
+            studentCodec.encode(writer, enrollment.student(), encoderContext);
+        } else {
+            writeKept(writer, "student", extra, encoderContext);
+        }
+        if (enrollment.course() != null) {
+            writer.writeName("course");
+            courseCodec.encode(writer, enrollment.course(), encoderContext);
+        } else {
+            writeKept(writer, "course", extra, encoderContext);
+        }
+        writeString(writer, "grade", enrollment.grade(), extra, encoderContext);
+        writeExtra(writer, extra, FIELDS, encoderContext);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Enrollment> getEncoderClass() {
+        return Enrollment.class;
+    }
+}
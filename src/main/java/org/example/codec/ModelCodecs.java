@@ -0,0 +1,22 @@
+package org.example.codec;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * The codec registry for the model records, layered over the driver's default registry
+ * so Document, filters and updates keep working on the same collections.
+ */
+public final class ModelCodecs {
+    public static final StudentCodec STUDENT = new StudentCodec();
+    public static final CourseCodec COURSE = new CourseCodec();
+    public static final EnrollmentCodec ENROLLMENT = new EnrollmentCodec(STUDENT, COURSE);
+
+    public static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(STUDENT, COURSE, ENROLLMENT),
+            MongoClientSettings.getDefaultCodecRegistry());
+
+    private ModelCodecs() {
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.codec;
+
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.example.model.Student;
+
+import java.util.Set;
+
+import static org.example.codec.CodecSupport.readInt;
+import static org.example.codec.CodecSupport.readExtra;
+import static org.example.codec.CodecSupport.readObjectId;
+import static org.example.codec.CodecSupport.readString;
+import static org.example.codec.CodecSupport.writeExtra;
+import static org.example.codec.CodecSupport.writeInt;
+import static org.example.codec.CodecSupport.writeObjectId;
+import static org.example.codec.CodecSupport.writeString;
+
+/**
+ * Reads and writes {@link Student} directly from BSON, without an intermediate Document.
+ */
+public class StudentCodec implements Codec<Student> {
+    private static final Set<String> FIELDS = Set.of("_id", "name", "studentId", "email", "age");
+
+    @Override
+    public Student decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        String studentName = null;
+        String studentId = null;
+        String email = null;
+        Integer age = null;
+
+        BsonDocument extra = new BsonDocument();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            switch (name) {
+                case "_id" -> id = readObjectId(reader, name, extra, decoderContext);
+                case "name" -> studentName = readString(reader, name, extra, decoderContext);
+                case "studentId" -> studentId = readString(reader, name, extra, decoderContext);
+                case "email" -> email = readString(reader, name, extra, decoderContext);
+                case "age" -> age = readInt(reader, name, extra, decoderContext);
+                default -> readExtra(reader, name, extra, decoderContext);
+            }
+        }
+        reader.readEndDocument();
+        return new Student(id, studentName, studentId, email, age, extra);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Student student, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writeObjectId(writer, "_id", student.id(), student.extra(), encoderContext);
+        writeString(writer, "name", student.name(), student.extra(), encoderContext);
+        writeString(writer, "studentId", student.studentId(), student.extra(), encoderContext);
+        writeString(writer, "email", student.email(), student.extra(), encoderContext);
+        writeInt(writer, "age", student.age(), student.extra(), encoderContext);
+        writeExtra(writer, student.extra(), FIELDS, encoderContext);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Student> getEncoderClass() {
+        return Student.class;
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.config;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds {@link MongoClientSettings} from mongodb.properties. The connection string is applied
+ * first; every other key is optional and, when present, overrides the driver default:
+ * pool sizing and wait queue timeout ("mongodb.pool.*"), socket timeouts ("mongodb.socket.*"),
+ * and compression, read preference, write concern and retryable writes ("mongodb.client.*").
+ */
+public final class ClientSettingsFactory {
+
+    private ClientSettingsFactory() {
+    }
+
+    /**
+     * @param properties      the application properties
+     * @param poolListener    receives connection pool events, may be null
+     * @param commandListener receives command started, succeeded and failed events, may be null
+     */
+    public static MongoClientSettings build(Properties properties, ConnectionPoolListener poolListener,
+                                            CommandListener commandListener) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(properties.getProperty("mongodb.connection.string")));
+
+        if (commandListener != null) {
+            builder.addCommandListener(commandListener);
+        }
+
+        String appName = properties.getProperty("mongodb.client.appName");
+        if (appName != null) {
+            builder.applicationName(appName);
+        }
+
+        builder.applyToConnectionPoolSettings(pool -> {
+            Integer maxSize = intProperty(properties, "mongodb.pool.maxSize");
+            if (maxSize != null) {
+                pool.maxSize(maxSize);
+            }
+            Integer minSize = intProperty(properties, "mongodb.pool.minSize");
+            if (minSize != null) {
+                pool.minSize(minSize);
+            }
+            Integer maxConnecting = intProperty(properties, "mongodb.pool.maxConnecting");
+            if (maxConnecting != null) {
+                pool.maxConnecting(maxConnecting);
+            }
+            Integer maxWaitTime = intProperty(properties, "mongodb.pool.maxWaitTimeMs");
+            if (maxWaitTime != null) {
+                pool.maxWaitTime(maxWaitTime, TimeUnit.MILLISECONDS);
+            }
+            Integer maxIdleTime = intProperty(properties, "mongodb.pool.maxConnectionIdleTimeMs");
+            if (maxIdleTime != null) {
+                pool.maxConnectionIdleTime(maxIdleTime, TimeUnit.MILLISECONDS);
+            }
+            if (poolListener != null) {
+                pool.addConnectionPoolListener(poolListener);
+            }
+        });
+
+        builder.applyToSocketSettings(socket -> {
+            Integer connectTimeout = intProperty(properties, "mongodb.socket.connectTimeoutMs");
+            if (connectTimeout != null) {
+                socket.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+            }
+            Integer readTimeout = intProperty(properties, "mongodb.socket.readTimeoutMs");
+            if (readTimeout != null) {
+                socket.readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        String compressors = properties.getProperty("mongodb.client.compressors");
+        if (compressors != null && !compressors.isBlank()) {
+            builder.compressorList(parseCompressors(compressors));
+        }
+        String readPreference = properties.getProperty("mongodb.client.readPreference");
+        if (readPreference != null) {
+            builder.readPreference(parseReadPreference(readPreference));
+        }
+        String writeConcern = properties.getProperty("mongodb.client.writeConcern");
+        if (writeConcern != null) {
+            builder.writeConcern(parseWriteConcern(writeConcern));
+        }
+        String retryWrites = properties.getProperty("mongodb.client.retryWrites");
+        if (retryWrites != null) {
+            builder.retryWrites(Boolean.parseBoolean(retryWrites.trim()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses "majority", "unacknowledged" or a number of acknowledging members such as "1".
+     */
+    public static WriteConcern parseWriteConcern(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("majority")) {
+            return WriteConcern.MAJORITY;
+        }
+        if (trimmed.equalsIgnoreCase("unacknowledged")) {
+            return WriteConcern.UNACKNOWLEDGED;
+        }
+        try {
+            return new WriteConcern(Integer.parseInt(trimmed));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid write concern: " + value);
+        }
+    }
+
+    /**
+     * Parses a read preference mode name such as "primary" or "secondaryPreferred".
+     */
+    public static ReadPreference parseReadPreference(String value) {
+        return ReadPreference.valueOf(value.trim());
+    }
+
+    // Listed in order of preference; the server picks the first one it also supports
+    private static List<MongoCompressor> parseCompressors(String value) {
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : value.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "zstd" -> compressors.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> compressors.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> compressors.add(MongoCompressor.createZlibCompressor());
+                case "" -> {
+                }
+                default -> throw new IllegalArgumentException("Unknown compressor: " + name);
+            }
+        }
+        return compressors;
+    }
+
+    private static Integer intProperty(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number but was: " + value);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.config;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import org.example.exec.OperationType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Per-operation overrides of the client-wide read preference, read concern and write concern,
+ * configured as "mongodb.operation.&lt;operation&gt;.readPreference|readConcern|writeConcern".
+ * For example, bulk loads can use w:1 while grade updates wait for a majority, and rosters
+ * can be served by secondaries. Operations without overrides use the client settings.
+ */
+public class OperationSettings {
+
+    private record Overrides(ReadPreference readPreference, ReadConcern readConcern, WriteConcern writeConcern) {
+    }
+
+    private final Map<OperationType, Overrides> overrides = new EnumMap<>(OperationType.class);
+
+    public static OperationSettings fromProperties(Properties properties) {
+        OperationSettings settings = new OperationSettings();
+        for (OperationType type : OperationType.values()) {
+            String prefix = "mongodb.operation." + type.getPropertyName() + ".";
+            String readPreference = properties.getProperty(prefix + "readPreference");
+            String readConcern = properties.getProperty(prefix + "readConcern");
+            String writeConcern = properties.getProperty(prefix + "writeConcern");
+            if (readPreference == null && readConcern == null && writeConcern == null) {
+                continue;
+            }
+            settings.overrides.put(type, new Overrides(
+                    readPreference == null ? null : ClientSettingsFactory.parseReadPreference(readPreference),
+                    readConcern == null ? null : new ReadConcern(ReadConcernLevel.fromString(readConcern.trim())),
+                    writeConcern == null ? null : ClientSettingsFactory.parseWriteConcern(writeConcern)));
+        }
+        return settings;
+    }
+
+    /**
+     * Returns a view of the collection with the overrides for the operation applied.
+     */
+    public <T> MongoCollection<T> apply(OperationType type, MongoCollection<T> collection) {
+        Overrides override = overrides.get(type);
+        if (override == null) {
+            return collection;
+        }
+        MongoCollection<T> result = collection;
+        if (override.readPreference() != null) {
+            result = result.withReadPreference(override.readPreference());
+        }
+        if (override.readConcern() != null) {
+            result = result.withReadConcern(override.readConcern());
+        }
+        if (override.writeConcern() != null) {
+            result = result.withWriteConcern(override.writeConcern());
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #apply(OperationType, MongoCollection)} for the reactive driver's collections.
+     */
+    public <T> com.mongodb.reactivestreams.client.MongoCollection<T> apply(
+            OperationType type, com.mongodb.reactivestreams.client.MongoCollection<T> collection) {
+        Overrides override = overrides.get(type);
+        if (override == null) {
+            return collection;
+        }
+        com.mongodb.reactivestreams.client.MongoCollection<T> result = collection;
+        if (override.readPreference() != null) {
+            result = result.withReadPreference(override.readPreference());
+        }
+        if (override.readConcern() != null) {
+            result = result.withReadConcern(override.readConcern());
+        }
+        if (override.writeConcern() != null) {
+            result = result.withWriteConcern(override.writeConcern());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.enrollment;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.bulk.BulkLoadReport;
+import org.example.bulk.BulkLoader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Creates referenced enrollments in bulk from (studentId, courseId, grade) tuples.
+ * Requests are read in chunks; the business keys of a whole chunk are resolved with one
+ * $in query per collection, and the resulting documents are written through a {@link BulkLoader}.
+ */
+public class EnrollmentEngine {
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private final KeyResolver students;
+    private final KeyResolver courses;
+    private final BulkLoader loader;
+    private final int chunkSize;
+    private long skipped;
+
+    public EnrollmentEngine(MongoCollection<Document> studentsCollection,
+                            MongoCollection<Document> coursesCollection,
+                            BulkLoader enrollmentsLoader,
+                            int chunkSize) {
+        this.students = new KeyResolver(studentsCollection, "studentId");
+        this.courses = new KeyResolver(coursesCollection, "courseId");
+        this.loader = enrollmentsLoader;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Builds the complete studentId and courseId maps with one query each, so no
+     * lookups are needed while enrolling. Worth it when most students are enrolled.
+     */
+    public void preloadKeys() {
+        students.preloadAll();
+        courses.preloadAll();
+    }
+
+    /**
+     * Creates one referenced enrollment per request. Requests whose student or course
+     * does not exist are skipped and counted.
+     */
+    public BulkLoadReport enroll(Iterator<EnrollmentRequest> requests) {
+        return loader.load(new ResolvingIterator(requests));
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getLookupQueries() {
+        return students.getQueryCount() + courses.getQueryCount();
+    }
+
+    /**
+     * Turns requests into enrollment documents one chunk at a time, so that the
+     * key lookups for a chunk are done together before any of its documents are handed out.
+     */
+    private class ResolvingIterator implements Iterator<Document> {
+        private final Iterator<EnrollmentRequest> requests;
+        private final Queue<Document> ready = new ArrayDeque<>();
+
+        ResolvingIterator(Iterator<EnrollmentRequest> requests) {
+            this.requests = requests;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (ready.isEmpty() && requests.hasNext()) {
+                fillChunk();
+            }
+            return !ready.isEmpty();
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return ready.poll();
+        }
+
+        private void fillChunk() {
+            List<EnrollmentRequest> chunk = new ArrayList<>(chunkSize);
+            List<String> studentKeys = new ArrayList<>(chunkSize);
+            List<String> courseKeys = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && requests.hasNext()) {
+                EnrollmentRequest request = requests.next();
+                chunk.add(request);
+                studentKeys.add(request.studentId());
+                courseKeys.add(request.courseId());
+            }
+
+            students.resolveAll(studentKeys);
+            courses.resolveAll(courseKeys);
+
+            Date date = new Date();
+            for (EnrollmentRequest request : chunk) {
+                ObjectId studentObjId = students.get(request.studentId());
+                ObjectId courseObjId = courses.get(request.courseId());
+                if (studentObjId == null || courseObjId == null) {
+                    skipped++;
+                    continue;
+                }
+                ready.add(new Document()
+                        .append("enrollmentType", "referenced")
+                        .append("date", date)
+                        .append("studentId", studentObjId)
+                        .append("courseId", courseObjId)
+                        .append("grade", request.grade()));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.enrollment;
+
+import org.bson.Document;
+
+/**
+ * One enrollment to create, identified by business keys rather than ObjectIds.
+ *
+ * @param studentId the student's "studentId" value, e.g. "S1001"
+ * @param courseId  the course's "courseId" value, e.g. "CS101"
+ * @param grade     the grade to record, may be null
+ */
+public record EnrollmentRequest(String studentId, String courseId, String grade) {
+
+    /**
+     * Reads a request from an imported record with "studentId", "courseId" and "grade" fields.
+     */
+    public static EnrollmentRequest fromDocument(Document document) {
+        Object studentId = document.get("studentId");
+        Object courseId = document.get("courseId");
+        if (studentId == null || courseId == null) {
+            throw new IllegalArgumentException("Enrollment record needs studentId and courseId: " + document.toJson());
+        }
+        Object grade = document.get("grade");
+        return new EnrollmentRequest(studentId.toString(), courseId.toString(), grade == null ? null : grade.toString());
+    }
+}
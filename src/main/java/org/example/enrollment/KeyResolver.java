@@ -0,0 +1,110 @@
+package org.example.enrollment;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps business keys such as "studentId" or "courseId" to document ObjectIds.
+ * Keys that are not known yet are fetched with a single $in query per call.
+ * Found keys are remembered, up to a limit after which the least recently used are dropped;
+ * keys with no document are not remembered, so a key created later is still found.
+ */
+public class KeyResolver {
+    public static final int DEFAULT_MAX_KEYS = 1_000_000;
+
+    private final MongoCollection<Document> collection;
+    private final String keyField;
+    private final Bson projection;
+    private final Map<String, ObjectId> resolved;
+    private long queries;
+
+    /**
+     * @param maxKeys how many resolved keys to remember; must be at least the number of keys
+     *                passed to one {@link #resolveAll} call
+     */
+    public KeyResolver(MongoCollection<Document> collection, String keyField, int maxKeys) {
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("Max keys must be positive");
+        }
+        this.collection = collection;
+        this.keyField = keyField;
+        this.projection = Projections.include("_id", keyField);
+        this.resolved = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ObjectId> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    public KeyResolver(MongoCollection<Document> collection, String keyField) {
+        this(collection, keyField, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * Loads every key in the collection up front with one streaming query. Beyond the key limit
+     * only the last keys read are kept.
+     */
+    public void preloadAll() {
+        queries++;
+        try (MongoCursor<Document> cursor = collection.find().projection(projection).batchSize(10_000).iterator()) {
+            while (cursor.hasNext()) {
+                remember(cursor.next());
+            }
+        }
+    }
+
+    /**
+     * Makes sure every given key has been looked up, using one $in query for the unknown ones.
+     */
+    public void resolveAll(Collection<String> keys) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (!resolved.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        queries++;
+        List<String> values = new ArrayList<>(missing);
+        try (MongoCursor<Document> cursor = collection.find(Filters.in(keyField, values))
+                .projection(projection).batchSize(values.size()).iterator()) {
+            while (cursor.hasNext()) {
+                remember(cursor.next());
+            }
+        }
+    }
+
+    /**
+     * Returns the ObjectId for an already resolved key, or null if no document has that key.
+     */
+    public ObjectId get(String key) {
+        return resolved.get(key);
+    }
+
+    public long getQueryCount() {
+        return queries;
+    }
+
+    private void remember(Document document) {
+        Object key = document.get(keyField);
+        if (key != null) {
+            resolved.put(key.toString(), document.getObjectId("_id"));
+        }
+    }
+}
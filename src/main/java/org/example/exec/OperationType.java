@@ -0,0 +1,36 @@
+package org.example.exec;
+
+/**
+ * The kinds of database operation the application runs. Concurrency limits and
+ * per-operation client settings are configured per type.
+ */
+public enum OperationType {
+    BULK_LOAD("bulkLoad"),
+    ENROLL("enroll"),
+    ROSTER("roster"),
+    TRANSCRIPT("transcript"),
+    STUDENT_UPDATE("studentUpdate"),
+    GRADE_UPDATE("gradeUpdate");
+
+    private final String propertyName;
+
+    OperationType(String propertyName) {
+        this.propertyName = propertyName;
+    }
+
+    /**
+     * The name used for this operation in property keys, e.g. "gradeUpdate".
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public static OperationType fromPropertyName(String name) {
+        for (OperationType type : values()) {
+            if (type.propertyName.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+}
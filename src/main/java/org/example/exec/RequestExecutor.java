@@ -0,0 +1,209 @@
+package org.example.exec;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs each request on its own virtual thread, so blocking driver calls cost a parked virtual
+ * thread instead of a platform thread. Every operation type has its own concurrency cap; requests
+ * over the cap wait (queued) for a permit, so one kind of load cannot take the whole connection pool.
+ * Caps come from "mongodb.executor.maxConcurrent.&lt;operation&gt;" properties.
+ */
+public class RequestExecutor implements AutoCloseable {
+    public static final int DEFAULT_MAX_CONCURRENT = 100;
+
+    private static final class OperationState {
+        final Semaphore permits;
+        final int limit;
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        OperationState(int limit) {
+            this.limit = limit;
+            this.permits = new Semaphore(limit, true);
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<OperationType, OperationState> states = new EnumMap<>(OperationType.class);
+
+    public RequestExecutor(Map<OperationType, Integer> limits) {
+        for (OperationType type : OperationType.values()) {
+            int limit = limits.getOrDefault(type, DEFAULT_MAX_CONCURRENT);
+            if (limit < 1) {
+                throw new IllegalArgumentException("Concurrency limit for " + type.getPropertyName() + " must be positive");
+            }
+            states.put(type, new OperationState(limit));
+        }
+    }
+
+    /**
+     * Reads the per-operation limits from properties, using the default for any that are missing.
+     */
+    public static RequestExecutor fromProperties(Properties properties) {
+        Map<OperationType, Integer> limits = new EnumMap<>(OperationType.class);
+        for (OperationType type : OperationType.values()) {
+            String value = properties.getProperty("mongodb.executor.maxConcurrent." + type.getPropertyName());
+            if (value != null) {
+                limits.put(type, Integer.parseInt(value.trim()));
+            }
+        }
+        return new RequestExecutor(limits);
+    }
+
+    /**
+     * Runs the request on a new virtual thread once a permit for its operation type is free.
+     */
+    public <T> CompletableFuture<T> submit(OperationType type, Callable<T> request) {
+        OperationState state = states.get(type);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        state.queued.incrementAndGet();
+        try {
+            executor.execute(() -> run(state, request, future));
+        } catch (RejectedExecutionException e) {
+            state.queued.decrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <T> void run(OperationState state, Callable<T> request, CompletableFuture<T> future) {
+        boolean acquired = false;
+        try {
+            state.permits.acquire();
+            acquired = true;
+            state.queued.decrementAndGet();
+            state.inFlight.incrementAndGet();
+            future.complete(request.call());
+            state.completed.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } catch (Exception e) {
+            state.failed.increment();
+            future.completeExceptionally(e);
+        } finally {
+            if (acquired) {
+                state.inFlight.decrementAndGet();
+                state.permits.release();
+            } else {
+                state.queued.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * One permit of an operation type, held for a request that spans several tasks, such as a
+     * streamed cursor read in chunks. Tasks run on virtual threads without taking more permits.
+     */
+    public final class Lease implements Executor {
+        private final OperationState state;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(OperationState state) {
+            this.state = state;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(task);
+        }
+
+        /**
+         * Returns the permit and counts the request as completed or failed. Later calls do nothing.
+         */
+        public void release(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                if (failed) {
+                    state.failed.increment();
+                } else {
+                    state.completed.increment();
+                }
+                state.inFlight.decrementAndGet();
+                state.permits.release();
+            }
+        }
+    }
+
+    /**
+     * Waits on a virtual thread for a permit of the operation type and completes with a lease
+     * holding it; the request counts as in flight until the lease is released.
+     */
+    public CompletableFuture<Lease> acquire(OperationType type) {
+        OperationState state = states.get(type);
+        CompletableFuture<Lease> future = new CompletableFuture<>();
+        state.queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    state.permits.acquire();
+                } catch (InterruptedException e) {
+                    state.queued.decrementAndGet();
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                state.queued.decrementAndGet();
+                state.inFlight.incrementAndGet();
+                future.complete(new Lease(state));
+            });
+        } catch (RejectedExecutionException e) {
+            state.queued.decrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Requests of this type waiting for a permit.
+     */
+    public int getQueueDepth(OperationType type) {
+        return states.get(type).queued.get();
+    }
+
+    /**
+     * Requests of this type currently running.
+     */
+    public int getInFlight(OperationType type) {
+        return states.get(type).inFlight.get();
+    }
+
+    public long getCompleted(OperationType type) {
+        return states.get(type).completed.sum();
+    }
+
+    public long getFailed(OperationType type) {
+        return states.get(type).failed.sum();
+    }
+
+    public int getLimit(OperationType type) {
+        return states.get(type).limit;
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for running ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.export;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.example.query.EnrollmentQueries;
+import org.example.query.IdRange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streams collections, rosters and transcripts to NDJSON or CSV files. Rows come off the cursor
+ * as {@link RawBsonDocument}s and go straight to the output, so memory use does not depend on the
+ * size of the export. An export can be split into _id range partitions, each read by its own
+ * cursor and written to its own file in parallel (see {@link IdRange#split}). Roster and transcript
+ * partitions are balanced over the matching enrollments, not the whole collection.
+ */
+public class DocumentExporter {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final List<String> ROSTER_COLUMNS = Arrays.asList(
+            "enrollmentId", "enrollmentType", "date", "grade", "student.studentId", "student.name", "student.email");
+    private static final List<String> TRANSCRIPT_COLUMNS = Arrays.asList(
+            "enrollmentId", "enrollmentType", "date", "grade", "course.courseId", "course.name", "course.credits",
+            "course.instructor");
+
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final int batchSize;
+
+    /**
+     * @param batchSize cursor batch size for every export query
+     */
+    public DocumentExporter(MongoCollection<Document> studentsCollection,
+                            MongoCollection<Document> coursesCollection,
+                            MongoCollection<Document> enrollmentsCollection,
+                            int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Exports every document of a collection.
+     *
+     * @param collection the collection to export
+     * @param fields     fields to keep (and the CSV columns); empty for whole documents
+     * @param out        the output file, its extension picks the format
+     * @param partitions number of _id ranges exported in parallel, each to its own file
+     */
+    public ExportReport exportCollection(MongoCollection<Document> collection, List<String> fields, Path out,
+                                         int partitions) throws IOException {
+        List<Bson> pipeline = new ArrayList<>();
+        if (!fields.isEmpty()) {
+            pipeline.add(Aggregates.project(Projections.include(fields)));
+        }
+        return export(collection, new Document(), pipeline, fields, out, partitions);
+    }
+
+    /**
+     * Exports the roster of a course in the row shape of {@link EnrollmentQueries#rosterForCourse(String)}.
+     * CSV columns default to the enrollment and student fields.
+     */
+    public ExportReport exportRoster(String courseId, List<String> fields, Path out, int partitions)
+            throws IOException {
+        Object courseObjId = findId(coursesCollection, "courseId", courseId);
+        Bson filter = courseObjId == null ? Filters.expr(false) : EnrollmentQueries.rosterFilter(courseObjId);
+        List<Bson> pipeline = courseObjId == null
+                ? Collections.singletonList(Aggregates.match(filter))
+                : EnrollmentQueries.rosterPipeline(studentsCollection.getNamespace().getCollectionName(), courseObjId);
+        return export(enrollmentsCollection, filter, withFields(pipeline, fields),
+                fields.isEmpty() ? ROSTER_COLUMNS : fields, out, partitions);
+    }
+
+    /**
+     * Exports the transcript of a student in the row shape of {@link EnrollmentQueries#transcriptForStudent(String)}.
+     * CSV columns default to the enrollment and course fields.
+     */
+    public ExportReport exportTranscript(String studentId, List<String> fields, Path out, int partitions)
+            throws IOException {
+        Object studentObjId = findId(studentsCollection, "studentId", studentId);
+        Bson filter = studentObjId == null ? Filters.expr(false) : EnrollmentQueries.transcriptFilter(studentObjId);
+        List<Bson> pipeline = studentObjId == null
+                ? Collections.singletonList(Aggregates.match(filter))
+                : EnrollmentQueries.transcriptPipeline(coursesCollection.getNamespace().getCollectionName(), studentObjId);
+        return export(enrollmentsCollection, filter, withFields(pipeline, fields),
+                fields.isEmpty() ? TRANSCRIPT_COLUMNS : fields, out, partitions);
+    }
+
+    // The filter selects the exported documents, so the partitions split those rather than the whole collection
+    private ExportReport export(MongoCollection<Document> collection, Bson filter, List<Bson> pipeline,
+                                List<String> columns, Path out, int partitions) throws IOException {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be positive");
+        }
+        ExportFormat format = ExportFormat.fromPath(out);
+        MongoCollection<RawBsonDocument> rawCollection = collection.withDocumentClass(RawBsonDocument.class);
+        List<MemoryPoolMXBean> heapPools = heapPools();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+
+        List<IdRange> ranges = IdRange.split(collection, filter, partitions);
+        List<Future<long[]>> results = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(ranges.size())) {
+            for (int i = 0; i < ranges.size(); i++) {
+                Path file = ranges.size() == 1 ? out : partitionFile(out, i);
+                List<Bson> partitionPipeline = new ArrayList<>();
+                if (ranges.size() > 1) {
+                    // Placed first so the server merges it with the pipeline's own $match and uses the _id index
+                    partitionPipeline.add(Aggregates.match(ranges.get(i).filter()));
+                }
+                partitionPipeline.addAll(pipeline);
+                files.add(file.toString());
+                results.add(executor.submit(() -> exportPartition(rawCollection, partitionPipeline, file, format, columns)));
+            }
+        }
+
+        long rows = 0;
+        long bytes = 0;
+        for (Future<long[]> result : results) {
+            try {
+                long[] counts = result.get();
+                rows += counts[0];
+                bytes += counts[1];
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Export interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                throw new IllegalStateException("Export failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        return new ExportReport(files, rows, bytes, elapsed, peakHeap);
+    }
+
+    // Returns {rows, BSON bytes}
+    private long[] exportPartition(MongoCollection<RawBsonDocument> collection, List<Bson> pipeline, Path file,
+                                   ExportFormat format, List<String> columns) {
+        long rows = 0;
+        try (MongoCursor<RawBsonDocument> cursor = collection.aggregate(pipeline).batchSize(batchSize).iterator();
+             ExportWriter writer = ExportWriter.open(file, format, columns)) {
+            while (cursor.hasNext()) {
+                writer.write(cursor.next());
+                rows++;
+            }
+            return new long[]{rows, writer.getBsonBytes()};
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Bson> withFields(List<Bson> pipeline, List<String> fields) {
+        if (fields.isEmpty()) {
+            return pipeline;
+        }
+        List<Bson> projected = new ArrayList<>(pipeline);
+        projected.add(Aggregates.project(Projections.include(fields)));
+        return projected;
+    }
+
+    // "enrollments.ndjson" becomes "enrollments-part-0.ndjson"
+    private static Path partitionFile(Path out, int index) {
+        String name = out.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String partName = dot < 0
+                ? name + "-part-" + index
+                : name.substring(0, dot) + "-part-" + index + name.substring(dot);
+        return out.resolveSibling(partName);
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    // The _id is returned as stored, whatever its type
+    private static Object findId(MongoCollection<Document> collection, String keyField, String key) {
+        Document document = collection.find(Filters.eq(keyField, key)).projection(Projections.include("_id")).first();
+        return document == null ? null : document.get("_id");
+    }
+}
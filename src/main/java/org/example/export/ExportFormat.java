@@ -0,0 +1,19 @@
+package org.example.export;
+
+import java.nio.file.Path;
+
+/**
+ * Output formats for {@link DocumentExporter}.
+ */
+public enum ExportFormat {
+    NDJSON,
+    CSV;
+
+    /**
+     * Picks the format from the file extension the same way the importer does:
+     * ".csv" is CSV, anything else NDJSON.
+     */
+    public static ExportFormat fromPath(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".csv") ? CSV : NDJSON;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.export;
+
+import org.example.storage.StorageAnalytics;
+
+import java.util.List;
+
+/**
+ * Summary of one export: rows and bytes written, throughput and the peak heap used while it ran.
+ */
+public class ExportReport {
+    private final List<String> files;
+    private final long rows;
+    private final long bsonBytes;
+    private final long elapsedNanos;
+    private final long peakHeapBytes;
+
+    ExportReport(List<String> files, long rows, long bsonBytes, long elapsedNanos, long peakHeapBytes) {
+        this.files = files;
+        this.rows = rows;
+        this.bsonBytes = bsonBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    /**
+     * Sum of the peak usage of each heap pool during the export, an upper bound on the peak heap.
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public void print(String label) {
+        System.out.println("\n--- EXPORT: " + label.toUpperCase() + " ---");
+        for (String file : files) {
+            System.out.println("  - Wrote: " + file);
+        }
+        System.out.println("  - Rows: " + rows + " (" + StorageAnalytics.formatBytes(bsonBytes) + " of BSON)");
+        System.out.println("  - Elapsed: " + String.format("%.2f", elapsedNanos / 1_000_000_000.0) + " s");
+        System.out.println("  - Throughput: " + String.format("%.0f", getRowsPerSecond()) + " rows/sec");
+        System.out.println("  - Peak heap: " + StorageAnalytics.formatBytes(peakHeapBytes));
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.export;
+
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes raw BSON rows to a file without decoding them into {@link org.bson.Document}s.
+ * NDJSON rows are piped from the row's BSON reader through a {@link JsonWriter} into the output buffer;
+ * CSV rows read only the requested columns, which may be dotted paths such as "student.name".
+ */
+abstract class ExportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final JsonWriterSettings RELAXED = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+    protected final Writer out;
+    private long bsonBytes;
+
+    private ExportWriter(Path path) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * @param columns the CSV columns; if empty, the top-level fields of the first row are used. Ignored for NDJSON.
+     */
+    static ExportWriter open(Path path, ExportFormat format, List<String> columns) throws IOException {
+        return format == ExportFormat.CSV ? new Csv(path, columns) : new Ndjson(path);
+    }
+
+    abstract void write(RawBsonDocument row) throws IOException;
+
+    /**
+     * Encoded size of the rows written, in BSON bytes.
+     */
+    long getBsonBytes() {
+        return bsonBytes;
+    }
+
+    protected void countBytes(RawBsonDocument row) {
+        bsonBytes += row.getByteBuffer().remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static final class Ndjson extends ExportWriter {
+
+        Ndjson(Path path) throws IOException {
+            super(path);
+        }
+
+        // A JsonWriter cannot start a second top-level document, so each row gets a small one
+        // that writes straight into the shared buffer; no per-row String is built
+        @Override
+        void write(RawBsonDocument row) throws IOException {
+            try (BsonReader reader = row.asBsonReader()) {
+                new JsonWriter(out, RELAXED).pipe(reader);
+            }
+            out.write('\n');
+            countBytes(row);
+        }
+    }
+
+    private static final class Csv extends ExportWriter {
+        private List<String[]> paths;
+
+        Csv(Path path, List<String> columns) throws IOException {
+            super(path);
+            if (!columns.isEmpty()) {
+                writeHeader(columns);
+            }
+        }
+
+        @Override
+        void write(RawBsonDocument row) throws IOException {
+            if (paths == null) {
+                writeHeader(new ArrayList<>(row.keySet()));
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeValue(lookup(row, paths.get(i)));
+            }
+            out.write('\n');
+            countBytes(row);
+        }
+
+        private void writeHeader(List<String> columns) throws IOException {
+            paths = new ArrayList<>(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeText(columns.get(i));
+                paths.add(columns.get(i).split("\\."));
+            }
+            out.write('\n');
+        }
+
+        private static BsonValue lookup(BsonDocument row, String[] path) {
+            BsonValue value = row;
+            for (String field : path) {
+                if (value == null || !value.isDocument()) {
+                    return null;
+                }
+                value = value.asDocument().get(field);
+            }
+            return value;
+        }
+
+        private void writeValue(BsonValue value) throws IOException {
+            if (value == null || value.isNull()) {
+                return;
+            }
+            switch (value.getBsonType()) {
+                case STRING -> writeText(value.asString().getValue());
+                case OBJECT_ID -> out.write(value.asObjectId().getValue().toHexString());
+                case INT32 -> out.write(Integer.toString(value.asInt32().getValue()));
+                case INT64 -> out.write(Long.toString(value.asInt64().getValue()));
+                case DOUBLE -> out.write(Double.toString(value.asDouble().getValue()));
+                case BOOLEAN -> out.write(Boolean.toString(value.asBoolean().getValue()));
+                case DATE_TIME -> out.write(Instant.ofEpochMilli(value.asDateTime().getValue()).toString());
+                case DOCUMENT -> writeText(value.asDocument().toJson(RELAXED));
+                default -> {
+                    // Arrays and less common types are written as their JSON value
+                    String json = new BsonDocument("v", value).toJson(RELAXED);
+                    writeText(json.substring("{\"v\": ".length(), json.length() - 1));
+                }
+            }
+        }
+
+        // Quotes only when needed, doubling embedded quotes, as RecordReader expects
+        private void writeText(String text) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(text);
+                return;
+            }
+            out.write('"');
+            out.write(text.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
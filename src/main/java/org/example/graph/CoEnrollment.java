@@ -0,0 +1,8 @@
+package org.example.graph;
+
+/**
+ * Two students or two courses, by their dense index in an {@link EnrollmentGraph},
+ * and how many courses or students they share.
+ */
+public record CoEnrollment(int first, int second, int shared) {
+}
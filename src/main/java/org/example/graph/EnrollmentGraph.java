@@ -0,0 +1,273 @@
+package org.example.graph;
+
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only snapshot of who is enrolled in what, built by {@link EnrollmentGraphLoader}.
+ * Students and courses are numbered 0..n-1 in _id order, and enrollments are held twice in
+ * compressed sparse row form: for student s, its courses are {@code studentCourses[studentOffsets[s]
+ * .. studentOffsets[s + 1])}, sorted and without duplicates, and the same the other way round for
+ * courses. Everything is in primitive arrays, so 1M students with 10 enrollments each take roughly
+ * 100 MB plus the business keys, and the queries below only touch ints.
+ */
+public class EnrollmentGraph {
+    // Ties go to the lower index
+    private static final Comparator<CoEnrollment> SMALLEST_FIRST =
+            Comparator.comparingInt(CoEnrollment::shared).thenComparing(CoEnrollment::second, Comparator.reverseOrder());
+    // More chunks than threads evens out courses with very different roster sizes
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // _ids as their first 8 and last 4 bytes, ascending, for binary search
+    private final long[] studentIdHigh;
+    private final int[] studentIdLow;
+    private final long[] courseIdHigh;
+    private final int[] courseIdLow;
+    private final String[] studentKeys;
+    private final String[] courseKeys;
+    private final int[] studentOffsets;
+    private final int[] studentCourses;
+    private final int[] courseOffsets;
+    private final int[] courseStudents;
+    private final int[] prerequisiteOffsets;
+    private final int[] prerequisites;
+
+    EnrollmentGraph(long[] studentIdHigh, int[] studentIdLow, String[] studentKeys,
+                    long[] courseIdHigh, int[] courseIdLow, String[] courseKeys,
+                    int[] studentOffsets, int[] studentCourses, int[] courseOffsets, int[] courseStudents,
+                    int[] prerequisiteOffsets, int[] prerequisites) {
+        this.studentIdHigh = studentIdHigh;
+        this.studentIdLow = studentIdLow;
+        this.studentKeys = studentKeys;
+        this.courseIdHigh = courseIdHigh;
+        this.courseIdLow = courseIdLow;
+        this.courseKeys = courseKeys;
+        this.studentOffsets = studentOffsets;
+        this.studentCourses = studentCourses;
+        this.courseOffsets = courseOffsets;
+        this.courseStudents = courseStudents;
+        this.prerequisiteOffsets = prerequisiteOffsets;
+        this.prerequisites = prerequisites;
+    }
+
+    public int getStudentCount() {
+        return studentKeys.length;
+    }
+
+    public int getCourseCount() {
+        return courseKeys.length;
+    }
+
+    /**
+     * Distinct (student, course) pairs.
+     */
+    public int getEnrollmentCount() {
+        return studentCourses.length;
+    }
+
+    /**
+     * @return the student's dense index, or -1 if it is not in the snapshot
+     */
+    public int studentIndex(ObjectId id) {
+        return EnrollmentGraphLoader.search(studentIdHigh, studentIdLow, studentIdHigh.length, id);
+    }
+
+    /**
+     * @return the course's dense index, or -1 if it is not in the snapshot
+     */
+    public int courseIndex(ObjectId id) {
+        return EnrollmentGraphLoader.search(courseIdHigh, courseIdLow, courseIdHigh.length, id);
+    }
+
+    public String studentKey(int student) {
+        return studentKeys[student];
+    }
+
+    public String courseKey(int course) {
+        return courseKeys[course];
+    }
+
+    public int[] coursesOf(int student) {
+        return Arrays.copyOfRange(studentCourses, studentOffsets[student], studentOffsets[student + 1]);
+    }
+
+    public int[] studentsOf(int course) {
+        return Arrays.copyOfRange(courseStudents, courseOffsets[course], courseOffsets[course + 1]);
+    }
+
+    /**
+     * Number of courses both students take.
+     */
+    public int sharedCourses(int first, int second) {
+        int i = studentOffsets[first];
+        int iEnd = studentOffsets[first + 1];
+        int j = studentOffsets[second];
+        int jEnd = studentOffsets[second + 1];
+        int shared = 0;
+        while (i < iEnd && j < jEnd) {
+            int a = studentCourses[i];
+            int b = studentCourses[j];
+            if (a == b) {
+                shared++;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * The students who share the most courses with the given one, most shared first.
+     */
+    public List<CoEnrollment> coEnrolledStudents(int student, int limit) {
+        int[] shared = new int[getStudentCount()];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int i = studentOffsets[student]; i < studentOffsets[student + 1]; i++) {
+            int course = studentCourses[i];
+            for (int j = courseOffsets[course]; j < courseOffsets[course + 1]; j++) {
+                int other = courseStudents[j];
+                if (other != student && shared[other]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = other;
+                }
+            }
+        }
+        PriorityQueue<CoEnrollment> top = new PriorityQueue<>(SMALLEST_FIRST);
+        for (int i = 0; i < touchedCount; i++) {
+            offer(top, new CoEnrollment(student, touched[i], shared[touched[i]]), limit);
+        }
+        return sortedDescending(top);
+    }
+
+    /**
+     * The course pairs taken together by the most students, most shared first. Courses are split
+     * into chunks counted in parallel, each with its own counter array that is dropped when the chunk
+     * is done; a course only counts partners with a higher index, so every pair is counted once.
+     */
+    public List<CoEnrollment> topCoursePairs(int limit) {
+        int courseCount = getCourseCount();
+        int chunks = Math.min(courseCount, ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD);
+        List<CoEnrollment> candidates = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    int[] counts = new int[courseCount];
+                    List<CoEnrollment> partners = new ArrayList<>();
+                    for (int course = (int) ((long) courseCount * chunk / chunks),
+                         end = (int) ((long) courseCount * (chunk + 1) / chunks); course < end; course++) {
+                        partners.addAll(coursePartners(course, counts, limit));
+                    }
+                    return partners;
+                })
+                .flatMap(List::stream)
+                .toList();
+        PriorityQueue<CoEnrollment> top = new PriorityQueue<>(SMALLEST_FIRST);
+        for (CoEnrollment candidate : candidates) {
+            offer(top, candidate, limit);
+        }
+        return sortedDescending(top);
+    }
+
+    /**
+     * For each course, how many of its students are not enrolled in one or more of its prerequisites.
+     * Students are checked in parallel.
+     */
+    public int[] studentsMissingPrerequisites() {
+        AtomicIntegerArray missing = new AtomicIntegerArray(getCourseCount());
+        IntStream.range(0, getStudentCount()).parallel().forEach(student -> {
+            int from = studentOffsets[student];
+            int to = studentOffsets[student + 1];
+            for (int i = from; i < to; i++) {
+                int course = studentCourses[i];
+                for (int p = prerequisiteOffsets[course]; p < prerequisiteOffsets[course + 1]; p++) {
+                    if (Arrays.binarySearch(studentCourses, from, to, prerequisites[p]) < 0) {
+                        missing.incrementAndGet(course);
+                        break;
+                    }
+                }
+            }
+        });
+        int[] result = new int[getCourseCount()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = missing.get(i);
+        }
+        return result;
+    }
+
+    public boolean hasPrerequisites() {
+        return prerequisites.length > 0;
+    }
+
+    /**
+     * Approximate heap used by the snapshot, counting the business keys as compact Latin-1 strings.
+     */
+    public long sizeInBytes() {
+        long bytes = 8L * (studentIdHigh.length + courseIdHigh.length)
+                + 4L * (studentIdLow.length + courseIdLow.length)
+                + 4L * (studentOffsets.length + studentCourses.length + courseOffsets.length + courseStudents.length)
+                + 4L * (prerequisiteOffsets.length + prerequisites.length);
+        for (String key : studentKeys) {
+            bytes += 56 + key.length();
+        }
+        for (String key : courseKeys) {
+            bytes += 56 + key.length();
+        }
+        return bytes;
+    }
+
+    private List<CoEnrollment> coursePartners(int course, int[] counts, int limit) {
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int i = courseOffsets[course]; i < courseOffsets[course + 1]; i++) {
+            int student = courseStudents[i];
+            for (int j = studentOffsets[student + 1] - 1; j >= studentOffsets[student]; j--) {
+                int other = studentCourses[j];
+                // Adjacency is sorted, so everything from here down is at or below this course
+                if (other <= course) {
+                    break;
+                }
+                if (counts[other]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = other;
+                }
+            }
+        }
+        PriorityQueue<CoEnrollment> top = new PriorityQueue<>(SMALLEST_FIRST);
+        for (int i = 0; i < touchedCount; i++) {
+            int other = touched[i];
+            offer(top, new CoEnrollment(course, other, counts[other]), limit);
+            counts[other] = 0;
+        }
+        return new ArrayList<>(top);
+    }
+
+    private static void offer(PriorityQueue<CoEnrollment> top, CoEnrollment candidate, int limit) {
+        if (top.size() < limit) {
+            top.add(candidate);
+        } else if (limit > 0 && SMALLEST_FIRST.compare(candidate, top.peek()) > 0) {
+            top.poll();
+            top.add(candidate);
+        }
+    }
+
+    private static List<CoEnrollment> sortedDescending(PriorityQueue<CoEnrollment> top) {
+        List<CoEnrollment> result = new ArrayList<>(top);
+        result.sort(SMALLEST_FIRST.reversed());
+        return result;
+    }
+}
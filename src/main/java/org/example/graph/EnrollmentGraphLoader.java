@@ -0,0 +1,288 @@
+package org.example.graph;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Builds an {@link EnrollmentGraph} by streaming students and courses in _id order and then every
+ * enrollment once. Referenced and embedded enrollments both become (student, course) index pairs;
+ * enrollments whose student or course no longer exists are counted and left out. Courses may list
+ * the business keys of their prerequisites in a "prerequisites" array.
+ */
+public class EnrollmentGraphLoader {
+    private static final int BATCH_SIZE = 10_000;
+
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+    private long skipped;
+    private long loadNanos;
+
+    public EnrollmentGraphLoader(MongoCollection<Document> studentsCollection,
+                                 MongoCollection<Document> coursesCollection,
+                                 MongoCollection<Document> enrollmentsCollection) {
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+    }
+
+    /**
+     * Reads all three collections and builds the snapshot.
+     */
+    public EnrollmentGraph load() {
+        long start = System.nanoTime();
+        skipped = 0;
+
+        IdTable students = readIds(studentsCollection, "studentId", null);
+        List<List<String>> prerequisiteKeys = new ArrayList<>();
+        IdTable courses = readIds(coursesCollection, "courseId", prerequisiteKeys);
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, enrollmentsCollection.estimatedDocumentCount()));
+        int[] edgeStudents = new int[capacity];
+        int[] edgeCourses = new int[capacity];
+        int edges = 0;
+        try (MongoCursor<Document> cursor = enrollmentsCollection.find()
+                .projection(Projections.include("studentId", "courseId", "student._id", "course._id"))
+                .batchSize(BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document enrollment = cursor.next();
+                int student = students.indexOf(referencedId(enrollment, "studentId", "student"));
+                int course = courses.indexOf(referencedId(enrollment, "courseId", "course"));
+                if (student < 0 || course < 0) {
+                    skipped++;
+                    continue;
+                }
+                if (edges == edgeStudents.length) {
+                    edgeStudents = Arrays.copyOf(edgeStudents, edges + (edges >> 1));
+                    edgeCourses = Arrays.copyOf(edgeCourses, edgeStudents.length);
+                }
+                edgeStudents[edges] = student;
+                edgeCourses[edges] = course;
+                edges++;
+            }
+        }
+
+        int[] studentOffsets = new int[students.size() + 1];
+        int[] studentCourses = group(edgeStudents, edgeCourses, edges, studentOffsets);
+        int[] unique = dedupe(studentOffsets, studentCourses);
+        int[] courseOffsets = new int[courses.size() + 1];
+        int[] courseStudents = invert(studentOffsets, unique, courseOffsets);
+
+        int[] prerequisiteOffsets = new int[courses.size() + 1];
+        List<Integer> prerequisites = new ArrayList<>();
+        Map<String, Integer> courseByKey = new HashMap<>();
+        for (int i = 0; i < courses.size(); i++) {
+            courseByKey.put(courses.keys[i], i);
+        }
+        for (int i = 0; i < courses.size(); i++) {
+            for (String key : prerequisiteKeys.get(i)) {
+                Integer prerequisite = courseByKey.get(key);
+                if (prerequisite != null) {
+                    prerequisites.add(prerequisite);
+                }
+            }
+            prerequisiteOffsets[i + 1] = prerequisites.size();
+        }
+
+        loadNanos = System.nanoTime() - start;
+        return new EnrollmentGraph(students.high, students.low, students.keys,
+                courses.high, courses.low, courses.keys,
+                studentOffsets, unique, courseOffsets, courseStudents,
+                prerequisiteOffsets, prerequisites.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Enrollments left out of the last snapshot because their student or course is missing.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * Binary search for an _id in the first {@code size} entries of ascending split _ids.
+     *
+     * @return its index, or -1
+     */
+    static int search(long[] high, int[] low, int size, ObjectId id) {
+        if (id == null) {
+            return -1;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(id.toByteArray());
+        long idHigh = bytes.getLong(0);
+        int idLow = bytes.getInt(8);
+        int from = 0;
+        int to = size - 1;
+        while (from <= to) {
+            int mid = (from + to) >>> 1;
+            int compare = Long.compareUnsigned(high[mid], idHigh);
+            if (compare == 0) {
+                compare = Integer.compareUnsigned(low[mid], idLow);
+            }
+            if (compare < 0) {
+                from = mid + 1;
+            } else if (compare > 0) {
+                to = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static ObjectId referencedId(Document enrollment, String referenceField, String embeddedField) {
+        Object reference = enrollment.get(referenceField);
+        if (reference instanceof ObjectId id) {
+            return id;
+        }
+        Document embedded = enrollment.get(embeddedField, Document.class);
+        return embedded != null && embedded.get("_id") instanceof ObjectId id ? id : null;
+    }
+
+    // Counting sort of the edges by student; each student's courses end up in scan order
+    private static int[] group(int[] owners, int[] targets, int edges, int[] offsets) {
+        for (int i = 0; i < edges; i++) {
+            offsets[owners[i] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        int[] grouped = new int[edges];
+        for (int i = 0; i < edges; i++) {
+            grouped[next[owners[i]]++] = targets[i];
+        }
+        return grouped;
+    }
+
+    // Sorts each student's courses and drops repeats, rewriting the offsets to match
+    private static int[] dedupe(int[] offsets, int[] values) {
+        int owners = offsets.length - 1;
+        int[] uniqueCounts = new int[owners];
+        IntStream.range(0, owners).parallel().forEach(owner -> {
+            int from = offsets[owner];
+            int to = offsets[owner + 1];
+            Arrays.sort(values, from, to);
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (i == from || values[i] != values[i - 1]) {
+                    values[from + count++] = values[i];
+                }
+            }
+            uniqueCounts[owner] = count;
+        });
+        int total = 0;
+        for (int count : uniqueCounts) {
+            total += count;
+        }
+        int[] unique = new int[total];
+        int position = 0;
+        for (int owner = 0; owner < owners; owner++) {
+            System.arraycopy(values, offsets[owner], unique, position, uniqueCounts[owner]);
+            offsets[owner] = position;
+            position += uniqueCounts[owner];
+        }
+        offsets[owners] = position;
+        return unique;
+    }
+
+    // Course -> students; walking students in order leaves every course's students sorted
+    private static int[] invert(int[] offsets, int[] values, int[] invertedOffsets) {
+        for (int value : values) {
+            invertedOffsets[value + 1]++;
+        }
+        for (int i = 1; i < invertedOffsets.length; i++) {
+            invertedOffsets[i] += invertedOffsets[i - 1];
+        }
+        int[] next = Arrays.copyOf(invertedOffsets, invertedOffsets.length - 1);
+        int[] inverted = new int[values.length];
+        for (int owner = 0; owner < offsets.length - 1; owner++) {
+            for (int i = offsets[owner]; i < offsets[owner + 1]; i++) {
+                inverted[next[values[i]]++] = owner;
+            }
+        }
+        return inverted;
+    }
+
+    private IdTable readIds(MongoCollection<Document> collection, String keyField, List<List<String>> prerequisiteKeys) {
+        IdTable table = new IdTable((int) Math.max(16, collection.estimatedDocumentCount()));
+        List<String> fields = prerequisiteKeys == null ? List.of("_id", keyField) : List.of("_id", keyField, "prerequisites");
+        try (MongoCursor<Document> cursor = collection.find()
+                .projection(Projections.include(fields))
+                .sort(Sorts.ascending("_id"))
+                .batchSize(BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                if (!(document.get("_id") instanceof ObjectId id)) {
+                    continue;
+                }
+                table.add(id, document.getString(keyField));
+                if (prerequisiteKeys != null) {
+                    List<String> keys = document.getList("prerequisites", String.class);
+                    prerequisiteKeys.add(keys == null ? List.of() : keys);
+                }
+            }
+        }
+        table.trim();
+        return table;
+    }
+
+    // Growable parallel arrays of _ids in ascending order and their business keys
+    private static final class IdTable {
+        long[] high;
+        int[] low;
+        String[] keys;
+        int size;
+
+        IdTable(int capacity) {
+            high = new long[capacity];
+            low = new int[capacity];
+            keys = new String[capacity];
+        }
+
+        void add(ObjectId id, String key) {
+            if (size == high.length) {
+                int capacity = size + (size >> 1) + 1;
+                high = Arrays.copyOf(high, capacity);
+                low = Arrays.copyOf(low, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(id.toByteArray());
+            high[size] = bytes.getLong(0);
+            low[size] = bytes.getInt(8);
+            keys[size] = key;
+            size++;
+        }
+
+        void trim() {
+            high = Arrays.copyOf(high, size);
+            low = Arrays.copyOf(low, size);
+            keys = Arrays.copyOf(keys, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int indexOf(ObjectId id) {
+            return search(high, low, size, id);
+        }
+    }
+}
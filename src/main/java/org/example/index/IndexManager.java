@@ -0,0 +1,82 @@
+package org.example.index;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declares every index the application relies on and creates them.
+ * createIndexes is idempotent on the server, so {@link #ensureIndexes()} can run at every startup;
+ * an index that already exists with the same keys and options is left alone.
+ */
+public class IndexManager {
+    /** Enrollment indexes used only by referenced enrollments. */
+    public static final List<String> REFERENCED_ENROLLMENT_INDEXES = List.of("enrollmentType_studentId", "courseId_grade");
+    /** Enrollment indexes used only by embedded enrollments. */
+    public static final List<String> EMBEDDED_ENROLLMENT_INDEXES = List.of("student.studentId", "student._id", "course._id");
+
+    private final Map<MongoCollection<Document>, List<IndexModel>> requiredIndexes = new LinkedHashMap<>();
+
+    public IndexManager(MongoCollection<Document> studentsCollection,
+                        MongoCollection<Document> coursesCollection,
+                        MongoCollection<Document> enrollmentsCollection) {
+        requiredIndexes.put(studentsCollection, Collections.singletonList(
+                new IndexModel(Indexes.ascending("studentId"),
+                        new IndexOptions().name("studentId_unique").unique(true))));
+
+        requiredIndexes.put(coursesCollection, Collections.singletonList(
+                new IndexModel(Indexes.ascending("courseId"),
+                        new IndexOptions().name("courseId_unique").unique(true))));
+
+        requiredIndexes.put(enrollmentsCollection, Arrays.asList(
+                // Referenced enrollments by type, and a student's referenced enrollments (transcript)
+                new IndexModel(Indexes.ascending("enrollmentType", "studentId"),
+                        new IndexOptions().name("enrollmentType_studentId")),
+                // Course roster of referenced enrollments, optionally narrowed by grade
+                new IndexModel(Indexes.ascending("courseId", "grade"),
+                        new IndexOptions().name("courseId_grade")),
+                // Embedded enrollments by the student's business key
+                new IndexModel(Indexes.ascending("student.studentId"),
+                        new IndexOptions().name("student.studentId")),
+                // Embedded enrollments by the embedded student/course ObjectIds (transcript and roster)
+                new IndexModel(Indexes.ascending("student._id"),
+                        new IndexOptions().name("student._id")),
+                new IndexModel(Indexes.ascending("course._id"),
+                        new IndexOptions().name("course._id"))));
+    }
+
+    /**
+     * Creates every declared index that does not exist yet.
+     * A failure on one collection, such as duplicate keys blocking a unique index,
+     * is reported and does not stop the others from being created.
+     *
+     * @return the number of collections whose indexes could not all be created
+     */
+    public int ensureIndexes() {
+        int failures = 0;
+        for (Map.Entry<MongoCollection<Document>, List<IndexModel>> entry : requiredIndexes.entrySet()) {
+            MongoCollection<Document> collection = entry.getKey();
+            String collectionName = collection.getNamespace().getCollectionName();
+            try {
+                List<String> names = collection.createIndexes(entry.getValue());
+                System.out.println("Indexes ready on " + collectionName + ": " + String.join(", ", names));
+            } catch (MongoCommandException e) {
+                failures++;
+                System.out.println("Could not create indexes on " + collectionName + ": " + e.getErrorMessage());
+                if (e.getErrorCode() == 11000) {
+                    System.out.println("  - The collection contains duplicate keys; clear it (menu option 1) and reload");
+                }
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.index;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.query.EnrollmentQueries;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Explains every query shape the application issues and reports which ones
+ * the server would still answer with a full collection scan.
+ */
+public class QueryPlanReport {
+
+    private record QueryShape(String name, MongoCollection<Document> collection, Bson filter) {
+    }
+
+    private final List<QueryShape> shapes = new ArrayList<>();
+
+    public QueryPlanReport(MongoCollection<Document> studentsCollection,
+                           MongoCollection<Document> coursesCollection,
+                           MongoCollection<Document> enrollmentsCollection) {
+        // Sample values only need the right type; the planner does not depend on them matching anything
+        ObjectId anyId = new ObjectId();
+        shapes.add(new QueryShape("student by studentId", studentsCollection,
+                Filters.eq("studentId", "S1001")));
+        shapes.add(new QueryShape("course by courseId", coursesCollection,
+                Filters.eq("courseId", "CS101")));
+        shapes.add(new QueryShape("enrollments by type", enrollmentsCollection,
+                Filters.eq("enrollmentType", "referenced")));
+        shapes.add(new QueryShape("referenced enrollments of a student", enrollmentsCollection,
+                Filters.and(Filters.eq("enrollmentType", "referenced"), Filters.eq("studentId", anyId))));
+        shapes.add(new QueryShape("roster of a course", enrollmentsCollection,
+                EnrollmentQueries.rosterFilter(anyId)));
+        shapes.add(new QueryShape("course roster by grade", enrollmentsCollection,
+                Filters.and(Filters.eq("courseId", anyId), Filters.eq("grade", "A"))));
+        shapes.add(new QueryShape("transcript of a student", enrollmentsCollection,
+                EnrollmentQueries.transcriptFilter(anyId)));
+        shapes.add(new QueryShape("embedded enrollments by studentId", enrollmentsCollection,
+                Filters.eq("student.studentId", "S1001")));
+    }
+
+    /**
+     * Runs explain() for each query shape and prints the plan used.
+     *
+     * @return the number of shapes that fall back to COLLSCAN
+     */
+    public int run() {
+        System.out.println("\n--- QUERY PLAN REPORT ---");
+        int collectionScans = 0;
+        for (QueryShape shape : shapes) {
+            Document explain = shape.collection().find(shape.filter()).explain();
+            Document queryPlanner = explain.get("queryPlanner", Document.class);
+            Object winningPlan = queryPlanner == null ? null : queryPlanner.get("winningPlan");
+
+            Set<String> stages = new LinkedHashSet<>();
+            Set<String> indexes = new LinkedHashSet<>();
+            collectPlan(winningPlan, stages, indexes);
+
+            boolean collectionScan = stages.contains("COLLSCAN");
+            if (collectionScan) {
+                collectionScans++;
+            }
+            System.out.println((collectionScan ? "  [COLLSCAN] " : "  [ok]       ") + shape.name()
+                    + " on " + shape.collection().getNamespace().getCollectionName()
+                    + (indexes.isEmpty() ? "" : " using " + String.join(", ", indexes)));
+        }
+        System.out.println(collectionScans == 0
+                ? "All query shapes are served by an index"
+                : collectionScans + " query shape(s) still scan the whole collection");
+        return collectionScans;
+    }
+
+    // Walks the plan tree (inputStage, inputStages, and the queryPlan wrapper used by SBE plans)
+    private static void collectPlan(Object node, Set<String> stages, Set<String> indexes) {
+        if (node instanceof Document document) {
+            String stage = document.getString("stage");
+            if (stage != null) {
+                stages.add(stage);
+            }
+            String indexName = document.getString("indexName");
+            if (indexName != null) {
+                indexes.add(indexName);
+            }
+            for (Object value : document.values()) {
+                collectPlan(value, stages, indexes);
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object value : list) {
+                collectPlan(value, stages, indexes);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.loadtest;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.example.bulk.BulkLoader;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Replaces the students, courses and enrollments collections with a generated dataset of the size
+ * given in {@link LoadTestSettings}. Each student gets the same number of enrollments, with courses
+ * drawn from a Zipf distribution and a share of them embedded. The random seed is fixed, so the
+ * same settings always produce the same dataset.
+ */
+public class DatasetSeeder {
+    private static final long RANDOM_SEED = 42;
+
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+
+    public DatasetSeeder(MongoCollection<Document> studentsCollection,
+                         MongoCollection<Document> coursesCollection,
+                         MongoCollection<Document> enrollmentsCollection) {
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+    }
+
+    /**
+     * Drops the three collections and loads the dataset. Indexes are dropped with them and have to be
+     * created again afterwards, which is also faster than maintaining them during the load.
+     */
+    public void seed(LoadTestSettings settings) {
+        System.out.println("\n--- SEEDING LOAD TEST DATASET ---");
+        System.out.println("Students: " + settings.students() + ", courses: " + settings.courses()
+                + ", enrollments: " + (long) settings.students() * settings.enrollmentsPerStudent()
+                + " (Zipf exponent " + settings.zipfExponent() + ", " + Math.round(settings.embeddedShare() * 100)
+                + "% embedded)");
+        studentsCollection.drop();
+        coursesCollection.drop();
+        enrollmentsCollection.drop();
+
+        new BulkLoader(studentsCollection).load(generate(settings.students(), SyntheticData::student)).print("students");
+        new BulkLoader(coursesCollection).load(generate(settings.courses(), SyntheticData::course)).print("courses");
+
+        ZipfSampler courses = new ZipfSampler(settings.courses(), settings.zipfExponent());
+        SplittableRandom random = new SplittableRandom(RANDOM_SEED);
+        int perStudent = settings.enrollmentsPerStudent();
+        long total = (long) settings.students() * perStudent;
+        Iterator<Document> enrollments = new Iterator<>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < total;
+            }
+
+            @Override
+            public Document next() {
+                if (next >= total) {
+                    throw new NoSuchElementException();
+                }
+                int student = (int) (next / perStudent);
+                int slot = (int) (next % perStudent);
+                next++;
+                return SyntheticData.enrollment(student, slot, courses.sample(random),
+                        random.nextDouble() < settings.embeddedShare(),
+                        SyntheticData.GRADES[random.nextInt(SyntheticData.GRADES.length)]);
+            }
+        };
+        new BulkLoader(enrollmentsCollection).load(enrollments).print("enrollments");
+    }
+
+    private static Iterator<Document> generate(int count, IntFunction<Document> factory) {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Document next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return factory.apply(next++);
+            }
+        };
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.loadtest;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.exec.OperationType;
+import org.example.metrics.LatencyStats;
+import org.example.service.EnrollmentService;
+import org.example.service.Publishers;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
+
+/**
+ * Drives a mixed read/write workload against a dataset made by {@link DatasetSeeder} at a fixed
+ * target rate. Operations are scheduled open-loop: operation k of a step is due at start + k / rate
+ * whatever happened to the ones before it, and any free worker picks up the next due operation.
+ * When the database slows down the schedule keeps going, so the latency reported includes the time
+ * operations waited to start, instead of the generator quietly slowing down with it.
+ * Each target rate in the settings is run as its own step, which makes the knee of the throughput
+ * curve visible as the first step that falls behind.
+ * Operations go through an {@link EnrollmentService}, so they run with the same operation settings,
+ * concurrency caps and propagation as the rest of the application.
+ */
+public class LoadGenerator {
+    // Rosters and transcripts are read a page at a time, like a screen showing them
+    private static final int ROWS_PER_READ = 50;
+
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final EnrollmentService service;
+
+    /**
+     * @param studentsCollection checked for the seeded dataset before a run
+     * @param coursesCollection  checked for the seeded dataset before a run
+     * @param service            runs every generated operation
+     */
+    public LoadGenerator(MongoCollection<Document> studentsCollection,
+                         MongoCollection<Document> coursesCollection,
+                         EnrollmentService service) {
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.service = service;
+    }
+
+    /**
+     * Runs one step per target rate and prints each step and a summary.
+     *
+     * @throws IllegalStateException if the collections do not hold a seeded dataset of this size
+     */
+    public List<LoadStepReport> run(LoadTestSettings settings) {
+        if (studentsCollection.find(Filters.eq("_id", SyntheticData.studentId(settings.students() - 1)))
+                .projection(Projections.include("_id")).first() == null
+                || coursesCollection.find(Filters.eq("_id", SyntheticData.courseId(settings.courses() - 1)))
+                .projection(Projections.include("_id")).first() == null) {
+            throw new IllegalStateException("No load test dataset with " + settings.students() + " students and "
+                    + settings.courses() + " courses; run with --seed first");
+        }
+        System.out.println("\n--- LOAD TEST ---");
+        System.out.println("Workers: " + settings.workers() + ", steps: " + settings.rates() + " ops/sec, "
+                + settings.warmup().toSeconds() + " s warmup + " + settings.duration().toSeconds() + " s each");
+        System.out.println("Mix: " + settings.mix());
+
+        ZipfSampler courses = new ZipfSampler(settings.courses(), settings.zipfExponent());
+        List<LoadStepReport> reports = new ArrayList<>();
+        for (int rate : settings.rates()) {
+            LoadStepReport report = runStep(settings, rate, courses);
+            report.print();
+            reports.add(report);
+        }
+        printSummary(reports);
+        return reports;
+    }
+
+    private LoadStepReport runStep(LoadTestSettings settings, int rate, ZipfSampler courses) {
+        LatencyStats all = new LatencyStats(Map.of("loadTest", "all", "rate", String.valueOf(rate)));
+        Map<OperationType, LatencyStats> response = new EnumMap<>(OperationType.class);
+        Map<OperationType, LatencyStats> service = new EnumMap<>(OperationType.class);
+        for (OperationType operation : settings.mix().keySet()) {
+            response.put(operation, new LatencyStats(Map.of("loadTest", operation.getPropertyName())));
+            service.put(operation, new LatencyStats(Map.of("loadTest", operation.getPropertyName())));
+        }
+        OperationType[] picks = weightedOperations(settings.mix());
+
+        double intervalNanos = 1_000_000_000.0 / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        AtomicLong tickets = new AtomicLong();
+        AtomicLong maxLag = new AtomicLong();
+        AtomicReference<String> firstError = new AtomicReference<>();
+
+        System.out.println("\nRunning " + rate + " ops/sec...");
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < settings.workers(); w++) {
+                workers.execute(() -> {
+                    RandomGenerator random = ThreadLocalRandom.current();
+                    while (true) {
+                        long due = start + (long) (tickets.getAndIncrement() * intervalNanos);
+                        if (due >= end) {
+                            return;
+                        }
+                        long now;
+                        while ((now = System.nanoTime()) < due) {
+                            LockSupport.parkNanos(due - now);
+                        }
+                        OperationType operation = picks[random.nextInt(picks.length)];
+                        boolean failed = false;
+                        try {
+                            execute(operation, settings, courses, random);
+                        } catch (RuntimeException e) {
+                            failed = true;
+                            firstError.compareAndSet(null, operation.getPropertyName() + ": " + e.getMessage());
+                        }
+                        long finished = System.nanoTime();
+                        if (due >= measureFrom) {
+                            response.get(operation).record(finished - due, 1, failed);
+                            service.get(operation).record(finished - now, 1, failed);
+                            all.record(finished - due, 1, failed);
+                            maxLag.accumulateAndGet(now - due, Math::max);
+                        }
+                    }
+                });
+            }
+        }
+        if (firstError.get() != null) {
+            System.out.println("First failure: " + firstError.get());
+        }
+        long measured = System.nanoTime() - measureFrom;
+        return new LoadStepReport(rate, all.getCount() * 1_000_000_000.0 / measured, measured, maxLag.get(),
+                all, response, service);
+    }
+
+    private void execute(OperationType operation, LoadTestSettings settings, ZipfSampler courses,
+                         RandomGenerator random) {
+        int student = random.nextInt(settings.students());
+        switch (operation) {
+            case ROSTER -> Publishers.take(service.rosterForCourse(
+                    SyntheticData.courseKey(courses.sample(random))), ROWS_PER_READ).join();
+            case TRANSCRIPT -> Publishers.take(service.transcriptForStudent(
+                    SyntheticData.studentKey(student)), ROWS_PER_READ).join();
+            case ENROLL -> {
+                // Split between the models like the seeded data; the embedded one reads both documents first
+                String studentKey = SyntheticData.studentKey(student);
+                String courseKey = SyntheticData.courseKey(courses.sample(random));
+                ObjectId id = (random.nextDouble() < settings.embeddedShare()
+                        ? service.enrollEmbedded(studentKey, courseKey, randomGrade(random))
+                        : service.enroll(studentKey, courseKey, randomGrade(random))).join();
+                if (id == null) {
+                    throw new IllegalStateException("Seeded student or course is missing");
+                }
+            }
+            case GRADE_UPDATE -> service.updateGrade(
+                    SyntheticData.enrollmentId(student, random.nextInt(settings.enrollmentsPerStudent())),
+                    randomGrade(random)).join();
+            // The service hands the rewrite of embedded copies to the propagation engine
+            case STUDENT_UPDATE -> service.updateStudentName(SyntheticData.studentKey(student),
+                    "Student " + student + " (" + random.nextInt(1000) + ")").join();
+            default -> throw new IllegalArgumentException("Not a load test operation: " + operation.getPropertyName());
+        }
+    }
+
+    private static String randomGrade(RandomGenerator random) {
+        return SyntheticData.GRADES[random.nextInt(SyntheticData.GRADES.length)];
+    }
+
+    // One entry per unit of weight, so picking is a single random index
+    private static OperationType[] weightedOperations(Map<OperationType, Integer> mix) {
+        List<OperationType> picks = new ArrayList<>();
+        for (Map.Entry<OperationType, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                picks.add(entry.getKey());
+            }
+        }
+        return picks.toArray(new OperationType[0]);
+    }
+
+    private static void printSummary(List<LoadStepReport> reports) {
+        System.out.println("\n--- LOAD TEST SUMMARY ---");
+        System.out.println(String.format("  %10s %10s %10s %10s %10s %8s",
+                "target/s", "achieved/s", "p50 ms", "p99 ms", "p99.9 ms", "failed"));
+        for (LoadStepReport report : reports) {
+            System.out.println(String.format("  %10d %10.0f %10.2f %10.2f %10.2f %8d",
+                    report.targetRate(), report.achievedRate(), report.all().getP50Millis(),
+                    report.all().getP99Millis(), report.all().getP999Millis(), report.getFailures()));
+        }
+        for (int i = 0; i < reports.size(); i++) {
+            if (reports.get(i).isSaturated()) {
+                System.out.println("The " + reports.get(i).targetRate() + " ops/sec step fell behind its target"
+                        + (i > 0 ? "; throughput tops out between " + reports.get(i - 1).targetRate() + " and "
+                        + reports.get(i).targetRate() + " ops/sec" : "; try lower rates"));
+                return;
+            }
+        }
+        System.out.println("Every step kept up; add higher rates to find where throughput tops out");
+    }
+}
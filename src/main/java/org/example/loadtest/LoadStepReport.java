@@ -0,0 +1,57 @@
+package org.example.loadtest;
+
+import org.example.exec.OperationType;
+import org.example.metrics.LatencyStats;
+
+import java.util.Map;
+
+/**
+ * Results of one load step. Response times are measured from when each operation was scheduled to
+ * start, not from when a worker got to it, so time spent queued behind slow operations is counted
+ * (correcting for coordinated omission). Service times are the operation alone.
+ *
+ * @param achievedRate       measured operations per second
+ * @param maxScheduleLagNanos how far behind its schedule the latest operation started
+ */
+public record LoadStepReport(int targetRate, double achievedRate, long durationNanos, long maxScheduleLagNanos,
+                             LatencyStats all, Map<OperationType, LatencyStats> response,
+                             Map<OperationType, LatencyStats> service) {
+
+    public long getFailures() {
+        return all.getFailures();
+    }
+
+    /**
+     * Whether the step fell clearly short of its target rate.
+     */
+    public boolean isSaturated() {
+        return achievedRate < targetRate * 0.95;
+    }
+
+    public void print() {
+        System.out.println("\n--- LOAD STEP: " + targetRate + " OPS/SEC ---");
+        System.out.println("  - Achieved: " + String.format("%.0f", achievedRate) + " ops/sec, "
+                + all.getCount() + " operations in " + String.format("%.0f", durationNanos / 1_000_000_000.0) + " s"
+                + (getFailures() > 0 ? ", failed: " + getFailures() : ""));
+        System.out.println("  - Schedule lag: max " + String.format("%.1f", maxScheduleLagNanos / 1_000_000.0) + " ms");
+        System.out.println("  - all: " + latencies(all));
+        for (Map.Entry<OperationType, LatencyStats> entry : response.entrySet()) {
+            LatencyStats stats = entry.getValue();
+            if (stats.getCount() == 0) {
+                continue;
+            }
+            LatencyStats serviceStats = service.get(entry.getKey());
+            System.out.println("  - " + entry.getKey().getPropertyName() + " (" + stats.getCount()
+                    + (stats.getFailures() > 0 ? ", " + stats.getFailures() + " failed" : "") + "): "
+                    + latencies(stats) + "; service p50=" + String.format("%.2f", serviceStats.getP50Millis())
+                    + ", p99=" + String.format("%.2f", serviceStats.getP99Millis()));
+        }
+    }
+
+    private static String latencies(LatencyStats stats) {
+        return "response (ms) p50=" + String.format("%.2f", stats.getP50Millis())
+                + ", p99=" + String.format("%.2f", stats.getP99Millis())
+                + ", p99.9=" + String.format("%.2f", stats.getP999Millis())
+                + ", max=" + String.format("%.2f", stats.getMaxMillis());
+    }
+}
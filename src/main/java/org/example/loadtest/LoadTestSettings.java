@@ -0,0 +1,115 @@
+package org.example.loadtest;
+
+import org.example.exec.OperationType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Dataset shape and workload for the load generator, read from "mongodb.loadtest.*" properties.
+ *
+ * @param students              students to seed
+ * @param courses               courses to seed
+ * @param enrollmentsPerStudent enrollments seeded per student, with courses drawn from a Zipf distribution
+ * @param zipfExponent          skew of course popularity; 0 is uniform
+ * @param embeddedShare         fraction of seeded enrollments that use the embedded model
+ * @param rates                 target operations per second, one measured step each
+ * @param workers               concurrent workers issuing operations
+ * @param duration              measured time per step
+ * @param warmup                unmeasured time before each step
+ * @param mix                   relative weight of each operation; enrolls are split between the models by embeddedShare
+ */
+public record LoadTestSettings(int students, int courses, int enrollmentsPerStudent, double zipfExponent,
+                               double embeddedShare, List<Integer> rates, int workers, Duration duration,
+                               Duration warmup, Map<OperationType, Integer> mix) {
+    public static final String DEFAULT_MIX = "roster=10,transcript=30,enroll=20,gradeUpdate=30,studentUpdate=10";
+
+    public LoadTestSettings {
+        if (students < 1 || courses < 1 || enrollmentsPerStudent < 1 || workers < 1) {
+            throw new IllegalArgumentException("Students, courses, enrollments per student and workers must be positive");
+        }
+        if (students > SyntheticData.MAX_INDEX || courses > SyntheticData.MAX_INDEX
+                || enrollmentsPerStudent > SyntheticData.MAX_SLOT) {
+            throw new IllegalArgumentException("Load test datasets are limited to " + SyntheticData.MAX_INDEX
+                    + " students and courses and " + SyntheticData.MAX_SLOT + " enrollments per student");
+        }
+        if (rates.isEmpty() || rates.stream().anyMatch(rate -> rate < 1)) {
+            throw new IllegalArgumentException("Load test rates must be positive");
+        }
+        if (mix.containsKey(OperationType.BULK_LOAD)) {
+            throw new IllegalArgumentException("Load test mix cannot include " + OperationType.BULK_LOAD.getPropertyName());
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Load test mix needs at least one operation with a positive weight");
+        }
+        rates = List.copyOf(rates);
+        mix = Collections.unmodifiableMap(new EnumMap<>(mix));
+    }
+
+    /**
+     * Reads "mongodb.loadtest.students", ".courses", ".enrollmentsPerStudent", ".zipfExponent",
+     * ".embeddedShare", ".rates" (comma separated), ".workers", ".durationSeconds", ".warmupSeconds"
+     * and ".mix" (name=weight pairs).
+     */
+    public static LoadTestSettings fromProperties(Properties properties) {
+        return new LoadTestSettings(
+                Integer.parseInt(property(properties, "students", "100000")),
+                Integer.parseInt(property(properties, "courses", "1000")),
+                Integer.parseInt(property(properties, "enrollmentsPerStudent", "5")),
+                Double.parseDouble(property(properties, "zipfExponent", "1.0")),
+                Double.parseDouble(property(properties, "embeddedShare", "0.5")),
+                parseRates(property(properties, "rates", "500,1000,2000")),
+                Integer.parseInt(property(properties, "workers", "64")),
+                Duration.ofSeconds(Long.parseLong(property(properties, "durationSeconds", "30"))),
+                Duration.ofSeconds(Long.parseLong(property(properties, "warmupSeconds", "5"))),
+                parseMix(property(properties, "mix", DEFAULT_MIX)));
+    }
+
+    public LoadTestSettings withRates(List<Integer> rates) {
+        return new LoadTestSettings(students, courses, enrollmentsPerStudent, zipfExponent, embeddedShare,
+                rates, workers, duration, warmup, mix);
+    }
+
+    public LoadTestSettings withWorkers(int workers) {
+        return new LoadTestSettings(students, courses, enrollmentsPerStudent, zipfExponent, embeddedShare,
+                rates, workers, duration, warmup, mix);
+    }
+
+    public static List<Integer> parseRates(String value) {
+        List<Integer> rates = new ArrayList<>();
+        for (String rate : value.split(",")) {
+            if (!rate.isBlank()) {
+                rates.add(Integer.parseInt(rate.trim()));
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Parses "roster=10,gradeUpdate=30"; operations that are not listed get no weight.
+     */
+    public static Map<OperationType, Integer> parseMix(String value) {
+        Map<OperationType, Integer> mix = new EnumMap<>(OperationType.class);
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Load test mix entries look like name=weight, got: " + entry.trim());
+            }
+            mix.put(OperationType.fromPropertyName(entry.substring(0, equals).trim()),
+                    Integer.parseInt(entry.substring(equals + 1).trim()));
+        }
+        return mix;
+    }
+
+    private static String property(Properties properties, String name, String defaultValue) {
+        return properties.getProperty("mongodb.loadtest." + name, defaultValue).trim();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.loadtest;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * The generated students, courses and enrollments. Their _ids are derived from their index, so the
+ * load generator can address any seeded document without looking it up or keeping ids in memory.
+ */
+final class SyntheticData {
+    static final int MAX_INDEX = 100_000_000;
+    static final int MAX_SLOT = 1000;
+    static final String[] GRADES = {"A", "A-", "B+", "B", "B-", "C+", "C", "D", "F"};
+
+    // 2024-01-01T00:00:00Z, the timestamp part of every generated _id
+    private static final int EPOCH_SECONDS = 1_704_067_200;
+    private static final Date SEED_DATE = new Date(EPOCH_SECONDS * 1000L);
+    private static final byte STUDENT = 1;
+    private static final byte COURSE = 2;
+    private static final byte ENROLLMENT = 3;
+
+    private SyntheticData() {
+    }
+
+    static ObjectId studentId(int index) {
+        return id(STUDENT, 0, index);
+    }
+
+    static ObjectId courseId(int index) {
+        return id(COURSE, 0, index);
+    }
+
+    static ObjectId enrollmentId(int studentIndex, int slot) {
+        return id(ENROLLMENT, slot, studentIndex);
+    }
+
+    static String studentKey(int index) {
+        return "S" + index;
+    }
+
+    static String courseKey(int index) {
+        return "C" + index;
+    }
+
+    static Document student(int index) {
+        return new Document("_id", studentId(index))
+                .append("name", "Student " + index)
+                .append("studentId", studentKey(index))
+                .append("email", "student" + index + "@example.com")
+                .append("age", 18 + index % 10);
+    }
+
+    static Document course(int index) {
+        return new Document("_id", courseId(index))
+                .append("name", "Course " + index)
+                .append("courseId", courseKey(index))
+                .append("credits", 1 + index % 4)
+                .append("instructor", "Prof. " + (index % 500));
+    }
+
+    /**
+     * A seeded enrollment of a student; referenced enrollments point at the student and course,
+     * embedded ones carry copies of both.
+     */
+    static Document enrollment(int studentIndex, int slot, int courseIndex, boolean embedded, String grade) {
+        Document enrollment = new Document("_id", enrollmentId(studentIndex, slot))
+                .append("enrollmentType", embedded ? "embedded" : "referenced")
+                .append("date", SEED_DATE);
+        if (embedded) {
+            enrollment.append("student", student(studentIndex)).append("course", course(courseIndex));
+        } else {
+            enrollment.append("studentId", studentId(studentIndex)).append("courseId", courseId(courseIndex));
+        }
+        return enrollment.append("grade", grade);
+    }
+
+    // 4-byte timestamp, a kind byte, a 3-byte slot and a 4-byte index
+    private static ObjectId id(byte kind, int slot, int index) {
+        ByteBuffer bytes = ByteBuffer.allocate(12);
+        bytes.putInt(EPOCH_SECONDS);
+        bytes.put(kind);
+        bytes.put((byte) (slot >>> 16)).put((byte) (slot >>> 8)).put((byte) slot);
+        bytes.putInt(index);
+        return new ObjectId(bytes.array());
+    }
+}
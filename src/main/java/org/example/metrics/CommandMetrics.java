@@ -0,0 +1,161 @@
+package org.example.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per command and collection figures taken from the driver's command events: latency, failures,
+ * documents returned (cursor batches) or written ("n"), and the BSON size of each command and
+ * reply. The sizes are measured before wire compression, and measuring them re-encodes the
+ * documents the driver hands to the listener, so it can be switched off.
+ */
+public class CommandMetrics implements CommandListener {
+    private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private record Started(LatencyStats stats, long requestBytes) {
+    }
+
+    private record Key(String command, String collection) {
+    }
+
+    private final ConcurrentMap<Key, LatencyStats> stats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Started> started = new ConcurrentHashMap<>();
+    private final boolean measureBytes;
+    private final Consumer<LatencyStats> onNewStats;
+
+    /**
+     * @param measureBytes whether to record the encoded size of commands and replies
+     * @param onNewStats   called once for each new command and collection pair, e.g. to register it with JMX
+     */
+    public CommandMetrics(boolean measureBytes, Consumer<LatencyStats> onNewStats) {
+        this.measureBytes = measureBytes;
+        this.onNewStats = onNewStats;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonDocument command = event.getCommand();
+        Key key = new Key(event.getCommandName(), collectionName(event.getCommandName(), command));
+        LatencyStats commandStats = stats.computeIfAbsent(key, this::newStats);
+        // The command document is only valid during this callback, so its size is taken now
+        long requestBytes = measureBytes ? encodedSize(command) : 0;
+        started.put(event.getRequestId(), new Started(commandStats, requestBytes));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Started start = started.remove(event.getRequestId());
+        if (start == null) {
+            return;
+        }
+        BsonDocument response = event.getResponse();
+        start.stats().record(event.getElapsedTime(TimeUnit.NANOSECONDS), documentCount(response), false);
+        if (measureBytes) {
+            start.stats().recordBytes(start.requestBytes(), encodedSize(response));
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Started start = started.remove(event.getRequestId());
+        if (start == null) {
+            return;
+        }
+        start.stats().record(event.getElapsedTime(TimeUnit.NANOSECONDS), 0, true);
+        if (measureBytes) {
+            start.stats().recordBytes(start.requestBytes(), 0);
+        }
+    }
+
+    /**
+     * Returns the stats of every command and collection pair seen so far.
+     */
+    public Collection<LatencyStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * Prints the pairs ordered by total time spent, the most expensive first.
+     */
+    public void print() {
+        List<LatencyStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        System.out.println("Commands (by total time):");
+        if (sorted.isEmpty()) {
+            System.out.println("  - none");
+        }
+        for (LatencyStats commandStats : sorted) {
+            System.out.println("  - " + commandStats.getLabels().get("command") + " "
+                    + commandStats.getLabels().get("collection") + ": " + commandStats.getCount() + " calls"
+                    + (commandStats.getFailures() > 0 ? " (" + commandStats.getFailures() + " failed)" : "")
+                    + ", p50 " + String.format("%.2f", commandStats.getP50Millis())
+                    + " ms, p99 " + String.format("%.2f", commandStats.getP99Millis())
+                    + " ms, p999 " + String.format("%.2f", commandStats.getP999Millis())
+                    + " ms, " + commandStats.getDocuments() + " docs"
+                    + (measureBytes ? ", " + commandStats.getRequestBytes() + " B sent, "
+                    + commandStats.getResponseBytes() + " B received" : ""));
+        }
+    }
+
+    private LatencyStats newStats(Key key) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        labels.put("command", key.command());
+        labels.put("collection", key.collection());
+        LatencyStats commandStats = new LatencyStats(labels);
+        onNewStats.accept(commandStats);
+        return commandStats;
+    }
+
+    // CRUD commands name their collection in the first field; getMore has a separate field
+    private static String collectionName(String commandName, BsonDocument command) {
+        if (command.isEmpty()) {
+            return "-";
+        }
+        BsonValue value = "getMore".equals(commandName) ? command.get("collection") : command.get(commandName);
+        return value != null && value.isString() ? value.asString().getValue() : "-";
+    }
+
+    private static long documentCount(BsonDocument response) {
+        BsonValue cursor = response.get("cursor");
+        if (cursor != null && cursor.isDocument()) {
+            BsonValue batch = cursor.asDocument().get("firstBatch");
+            if (batch == null) {
+                batch = cursor.asDocument().get("nextBatch");
+            }
+            return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+        }
+        BsonValue n = response.get("n");
+        return n != null && n.isNumber() ? n.asNumber().longValue() : 0;
+    }
+
+    private static long encodedSize(BsonDocument document) {
+        if (document instanceof RawBsonDocument raw) {
+            return raw.getByteBuffer().remaining();
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            BSON_DOCUMENT_CODEC.encode(writer, document, ENCODER_CONTEXT);
+            return buffer.getPosition();
+        }
+    }
+}
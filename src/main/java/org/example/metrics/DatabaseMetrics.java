@@ -0,0 +1,337 @@
+package org.example.metrics;
+
+import org.example.util.OutputLogger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collects the connection pool, driver command, enrollment operation, request executor and projected read metrics
+ * in one place and publishes them: every {@link LatencyStats} and executor gauge is registered as an MXBean under
+ * "org.example.metrics",
+ * and a Prometheus text format dump is rewritten periodically. Configured by "mongodb.metrics.*".
+ */
+public class DatabaseMetrics implements AutoCloseable {
+    public static final String JMX_DOMAIN = "org.example.metrics";
+    public static final int DEFAULT_DUMP_INTERVAL_SECONDS = 15;
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final boolean jmxEnabled;
+    private final Path dumpFile;
+    private final int dumpIntervalSeconds;
+    private final List<ObjectName> registered = new ArrayList<>();
+    private final PoolMetrics poolMetrics = new PoolMetrics();
+    private final CommandMetrics commandMetrics;
+    private final OperationMetrics operationMetrics;
+    private final ExecutorMetrics executorMetrics;
+    private final ProjectionMetrics projectionMetrics = new ProjectionMetrics();
+    private ScheduledExecutorService dumper;
+
+    /**
+     * @param jmxEnabled          whether to register the stats as MXBeans
+     * @param measureBytes        whether to record command and reply sizes
+     * @param dumpFile            the Prometheus dump file, or null for none
+     * @param dumpIntervalSeconds how often the dump file is rewritten
+     */
+    public DatabaseMetrics(boolean jmxEnabled, boolean measureBytes, Path dumpFile, int dumpIntervalSeconds) {
+        if (dumpIntervalSeconds < 1) {
+            throw new IllegalArgumentException("Dump interval must be positive");
+        }
+        this.jmxEnabled = jmxEnabled;
+        this.dumpFile = dumpFile;
+        this.dumpIntervalSeconds = dumpIntervalSeconds;
+        this.commandMetrics = new CommandMetrics(measureBytes, stats -> register("Command", stats));
+        this.operationMetrics = new OperationMetrics(stats -> register("Operation", stats));
+        this.executorMetrics = new ExecutorMetrics(stats -> register("Executor",
+                Map.of("operation", stats.getOperation()), stats));
+    }
+
+    /**
+     * Reads "mongodb.metrics.jmx", "mongodb.metrics.measureBytes", "mongodb.metrics.dumpFile"
+     * and "mongodb.metrics.dumpIntervalSeconds". JMX and byte counts are on unless set to false;
+     * there is no dump file unless one is named.
+     */
+    public static DatabaseMetrics fromProperties(Properties properties) {
+        String dumpFile = properties.getProperty("mongodb.metrics.dumpFile", "").trim();
+        return new DatabaseMetrics(
+                Boolean.parseBoolean(properties.getProperty("mongodb.metrics.jmx", "true").trim()),
+                Boolean.parseBoolean(properties.getProperty("mongodb.metrics.measureBytes", "true").trim()),
+                dumpFile.isEmpty() ? null : Path.of(dumpFile),
+                Integer.parseInt(properties.getProperty("mongodb.metrics.dumpIntervalSeconds",
+                        String.valueOf(DEFAULT_DUMP_INTERVAL_SECONDS)).trim()));
+    }
+
+    public PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
+    public CommandMetrics getCommandMetrics() {
+        return commandMetrics;
+    }
+
+    public OperationMetrics getOperationMetrics() {
+        return operationMetrics;
+    }
+
+    public ExecutorMetrics getExecutorMetrics() {
+        return executorMetrics;
+    }
+
+    public ProjectionMetrics getProjectionMetrics() {
+        return projectionMetrics;
+    }
+
+    /**
+     * Starts rewriting the dump file in the background, if one is configured.
+     */
+    public synchronized void start() {
+        if (dumpFile == null || dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(this::dumpQuietly, dumpIntervalSeconds, dumpIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        writeStats(out, "mongodb_command", commandMetrics.getStats(), true);
+        writeStats(out, "enrollment_operation", operationMetrics.getStats(), false);
+        writeExecutor(out, executorMetrics.getStats());
+
+        gauge(out, "mongodb_pool_checked_out", poolMetrics.getCheckedOut());
+        gauge(out, "mongodb_pool_checked_out_peak", poolMetrics.getMaxCheckedOut());
+        gauge(out, "mongodb_pool_open_connections", poolMetrics.getOpenConnections());
+        counter(out, "mongodb_pool_checkouts_total", poolMetrics.getCheckouts());
+        counter(out, "mongodb_pool_checkout_timeouts_total", poolMetrics.getCheckoutTimeouts());
+        counter(out, "mongodb_pool_checkout_failures_total", poolMetrics.getCheckoutFailures());
+        counter(out, "mongodb_pool_clears_total", poolMetrics.getPoolClears());
+        gauge(out, "mongodb_pool_checkout_wait_seconds_max", poolMetrics.getMaxWaitMillis() / 1000.0);
+        counter(out, "output_log_dropped_total", OutputLogger.getDroppedCount());
+        counter(out, "output_log_blocked_total", OutputLogger.getBlockedCount());
+        counter(out, "output_log_rotations_total", OutputLogger.getRotationCount());
+        counter(out, "output_log_write_errors_total", OutputLogger.getWriteErrorCount());
+        writeProjections(out, projectionMetrics.getStats());
+        return out.toString();
+    }
+
+    /**
+     * Writes the Prometheus text to the dump file, replacing it atomically so a scraper never reads half a file.
+     */
+    public void dump() throws IOException {
+        if (dumpFile == null) {
+            return;
+        }
+        Path temp = dumpFile.resolveSibling(dumpFile.getFileName() + ".tmp");
+        Files.writeString(temp, toPrometheusText(), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, dumpFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, dumpFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public void print() {
+        System.out.println("\n--- DATABASE METRICS ---");
+        operationMetrics.print();
+        executorMetrics.print();
+        commandMetrics.print();
+        projectionMetrics.print();
+        poolMetrics.print();
+        OutputLogger.printStats();
+        if (dumpFile != null) {
+            System.out.println("Metrics dump: " + dumpFile.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Stops the dump thread, writes a final dump and unregisters the MXBeans.
+     */
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+        dumpQuietly();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (registered) {
+            for (ObjectName name : registered) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException ignored) {
+                    // already gone
+                }
+            }
+            registered.clear();
+        }
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (IOException e) {
+            System.err.println("Could not write metrics to " + dumpFile + ": " + e.getMessage());
+        }
+    }
+
+    private void register(String type, LatencyStats stats) {
+        register(type, stats.getLabels(), stats);
+    }
+
+    private void register(String type, Map<String, String> labels, Object mbean) {
+        if (!jmxEnabled) {
+            return;
+        }
+        StringBuilder name = new StringBuilder(JMX_DOMAIN).append(":type=").append(type);
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            name.append(',').append(label.getKey()).append('=').append(ObjectName.quote(label.getValue()));
+        }
+        try {
+            ObjectName objectName = new ObjectName(name.toString());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // A second client in the same JVM (e.g. the async backend) reports under the same names
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+                synchronized (registered) {
+                    registered.add(objectName);
+                }
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register " + name + " with JMX: " + e.getMessage());
+        }
+    }
+
+    private static void writeStats(StringBuilder out, String prefix, Collection<LatencyStats> stats, boolean bytes) {
+        if (stats.isEmpty()) {
+            return;
+        }
+        out.append("# TYPE ").append(prefix).append("_duration_seconds summary\n");
+        for (LatencyStats s : stats) {
+            for (double quantile : QUANTILES) {
+                out.append(prefix).append("_duration_seconds");
+                labels(out, s, "quantile", String.valueOf(quantile));
+                out.append(' ').append(format(s.getPercentileMillis(quantile * 100) / 1000.0)).append('\n');
+            }
+            out.append(prefix).append("_duration_seconds_sum");
+            labels(out, s, null, null);
+            out.append(' ').append(format(s.getTotalNanos() / 1_000_000_000.0)).append('\n');
+            out.append(prefix).append("_duration_seconds_count");
+            labels(out, s, null, null);
+            out.append(' ').append(s.getCount()).append('\n');
+        }
+        counters(out, prefix + "_failures_total", stats, LatencyStats::getFailures);
+        counters(out, prefix + "_documents_total", stats, LatencyStats::getDocuments);
+        if (bytes) {
+            counters(out, prefix + "_request_bytes_total", stats, LatencyStats::getRequestBytes);
+            counters(out, prefix + "_response_bytes_total", stats, LatencyStats::getResponseBytes);
+        }
+    }
+
+    private static void writeExecutor(StringBuilder out, Collection<ExecutorMetrics.ExecutorStats> stats) {
+        if (stats.isEmpty()) {
+            return;
+        }
+        executorSeries(out, "request_executor_queue_depth", "gauge", stats, ExecutorMetrics.ExecutorStats::getQueueDepth);
+        executorSeries(out, "request_executor_in_flight", "gauge", stats, ExecutorMetrics.ExecutorStats::getInFlight);
+        executorSeries(out, "request_executor_limit", "gauge", stats, ExecutorMetrics.ExecutorStats::getLimit);
+        executorSeries(out, "request_executor_completed_total", "counter", stats,
+                ExecutorMetrics.ExecutorStats::getCompleted);
+        executorSeries(out, "request_executor_failed_total", "counter", stats, ExecutorMetrics.ExecutorStats::getFailed);
+    }
+
+    private static void executorSeries(StringBuilder out, String name, String type,
+                                       Collection<ExecutorMetrics.ExecutorStats> stats,
+                                       ToLongFunction<ExecutorMetrics.ExecutorStats> value) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (ExecutorMetrics.ExecutorStats s : stats) {
+            out.append(name).append("{operation=\"").append(escape(s.getOperation())).append("\"} ")
+                    .append(value.applyAsLong(s)).append('\n');
+        }
+    }
+
+    private static void writeProjections(StringBuilder out, Collection<ProjectionMetrics.ShapeStats> shapes) {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        out.append("# TYPE projected_read_returned_bytes_total counter\n");
+        for (ProjectionMetrics.ShapeStats shape : shapes) {
+            out.append("projected_read_returned_bytes_total{shape=\"").append(escape(shape.getShape())).append("\"} ")
+                    .append(shape.getReturnedBytes()).append('\n');
+        }
+        out.append("# TYPE projected_read_saved_bytes_estimate gauge\n");
+        for (ProjectionMetrics.ShapeStats shape : shapes) {
+            if (shape.getEstimatedSavedBytes() >= 0) {
+                out.append("projected_read_saved_bytes_estimate{shape=\"").append(escape(shape.getShape())).append("\"} ")
+                        .append(shape.getEstimatedSavedBytes()).append('\n');
+            }
+        }
+    }
+
+    private static void counters(StringBuilder out, String name, Collection<LatencyStats> stats,
+                                 ToLongFunction<LatencyStats> value) {
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (LatencyStats s : stats) {
+            out.append(name);
+            labels(out, s, null, null);
+            out.append(' ').append(value.applyAsLong(s)).append('\n');
+        }
+    }
+
+    private static void labels(StringBuilder out, LatencyStats stats, String extraName, String extraValue) {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, String> label : stats.getLabels().entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+        }
+        if (extraName != null) {
+            out.append(first ? "" : ",").append(extraName).append("=\"").append(extraValue).append('"');
+        }
+        out.append('}');
+    }
+
+    private static void gauge(StringBuilder out, String name, double value) {
+        out.append("# TYPE ").append(name).append(" gauge\n").append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, long value) {
+        out.append("# TYPE ").append(name).append(" counter\n").append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.metrics;
+
+import org.example.exec.OperationType;
+import org.example.exec.RequestExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Per operation type gauges read from the {@link RequestExecutor}: requests queued for a permit,
+ * requests in flight, the concurrency limit, and requests completed or failed. Empty until an
+ * executor is bound, which only the sync service has.
+ */
+public class ExecutorMetrics {
+    private final Consumer<ExecutorStats> onNewStats;
+    private volatile List<ExecutorStats> stats = List.of();
+
+    /**
+     * @param onNewStats called once for each operation type when an executor is bound, e.g. to register it with JMX
+     */
+    public ExecutorMetrics(Consumer<ExecutorStats> onNewStats) {
+        this.onNewStats = onNewStats;
+    }
+
+    /**
+     * Reads the gauges from this executor from now on. An application binds its one executor.
+     */
+    public synchronized void bind(RequestExecutor executor) {
+        Map<OperationType, ExecutorStats> bound = new EnumMap<>(OperationType.class);
+        for (OperationType type : OperationType.values()) {
+            ExecutorStats operationStats = new ExecutorStats(executor, type);
+            bound.put(type, operationStats);
+            onNewStats.accept(operationStats);
+        }
+        stats = List.copyOf(bound.values());
+    }
+
+    public Collection<ExecutorStats> getStats() {
+        return new ArrayList<>(stats);
+    }
+
+    public void print() {
+        List<ExecutorStats> current = stats;
+        if (current.isEmpty()) {
+            return;
+        }
+        System.out.println("Request executor:");
+        for (ExecutorStats operationStats : current) {
+            System.out.println("  - " + operationStats.getOperation() + ": in flight " + operationStats.getInFlight()
+                    + "/" + operationStats.getLimit() + ", queued " + operationStats.getQueueDepth()
+                    + ", completed " + operationStats.getCompleted() + ", failed " + operationStats.getFailed());
+        }
+    }
+
+    /**
+     * The executor's figures for one operation type, read live on every call.
+     */
+    public static final class ExecutorStats implements ExecutorStatsMXBean {
+        private final RequestExecutor executor;
+        private final OperationType type;
+
+        ExecutorStats(RequestExecutor executor, OperationType type) {
+            this.executor = executor;
+            this.type = type;
+        }
+
+        public String getOperation() {
+            return type.getPropertyName();
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return executor.getQueueDepth(type);
+        }
+
+        @Override
+        public int getInFlight() {
+            return executor.getInFlight(type);
+        }
+
+        @Override
+        public int getLimit() {
+            return executor.getLimit(type);
+        }
+
+        @Override
+        public long getCompleted() {
+            return executor.getCompleted(type);
+        }
+
+        @Override
+        public long getFailed() {
+            return executor.getFailed(type);
+        }
+    }
+}
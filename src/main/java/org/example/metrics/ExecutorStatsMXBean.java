@@ -0,0 +1,17 @@
+package org.example.metrics;
+
+/**
+ * JMX view of the request executor's figures for one operation type.
+ */
+public interface ExecutorStatsMXBean {
+
+    int getQueueDepth();
+
+    int getInFlight();
+
+    int getLimit();
+
+    long getCompleted();
+
+    long getFailed();
+}
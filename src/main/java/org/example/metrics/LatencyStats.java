@@ -0,0 +1,131 @@
+package org.example.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and counters for one command or operation. Latencies go into an HdrHistogram
+ * with three significant digits, so p99 and p999 stay accurate without keeping every sample,
+ * and recording never takes a lock.
+ */
+public class LatencyStats implements LatencyStatsMXBean {
+    private final Map<String, String> labels;
+    private final ConcurrentHistogram histogram = new ConcurrentHistogram(3);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final long createdAt = System.nanoTime();
+
+    /**
+     * @param labels what these figures are for, e.g. command=find, collection=enrollments;
+     *               used as JMX key properties and Prometheus labels
+     */
+    public LatencyStats(Map<String, String> labels) {
+        this.labels = Collections.unmodifiableMap(new LinkedHashMap<>(labels));
+    }
+
+    /**
+     * Records one call.
+     *
+     * @param nanos     how long the call took
+     * @param documents documents returned or written
+     * @param failed    whether the call failed
+     */
+    public void record(long nanos, long documents, boolean failed) {
+        histogram.recordValue(Math.max(1, nanos));
+        totalNanos.add(nanos);
+        this.documents.add(documents);
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * Adds the encoded size of a call's request and response.
+     */
+    public void recordBytes(long request, long response) {
+        requestBytes.add(request);
+        responseBytes.add(response);
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Calls per second since these stats were created.
+     */
+    @Override
+    public double getThroughputPerSecond() {
+        long elapsed = System.nanoTime() - createdAt;
+        return elapsed == 0 ? 0 : getCount() * 1_000_000_000.0 / elapsed;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return getPercentileMillis(50);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return getPercentileMillis(99);
+    }
+
+    @Override
+    public double getP999Millis() {
+        return getPercentileMillis(99.9);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return histogram.getMaxValue() / 1_000_000.0;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     */
+    public double getPercentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.metrics;
+
+/**
+ * JMX view of one {@link LatencyStats}. Times are in milliseconds.
+ */
+public interface LatencyStatsMXBean {
+
+    long getCount();
+
+    long getFailures();
+
+    long getDocuments();
+
+    long getRequestBytes();
+
+    long getResponseBytes();
+
+    double getThroughputPerSecond();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,56 @@
+package org.example.metrics;
+
+import org.example.exec.OperationType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Per operation type figures for the enrollment operations as the caller sees them: from the
+ * call to its result, including time spent queued and every driver command it needed.
+ */
+public class OperationMetrics {
+    private final Map<OperationType, LatencyStats> stats = new EnumMap<>(OperationType.class);
+
+    /**
+     * @param onNewStats called once for each operation type, e.g. to register it with JMX
+     */
+    public OperationMetrics(Consumer<LatencyStats> onNewStats) {
+        for (OperationType type : OperationType.values()) {
+            LatencyStats operationStats = new LatencyStats(Map.of("operation", type.getPropertyName()));
+            stats.put(type, operationStats);
+            onNewStats.accept(operationStats);
+        }
+    }
+
+    public void record(OperationType type, long nanos, long documents, boolean failed) {
+        stats.get(type).record(nanos, documents, failed);
+    }
+
+    public LatencyStats get(OperationType type) {
+        return stats.get(type);
+    }
+
+    public Collection<LatencyStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    public void print() {
+        System.out.println("Operations:");
+        for (Map.Entry<OperationType, LatencyStats> entry : stats.entrySet()) {
+            LatencyStats operationStats = entry.getValue();
+            if (operationStats.getCount() == 0) {
+                continue;
+            }
+            System.out.println("  - " + entry.getKey().getPropertyName() + ": " + operationStats.getCount() + " calls"
+                    + (operationStats.getFailures() > 0 ? " (" + operationStats.getFailures() + " failed)" : "")
+                    + ", " + String.format("%.1f", operationStats.getThroughputPerSecond()) + "/s"
+                    + ", p50 " + String.format("%.2f", operationStats.getP50Millis())
+                    + " ms, p99 " + String.format("%.2f", operationStats.getP99Millis())
+                    + " ms, p999 " + String.format("%.2f", operationStats.getP999Millis()) + " ms");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.metrics;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolClearedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool figures collected from the driver's pool events. A high checkout wait time or
+ * checkout timeouts while checked-out connections sit at the pool maximum means the pool is starved.
+ */
+public class PoolMetrics implements ConnectionPoolListener {
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger maxCheckedOut = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder checkoutTimeouts = new LongAdder();
+    private final LongAdder checkoutFailures = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder poolClears = new LongAdder();
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        int current = checkedOut.incrementAndGet();
+        maxCheckedOut.accumulateAndGet(current, Math::max);
+        checkouts.increment();
+        recordWait(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        if (event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT) {
+            checkoutTimeouts.increment();
+        } else {
+            checkoutFailures.increment();
+        }
+        recordWait(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        open.decrementAndGet();
+    }
+
+    @Override
+    public void connectionPoolCleared(ConnectionPoolClearedEvent event) {
+        poolClears.increment();
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public int getCheckedOut() {
+        return checkedOut.get();
+    }
+
+    public int getMaxCheckedOut() {
+        return maxCheckedOut.get();
+    }
+
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    public long getCheckoutTimeouts() {
+        return checkoutTimeouts.sum();
+    }
+
+    public long getCheckoutFailures() {
+        return checkoutFailures.sum();
+    }
+
+    public long getPoolClears() {
+        return poolClears.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = checkouts.sum() + checkoutTimeouts.sum() + checkoutFailures.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public void print() {
+        System.out.println("Connection pool:");
+        System.out.println("  - Checked out: " + getCheckedOut() + " (peak " + getMaxCheckedOut() + "), open: "
+                + getOpenConnections());
+        System.out.println("  - Checkouts: " + getCheckouts() + ", timeouts: " + getCheckoutTimeouts()
+                + ", other failures: " + getCheckoutFailures() + ", pool clears: " + getPoolClears());
+        System.out.println("  - Checkout wait (ms): avg " + String.format("%.2f", getAverageWaitMillis())
+                + ", max " + String.format("%.2f", getMaxWaitMillis()));
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.metrics;
+
+import org.example.storage.StorageAnalytics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes returned by projected reads, per query shape, and an estimate of the bytes the projection
+ * saved. Some queries of each shape are sampled: the same filter is run again returning only the
+ * full size of each matching document, and the ratio seen on those samples is applied to all the
+ * bytes the shape returned.
+ */
+public class ProjectionMetrics {
+
+    /**
+     * Counters for one query shape.
+     */
+    public static final class ShapeStats {
+        private final String shape;
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder documents = new LongAdder();
+        private final LongAdder returnedBytes = new LongAdder();
+        private final LongAdder sampledQueries = new LongAdder();
+        private final LongAdder sampledReturnedBytes = new LongAdder();
+        private final LongAdder sampledFullBytes = new LongAdder();
+        private volatile boolean sizeUnavailable;
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getQueries() {
+            return queries.sum();
+        }
+
+        public long getDocuments() {
+            return documents.sum();
+        }
+
+        public long getReturnedBytes() {
+            return returnedBytes.sum();
+        }
+
+        public long getSampledQueries() {
+            return sampledQueries.sum();
+        }
+
+        /**
+         * Estimated bytes the same queries would have returned without a projection, or -1 if
+         * nothing was sampled.
+         */
+        public long getEstimatedFullBytes() {
+            long sampledReturned = sampledReturnedBytes.sum();
+            if (sampledReturned == 0) {
+                return -1;
+            }
+            return Math.round(returnedBytes.sum() * ((double) sampledFullBytes.sum() / sampledReturned));
+        }
+
+        public long getEstimatedSavedBytes() {
+            long full = getEstimatedFullBytes();
+            return full < 0 ? -1 : Math.max(0, full - returnedBytes.sum());
+        }
+    }
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentSkipListMap<>();
+
+    /**
+     * Records one query of a shape and the encoded size of what it returned.
+     */
+    public void record(String shape, long documents, long bytes) {
+        ShapeStats stats = stats(shape);
+        stats.queries.increment();
+        stats.documents.add(documents);
+        stats.returnedBytes.add(bytes);
+    }
+
+    /**
+     * Records a sampled query: what the projection returned and what the whole documents measure.
+     */
+    public void recordSample(String shape, long returnedBytes, long fullBytes) {
+        ShapeStats stats = stats(shape);
+        stats.sampledQueries.increment();
+        stats.sampledReturnedBytes.add(returnedBytes);
+        stats.sampledFullBytes.add(fullBytes);
+    }
+
+    /**
+     * Notes that full sizes cannot be measured for a shape, e.g. because the server has no $bsonSize.
+     */
+    public void recordSizeUnavailable(String shape) {
+        stats(shape).sizeUnavailable = true;
+    }
+
+    /**
+     * Whether the next query of a shape should be sampled: always the first one, then at the given rate.
+     */
+    public boolean shouldSample(String shape, double sampleRate) {
+        ShapeStats stats = stats(shape);
+        if (stats.sizeUnavailable) {
+            return false;
+        }
+        return stats.sampledQueries.sum() == 0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public Collection<ShapeStats> getStats() {
+        return Collections.unmodifiableCollection(shapes.values());
+    }
+
+    public void print() {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        System.out.println("Projected reads (bytes saved estimated from sampled full sizes):");
+        for (ShapeStats stats : shapes.values()) {
+            long saved = stats.getEstimatedSavedBytes();
+            long full = stats.getEstimatedFullBytes();
+            String savings = stats.sizeUnavailable ? "full size not measurable"
+                    : saved < 0 ? "not sampled yet"
+                    : "saved ~" + StorageAnalytics.formatBytes(saved) + " of ~" + StorageAnalytics.formatBytes(full)
+                    + String.format(" (%.0f%%)", full == 0 ? 0.0 : 100.0 * saved / full);
+            System.out.println("  - " + stats.shape + ": " + stats.getQueries() + " queries, "
+                    + stats.getDocuments() + " documents, " + StorageAnalytics.formatBytes(stats.getReturnedBytes())
+                    + " returned, " + savings + ", " + stats.getSampledQueries() + " sampled");
+        }
+    }
+
+    private ShapeStats stats(String shape) {
+        return shapes.computeIfAbsent(shape, ShapeStats::new);
+    }
+}
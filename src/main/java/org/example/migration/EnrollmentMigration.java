@@ -0,0 +1,272 @@
+package org.example.migration;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.cache.DocumentCache;
+import org.example.model.Enrollment;
+import org.example.query.IdRange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites every enrollment of one model into the other: referenced enrollments get full student and
+ * course copies embedded, embedded ones are reduced to studentId/courseId references.
+ * The collection is split into _id ranges that are scanned in parallel; each batch of a range resolves
+ * its references with one $in per collection through the document caches and is written back as one
+ * unordered bulk of replaceOne calls. Progress is checkpointed per range so an interrupted run picks up
+ * where it stopped.
+ */
+public class EnrollmentMigration {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final Path DEFAULT_CHECKPOINT_FILE = Path.of("migration-checkpoint.json");
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final int RANGES_PER_THREAD = 4;
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    /**
+     * The model enrollments are converted to.
+     */
+    public enum Target {
+        EMBEDDED(Enrollment.EMBEDDED, Enrollment.REFERENCED),
+        REFERENCED(Enrollment.REFERENCED, Enrollment.EMBEDDED);
+
+        private final String type;
+        private final String sourceType;
+
+        Target(String type, String sourceType) {
+            this.type = type;
+            this.sourceType = sourceType;
+        }
+
+        public String type() {
+            return type;
+        }
+    }
+
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final DocumentCache studentCache;
+    private final DocumentCache courseCache;
+    private final int parallelism;
+    private final int batchSize;
+    private final Path checkpointFile;
+
+    /**
+     * @param parallelism number of ranges converted at the same time
+     * @param batchSize   enrollments read, resolved and written per round trip
+     */
+    public EnrollmentMigration(MongoCollection<Document> enrollmentsCollection, DocumentCache studentCache,
+                               DocumentCache courseCache, int parallelism, int batchSize, Path checkpointFile) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Parallelism and batch size must be positive");
+        }
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.studentCache = studentCache;
+        this.courseCache = courseCache;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Converts all enrollments to the target model, resuming from the checkpoint file if one exists.
+     * The checkpoint is removed once every range has finished.
+     */
+    public MigrationReport run(Target target) throws IOException {
+        MigrationCheckpoint checkpoint = MigrationCheckpoint.load(checkpointFile, target.type);
+        boolean resumed = checkpoint != null;
+        if (checkpoint == null) {
+            checkpoint = MigrationCheckpoint.create(checkpointFile, target.type,
+                    IdRange.split(enrollmentsCollection, parallelism * RANGES_PER_THREAD));
+            checkpoint.save();
+        }
+        List<IdRange> ranges = checkpoint.ranges();
+        long alreadyMigrated = checkpoint.getMigrated();
+        long alreadySkipped = checkpoint.getSkipped();
+        long remaining = enrollmentsCollection.countDocuments(Filters.eq("enrollmentType", target.sourceType));
+        long total = alreadyMigrated + remaining;
+
+        System.out.println((resumed ? "Resuming" : "Starting") + " migration to " + target.type + " enrollments: "
+                + remaining + " to convert in " + ranges.size() + " ranges on " + parallelism + " threads");
+
+        long start = System.nanoTime();
+        MigrationCheckpoint progress = checkpoint;
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "migration-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> printProgress(progress, alreadyMigrated + alreadySkipped, total, start),
+                PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                if (!checkpoint.isDone(i)) {
+                    int range = i;
+                    tasks.add(() -> {
+                        migrateRange(target, ranges.get(range), range, progress);
+                        return null;
+                    });
+                }
+            }
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migration interrupted", e);
+        } catch (ExecutionException e) {
+            checkpoint.save();
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IllegalStateException("Migration failed, rerun to resume: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdownNow();
+        }
+
+        checkpoint.delete();
+        return new MigrationReport(target, resumed, ranges.size(), checkpoint.getMigrated() - alreadyMigrated,
+                checkpoint.getSkipped() - alreadySkipped, System.nanoTime() - start);
+    }
+
+    private void migrateRange(Target target, IdRange range, int index, MigrationCheckpoint checkpoint) {
+        ObjectId lastId = checkpoint.lastId(index);
+        try {
+            while (true) {
+                List<Document> batch = new ArrayList<>(batchSize);
+                try (MongoCursor<Document> cursor = enrollmentsCollection
+                        .find(Filters.and(range.after(lastId), Filters.eq("enrollmentType", target.sourceType)))
+                        .sort(Sorts.ascending("_id"))
+                        .limit(batchSize)
+                        .iterator()) {
+                    while (cursor.hasNext()) {
+                        batch.add(cursor.next());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    checkpoint.finish(index);
+                    return;
+                }
+                lastId = batch.get(batch.size() - 1).getObjectId("_id");
+                List<WriteModel<Document>> writes = target == Target.EMBEDDED ? toEmbedded(batch) : toReferenced(batch);
+                long migrated = write(writes);
+                checkpoint.advance(index, lastId, migrated, batch.size() - migrated);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<WriteModel<Document>> toEmbedded(List<Document> batch) {
+        Set<ObjectId> studentIds = new HashSet<>();
+        Set<ObjectId> courseIds = new HashSet<>();
+        for (Document enrollment : batch) {
+            studentIds.add(enrollment.getObjectId("studentId"));
+            courseIds.add(enrollment.getObjectId("courseId"));
+        }
+        Map<ObjectId, Document> students = studentCache.getAllById(studentIds);
+        Map<ObjectId, Document> courses = courseCache.getAllById(courseIds);
+
+        List<WriteModel<Document>> writes = new ArrayList<>(batch.size());
+        for (Document enrollment : batch) {
+            Document student = students.get(enrollment.getObjectId("studentId"));
+            Document course = courses.get(enrollment.getObjectId("courseId"));
+            // Dangling references are left as they are and counted as skipped
+            if (student == null || course == null) {
+                continue;
+            }
+            Document replacement = new Document("_id", enrollment.getObjectId("_id"));
+            for (Map.Entry<String, Object> field : enrollment.entrySet()) {
+                switch (field.getKey()) {
+                    case "_id" -> { }
+                    case "enrollmentType" -> replacement.append("enrollmentType", Enrollment.EMBEDDED);
+                    case "studentId" -> replacement.append("student", student);
+                    case "courseId" -> replacement.append("course", course);
+                    default -> replacement.append(field.getKey(), field.getValue());
+                }
+            }
+            writes.add(replace(enrollment, replacement));
+        }
+        return writes;
+    }
+
+    private List<WriteModel<Document>> toReferenced(List<Document> batch) {
+        List<WriteModel<Document>> writes = new ArrayList<>(batch.size());
+        for (Document enrollment : batch) {
+            Document student = enrollment.get("student", Document.class);
+            Document course = enrollment.get("course", Document.class);
+            if (student == null || course == null
+                    || student.getObjectId("_id") == null || course.getObjectId("_id") == null) {
+                continue;
+            }
+            Document replacement = new Document("_id", enrollment.getObjectId("_id"));
+            for (Map.Entry<String, Object> field : enrollment.entrySet()) {
+                switch (field.getKey()) {
+                    case "_id" -> { }
+                    case "enrollmentType" -> replacement.append("enrollmentType", Enrollment.REFERENCED);
+                    case "student" -> replacement.append("studentId", student.getObjectId("_id"));
+                    case "course" -> replacement.append("courseId", course.getObjectId("_id"));
+                    default -> replacement.append(field.getKey(), field.getValue());
+                }
+            }
+            writes.add(replace(enrollment, replacement));
+        }
+        return writes;
+    }
+
+    // Matching on the old type keeps a concurrent rewrite of the same enrollment from being undone
+    private static WriteModel<Document> replace(Document enrollment, Document replacement) {
+        return new ReplaceOneModel<>(Filters.and(Filters.eq("_id", enrollment.getObjectId("_id")),
+                Filters.eq("enrollmentType", enrollment.getString("enrollmentType"))), replacement);
+    }
+
+    private long write(List<WriteModel<Document>> writes) {
+        if (writes.isEmpty()) {
+            return 0;
+        }
+        try {
+            return enrollmentsCollection.bulkWrite(writes, UNORDERED).getModifiedCount();
+        } catch (MongoBulkWriteException e) {
+            System.err.println("Migration batch had " + e.getWriteErrors().size() + " failed writes: "
+                    + e.getWriteErrors().get(0).getMessage());
+            return e.getWriteResult().getModifiedCount();
+        }
+    }
+
+    // Skipped enrollments keep their old type, so a resumed run counts them in total again
+    private static void printProgress(MigrationCheckpoint checkpoint, long alreadyDone, long total, long start) {
+        long done = checkpoint.getMigrated() + checkpoint.getSkipped();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        double rate = seconds == 0 ? 0 : (done - alreadyDone) / seconds;
+        long left = Math.max(0, total - done);
+        System.out.println("  - Migrated " + done + "/" + total
+                + String.format(" (%.1f%%), %.0f docs/sec", total == 0 ? 100.0 : done * 100.0 / total, rate)
+                + (rate > 0 ? String.format(", ETA %.0f s", left / rate) : ""));
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.migration;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.query.IdRange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of an enrollment migration, kept in a local JSON file: the target shape, the _id range
+ * boundaries, and for each range the last _id converted and whether it is finished. The file is
+ * replaced atomically, at most about once a second while ranges are running and whenever a range
+ * finishes, so a killed migration restarts from its ranges' last saved positions.
+ */
+class MigrationCheckpoint {
+    private static final long SAVE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path file;
+    private final String targetType;
+    private final List<ObjectId> boundaries;
+    private final ObjectId[] lastIds;
+    private final boolean[] done;
+    private long migrated;
+    private long skipped;
+    private long lastSave = System.nanoTime();
+
+    private MigrationCheckpoint(Path file, String targetType, List<ObjectId> boundaries) {
+        this.file = file;
+        this.targetType = targetType;
+        this.boundaries = List.copyOf(boundaries);
+        this.lastIds = new ObjectId[boundaries.size() + 1];
+        this.done = new boolean[boundaries.size() + 1];
+    }
+
+    /**
+     * Starts a new checkpoint for the given ranges.
+     */
+    static MigrationCheckpoint create(Path file, String targetType, List<IdRange> ranges) {
+        List<ObjectId> boundaries = new ArrayList<>();
+        for (int i = 1; i < ranges.size(); i++) {
+            boundaries.add(ranges.get(i).lower());
+        }
+        return new MigrationCheckpoint(file, targetType, boundaries);
+    }
+
+    /**
+     * @return the saved checkpoint, or null if there is none
+     * @throws IllegalStateException if it belongs to a migration towards the other shape
+     */
+    static MigrationCheckpoint load(Path file, String targetType) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Document saved = Document.parse(Files.readString(file, StandardCharsets.UTF_8));
+        if (!targetType.equals(saved.getString("targetType"))) {
+            throw new IllegalStateException("Checkpoint " + file + " is for a migration to "
+                    + saved.getString("targetType") + "; finish that one or delete the file");
+        }
+        MigrationCheckpoint checkpoint = new MigrationCheckpoint(file, targetType,
+                saved.getList("boundaries", ObjectId.class));
+        List<Document> ranges = saved.getList("ranges", Document.class);
+        for (int i = 0; i < ranges.size() && i < checkpoint.lastIds.length; i++) {
+            checkpoint.lastIds[i] = ranges.get(i).getObjectId("lastId");
+            checkpoint.done[i] = ranges.get(i).getBoolean("done", false);
+        }
+        checkpoint.migrated = saved.get("migrated", Number.class).longValue();
+        checkpoint.skipped = saved.get("skipped", Number.class).longValue();
+        return checkpoint;
+    }
+
+    List<IdRange> ranges() {
+        return IdRange.fromBoundaries(boundaries);
+    }
+
+    synchronized ObjectId lastId(int range) {
+        return lastIds[range];
+    }
+
+    synchronized boolean isDone(int range) {
+        return done[range];
+    }
+
+    synchronized long getMigrated() {
+        return migrated;
+    }
+
+    synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Records a converted batch of a range and saves the file if the last save is old enough.
+     */
+    synchronized void advance(int range, ObjectId lastId, long batchMigrated, long batchSkipped) throws IOException {
+        lastIds[range] = lastId;
+        migrated += batchMigrated;
+        skipped += batchSkipped;
+        if (System.nanoTime() - lastSave >= SAVE_INTERVAL_NANOS) {
+            save();
+        }
+    }
+
+    synchronized void finish(int range) throws IOException {
+        done[range] = true;
+        save();
+    }
+
+    synchronized void save() throws IOException {
+        List<Document> ranges = new ArrayList<>(lastIds.length);
+        for (int i = 0; i < lastIds.length; i++) {
+            ranges.add(new Document("lastId", lastIds[i]).append("done", done[i]));
+        }
+        Document saved = new Document("targetType", targetType)
+                .append("boundaries", boundaries)
+                .append("ranges", ranges)
+                .append("migrated", migrated)
+                .append("skipped", skipped);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, saved.toJson(), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        lastSave = System.nanoTime();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.migration;
+
+/**
+ * Summary of one enrollment migration run.
+ *
+ * @param migrated     enrollments converted by this run
+ * @param skipped      enrollments left as they were because a referenced student or course is missing
+ * @param elapsedNanos wall-clock time of this run
+ */
+public record MigrationReport(EnrollmentMigration.Target target, boolean resumed, int ranges,
+                              long migrated, long skipped, long elapsedNanos) {
+
+    public double getDocsPerSecond() {
+        return elapsedNanos == 0 ? 0 : migrated * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public void print() {
+        System.out.println("\n--- MIGRATION TO " + target.type().toUpperCase() + " ENROLLMENTS ---");
+        System.out.println("  - Migrated: " + migrated + " enrollments in " + ranges + " ranges"
+                + (resumed ? " (resumed from checkpoint)" : ""));
+        if (skipped > 0) {
+            System.out.println("  - Skipped: " + skipped + " enrollments with missing students or courses");
+        }
+        System.out.println("  - Elapsed: " + String.format("%.2f", elapsedNanos / 1_000_000_000.0) + " s");
+        System.out.println("  - Throughput: " + String.format("%.0f", getDocsPerSecond()) + " docs/sec");
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.model;
+
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+
+/**
+ * A document from the courses collection.
+ *
+ * @param id         the _id, null until inserted
+ * @param name       course title
+ * @param courseId   business key, e.g. "CS101"
+ * @param credits    credit hours, null if unknown
+ * @param instructor teaching instructor
+ * @param extra      fields not modelled here, and modelled fields of an unexpected BSON type, written back unchanged
+ */
+public record Course(ObjectId id, String name, String courseId, Integer credits, String instructor,
+                     BsonDocument extra) {
+
+    public Course(ObjectId id, String name, String courseId, Integer credits, String instructor) {
+        this(id, name, courseId, credits, instructor, new BsonDocument());
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.model;
+
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * A document from the enrollments collection, in either shape.
+ * Referenced enrollments carry {@code studentId} and {@code courseId}; embedded ones carry
+ * full {@code student} and {@code course} copies. The fields of the other shape are null.
+ *
+ * @param id             the _id, null until inserted
+ * @param enrollmentType "referenced" or "embedded"
+ * @param date           enrollment date
+ * @param studentId      referenced student _id
+ * @param courseId       referenced course _id
+ * @param student        embedded student copy
+ * @param course         embedded course copy
+ * @param grade          grade, may be null
+ * @param extra          fields not modelled here, and modelled fields of an unexpected BSON type, written back unchanged
+ */
+public record Enrollment(ObjectId id, String enrollmentType, Date date,
+                         ObjectId studentId, ObjectId courseId,
+                         Student student, Course course, String grade, BsonDocument extra) {
+
+    public static final String REFERENCED = "referenced";
+    public static final String EMBEDDED = "embedded";
+
+    public Enrollment(ObjectId id, String enrollmentType, Date date,
+                      ObjectId studentId, ObjectId courseId,
+                      Student student, Course course, String grade) {
+        this(id, enrollmentType, date, studentId, courseId, student, course, grade, new BsonDocument());
+    }
+
+    public boolean isEmbedded() {
+        return EMBEDDED.equals(enrollmentType);
+    }
+
+    /**
+     * Returns the student _id for either shape.
+     */
+    public ObjectId resolvedStudentId() {
+        return student != null ? student.id() : studentId;
+    }
+
+    /**
+     * Returns the course _id for either shape.
+     */
+    public ObjectId resolvedCourseId() {
+        return course != null ? course.id() : courseId;
+    }
+}
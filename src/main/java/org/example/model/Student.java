@@ -0,0 +1,25 @@
+package org.example.model;
+
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+
+/**
+ * A document from the students collection.
+ *
+ * @param id        the _id, null until inserted
+ * @param name      full name
+ * @param studentId business key, e.g. "S1001"
+ * @param email     email address
+ * @param age       age in years, null if unknown
+ * @param extra     fields not modelled here, and modelled fields of an unexpected BSON type, written back unchanged
+ */
+public record Student(ObjectId id, String name, String studentId, String email, Integer age, BsonDocument extra) {
+
+    public Student(ObjectId id, String name, String studentId, String email, Integer age) {
+        this(id, name, studentId, email, age, new BsonDocument());
+    }
+
+    public Student withName(String newName) {
+        return new Student(id, newName, studentId, email, age, extra);
+    }
+}
@@ -0,0 +1,294 @@
+package org.example.propagation;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the student and course copies embedded in enrollments in sync with their source documents.
+ * Each change is turned into an updateMany on "student._id" or "course._id" that sets the changed
+ * fields and unsets the removed ones; pending changes are
+ * sent together in one unordered bulkWrite and applied on a small pool of worker threads.
+ * Changes to the same document that arrive before it is written are merged, and a document never
+ * has two rewrites in flight at once, so the last submitted value always wins.
+ */
+public class PropagationEngine implements AutoCloseable {
+    public static final int DEFAULT_CONCURRENCY = 2;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private enum Kind {
+        STUDENT("student"),
+        COURSE("course");
+
+        private final String field;
+
+        Kind(String field) {
+            this.field = field;
+        }
+    }
+
+    private record Key(Kind kind, ObjectId id) {
+    }
+
+    private static final class PendingChange {
+        final Document fields = new Document();
+        final Set<String> removed = new LinkedHashSet<>();
+        final long submittedAt = System.nanoTime();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+    }
+
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final ExecutorService workers;
+    private final int concurrency;
+    private final int batchSize;
+    private final PropagationMetrics metrics = new PropagationMetrics();
+
+    // Guarded by this
+    private final Map<Key, PendingChange> pending = new LinkedHashMap<>();
+    private final Set<Key> inFlight = new HashSet<>();
+    private int activeWorkers;
+    private boolean closed;
+
+    public PropagationEngine(MongoCollection<Document> enrollmentsCollection, int concurrency, int batchSize) {
+        if (concurrency < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Concurrency and batch size must be positive");
+        }
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "enrollment-propagation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public PropagationEngine(MongoCollection<Document> enrollmentsCollection) {
+        this(enrollmentsCollection, DEFAULT_CONCURRENCY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Schedules the changed student fields to be copied into every embedded enrollment of that student.
+     *
+     * @param studentId     the student's _id
+     * @param changedFields the new values, keyed by field name as in the students collection
+     * @return completes once the embedded copies have been rewritten
+     */
+    public CompletableFuture<Void> submitStudentChange(ObjectId studentId, Document changedFields) {
+        return submitStudentChange(studentId, changedFields, List.of());
+    }
+
+    /**
+     * Schedules changed and removed student fields to be applied to every embedded enrollment of that student.
+     *
+     * @param removedFields fields that were unset on the student, dotted for nested fields
+     */
+    public CompletableFuture<Void> submitStudentChange(ObjectId studentId, Document changedFields,
+                                                       Collection<String> removedFields) {
+        return submit(new Key(Kind.STUDENT, studentId), changedFields, removedFields);
+    }
+
+    /**
+     * Schedules the changed course fields to be copied into every embedded enrollment of that course.
+     */
+    public CompletableFuture<Void> submitCourseChange(ObjectId courseId, Document changedFields) {
+        return submitCourseChange(courseId, changedFields, List.of());
+    }
+
+    /**
+     * Schedules changed and removed course fields to be applied to every embedded enrollment of that course.
+     */
+    public CompletableFuture<Void> submitCourseChange(ObjectId courseId, Document changedFields,
+                                                      Collection<String> removedFields) {
+        return submit(new Key(Kind.COURSE, courseId), changedFields, removedFields);
+    }
+
+    public PropagationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of changes waiting to be written.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private CompletableFuture<Void> submit(Key key, Document changedFields, Collection<String> removedFields) {
+        if (changedFields.isEmpty() && removedFields.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Propagation engine is closed");
+            }
+            PendingChange change = pending.get(key);
+            boolean coalesced = change != null;
+            if (!coalesced) {
+                change = new PendingChange();
+                pending.put(key, change);
+            }
+            // The later change wins on a path and on anything nested under or above it
+            for (String field : removedFields) {
+                change.fields.keySet().removeIf(path -> overlaps(path, field));
+                change.removed.removeIf(path -> overlaps(path, field));
+                change.removed.add(field);
+            }
+            for (String field : changedFields.keySet()) {
+                change.removed.removeIf(path -> overlaps(path, field));
+                change.fields.keySet().removeIf(path -> overlaps(path, field));
+            }
+            change.fields.putAll(changedFields);
+            metrics.recordSubmitted(coalesced);
+            if (activeWorkers < concurrency) {
+                activeWorkers++;
+                workers.execute(this::drain);
+            }
+            return change.future;
+        }
+    }
+
+    private void drain() {
+        boolean retired = false;
+        try {
+            while (true) {
+                Map<Key, PendingChange> batch = takeBatch();
+                if (batch == null) {
+                    retired = true;
+                    return;
+                }
+                try {
+                    apply(batch);
+                } catch (Throwable e) {
+                    for (PendingChange change : batch.values()) {
+                        change.future.completeExceptionally(e);
+                    }
+                    throw e;
+                } finally {
+                    synchronized (this) {
+                        inFlight.removeAll(batch.keySet());
+                    }
+                }
+            }
+        } finally {
+            if (!retired) {
+                retireAfterFailure();
+            }
+        }
+    }
+
+    // A worker that died still has to be counted out, or close() would wait for it forever
+    private synchronized void retireAfterFailure() {
+        activeWorkers--;
+        if (!pending.isEmpty()) {
+            activeWorkers++;
+            workers.execute(this::drain);
+        }
+        notifyAll();
+    }
+
+    // Returns null and retires the worker when nothing can be taken
+    private synchronized Map<Key, PendingChange> takeBatch() {
+        Map<Key, PendingChange> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<Key, PendingChange>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Map.Entry<Key, PendingChange> entry = iterator.next();
+            if (inFlight.add(entry.getKey())) {
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        if (batch.isEmpty()) {
+            activeWorkers--;
+            notifyAll();
+            return null;
+        }
+        return batch;
+    }
+
+    private void apply(Map<Key, PendingChange> batch) {
+        List<WriteModel<Document>> updates = new ArrayList<>(batch.size());
+        for (Map.Entry<Key, PendingChange> entry : batch.entrySet()) {
+            String prefix = entry.getKey().kind().field;
+            Document set = new Document();
+            for (Map.Entry<String, Object> field : entry.getValue().fields.entrySet()) {
+                set.append(prefix + "." + field.getKey(), field.getValue());
+            }
+            Document unset = new Document();
+            for (String field : entry.getValue().removed) {
+                unset.append(prefix + "." + field, "");
+            }
+            Document update = new Document();
+            if (!set.isEmpty()) {
+                update.append("$set", set);
+            }
+            if (!unset.isEmpty()) {
+                update.append("$unset", unset);
+            }
+            updates.add(new UpdateManyModel<>(Filters.eq(prefix + "._id", entry.getKey().id()), update));
+        }
+
+        try {
+            BulkWriteResult result = enrollmentsCollection.bulkWrite(updates, UNORDERED);
+            metrics.recordBatch(batch.size(), result.getMatchedCount(), result.getModifiedCount());
+            long now = System.nanoTime();
+            for (PendingChange change : batch.values()) {
+                metrics.recordLag(now - change.submittedAt);
+                change.future.complete(null);
+            }
+        } catch (RuntimeException e) {
+            metrics.recordFailed(batch.size());
+            for (PendingChange change : batch.values()) {
+                change.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static boolean overlaps(String path, String other) {
+        return path.equals(other) || path.startsWith(other + ".") || other.startsWith(path + ".");
+    }
+
+    /**
+     * Stops accepting changes, waits for pending ones to be written and shuts the workers down.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            try {
+                while (activeWorkers > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.propagation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the propagation engine: how many changes were applied, how many embedded
+ * documents they rewrote, and how long a change waited before its copies were up to date.
+ */
+public class PropagationMetrics {
+    private final LongAdder changesSubmitted = new LongAdder();
+    private final LongAdder changesCoalesced = new LongAdder();
+    private final LongAdder changesApplied = new LongAdder();
+    private final LongAdder changesFailed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder documentsMatched = new LongAdder();
+    private final LongAdder documentsModified = new LongAdder();
+    private final LongAdder totalLagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final AtomicLong lastLagNanos = new AtomicLong();
+    private final AtomicLong maxBatchDocumentsPerChange = new AtomicLong();
+
+    void recordSubmitted(boolean coalesced) {
+        changesSubmitted.increment();
+        if (coalesced) {
+            changesCoalesced.increment();
+        }
+    }
+
+    void recordBatch(int changes, long matched, long modified) {
+        batches.increment();
+        changesApplied.add(changes);
+        documentsMatched.add(matched);
+        documentsModified.add(modified);
+        // A bulkWrite only reports totals, so the finest figure available is each batch's average
+        long perChange = changes == 0 ? 0 : matched / changes;
+        maxBatchDocumentsPerChange.accumulateAndGet(perChange, Math::max);
+    }
+
+    void recordLag(long lagNanos) {
+        totalLagNanos.add(lagNanos);
+        lastLagNanos.set(lagNanos);
+        maxLagNanos.accumulateAndGet(lagNanos, Math::max);
+    }
+
+    void recordFailed(int changes) {
+        changesFailed.add(changes);
+    }
+
+    public long getChangesSubmitted() {
+        return changesSubmitted.sum();
+    }
+
+    public long getChangesApplied() {
+        return changesApplied.sum();
+    }
+
+    public long getChangesFailed() {
+        return changesFailed.sum();
+    }
+
+    public long getDocumentsModified() {
+        return documentsModified.sum();
+    }
+
+    public double getAverageDocumentsPerChange() {
+        long applied = changesApplied.sum();
+        return applied == 0 ? 0 : (double) documentsMatched.sum() / applied;
+    }
+
+    public double getAverageLagMillis() {
+        long applied = changesApplied.sum();
+        return applied == 0 ? 0 : totalLagNanos.sum() / 1_000_000.0 / applied;
+    }
+
+    public double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+
+    public double getLastLagMillis() {
+        return lastLagNanos.get() / 1_000_000.0;
+    }
+
+    public void print() {
+        System.out.println("Propagation metrics:");
+        System.out.println("  - Changes submitted: " + getChangesSubmitted()
+                + " (" + changesCoalesced.sum() + " merged into a pending change)");
+        System.out.println("  - Changes applied: " + getChangesApplied() + " in " + batches.sum() + " batches"
+                + (getChangesFailed() > 0 ? ", failed: " + getChangesFailed() : ""));
+        System.out.println("  - Embedded documents matched: " + documentsMatched.sum()
+                + ", modified: " + getDocumentsModified());
+        System.out.println("  - Documents per change: avg " + String.format("%.1f", getAverageDocumentsPerChange())
+                + ", highest batch avg " + maxBatchDocumentsPerChange.get());
+        System.out.println("  - Propagation lag (ms): last " + String.format("%.1f", getLastLagMillis())
+                + ", avg " + String.format("%.1f", getAverageLagMillis())
+                + ", max " + String.format("%.1f", getMaxLagMillis()));
+    }
+}
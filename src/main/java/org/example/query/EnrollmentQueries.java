@@ -0,0 +1,170 @@
+package org.example.query;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UnwindOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Enrollment listings that join students and courses on the server.
+ * Each query is a single aggregation with $lookup, streamed back through a cursor,
+ * instead of one extra find() per enrollment for the referenced student and course.
+ * Both referenced and embedded enrollments are returned in the same shape.
+ * The $lookup stages use localField together with a sub-pipeline, which needs MongoDB 5.0 or later.
+ */
+public class EnrollmentQueries {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final UnwindOptions KEEP_MISSING = new UnwindOptions().preserveNullAndEmptyArrays(true);
+
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final int batchSize;
+
+    public EnrollmentQueries(MongoCollection<Document> studentsCollection,
+                             MongoCollection<Document> coursesCollection,
+                             MongoCollection<Document> enrollmentsCollection,
+                             int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.batchSize = batchSize;
+    }
+
+    public EnrollmentQueries(MongoCollection<Document> studentsCollection,
+                             MongoCollection<Document> coursesCollection,
+                             MongoCollection<Document> enrollmentsCollection) {
+        this(studentsCollection, coursesCollection, enrollmentsCollection, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Lists every student enrolled in a course, with date and grade.
+     * Rows look like {enrollmentId, enrollmentType, date, grade, student: {_id, name, studentId, email}}.
+     *
+     * @param courseId the course business key, e.g. "CS101"
+     * @return a cursor over the roster; empty if the course does not exist
+     */
+    public MongoCursor<Document> rosterForCourse(String courseId) {
+        ObjectId courseObjId = findObjectId(coursesCollection, "courseId", courseId);
+        if (courseObjId == null) {
+            return enrollmentsCollection.find(Filters.expr(false)).iterator();
+        }
+        return enrollmentsCollection.aggregate(rosterPipeline(studentsCollection.getNamespace().getCollectionName(), courseObjId))
+                .batchSize(batchSize)
+                .iterator();
+    }
+
+    /**
+     * Lists every course a student is enrolled in, with date and grade.
+     * Rows look like {enrollmentId, enrollmentType, date, grade, course: {_id, name, courseId, credits, instructor}}.
+     *
+     * @param studentId the student business key, e.g. "S1001"
+     * @return a cursor over the transcript; empty if the student does not exist
+     */
+    public MongoCursor<Document> transcriptForStudent(String studentId) {
+        ObjectId studentObjId = findObjectId(studentsCollection, "studentId", studentId);
+        if (studentObjId == null) {
+            return enrollmentsCollection.find(Filters.expr(false)).iterator();
+        }
+        return enrollmentsCollection.aggregate(transcriptPipeline(coursesCollection.getNamespace().getCollectionName(), studentObjId))
+                .batchSize(batchSize)
+                .iterator();
+    }
+
+    /**
+     * Returns the first referenced enrollment matching the filter with its student and course
+     * looked up in the same round trip, under "student" and "course". A dangling reference
+     * leaves the corresponding field absent.
+     */
+    public Document findReferencedWithDetails(Bson filter) {
+        return enrollmentsCollection.aggregate(Arrays.asList(
+                Aggregates.match(filter),
+                Aggregates.limit(1),
+                Aggregates.lookup(studentsCollection.getNamespace().getCollectionName(), "studentId", "_id", "student"),
+                Aggregates.lookup(coursesCollection.getNamespace().getCollectionName(), "courseId", "_id", "course"),
+                Aggregates.unwind("$student", KEEP_MISSING),
+                Aggregates.unwind("$course", KEEP_MISSING)
+        )).first();
+    }
+
+    /**
+     * Matches the enrollments of one course in either model.
+     *
+     * @param courseObjId the course _id, usually an ObjectId
+     */
+    public static Bson rosterFilter(Object courseObjId) {
+        return Filters.or(Filters.eq("courseId", courseObjId), Filters.eq("course._id", courseObjId));
+    }
+
+    /**
+     * Matches the enrollments of one student in either model.
+     *
+     * @param studentObjId the student _id, usually an ObjectId
+     */
+    public static Bson transcriptFilter(Object studentObjId) {
+        return Filters.or(Filters.and(Filters.eq("enrollmentType", "referenced"), Filters.eq("studentId", studentObjId)),
+                Filters.eq("student._id", studentObjId));
+    }
+
+    /**
+     * Pipeline over the enrollments collection producing the roster rows for one course.
+     */
+    public static List<Bson> rosterPipeline(String studentsCollectionName, Object courseObjId) {
+        return joinPipeline(rosterFilter(courseObjId), studentsCollectionName, "studentId", "student",
+                Arrays.asList("name", "studentId", "email"));
+    }
+
+    /**
+     * Pipeline over the enrollments collection producing the transcript rows for one student.
+     */
+    public static List<Bson> transcriptPipeline(String coursesCollectionName, Object studentObjId) {
+        return joinPipeline(transcriptFilter(studentObjId), coursesCollectionName, "courseId", "course",
+                Arrays.asList("name", "courseId", "credits", "instructor"));
+    }
+
+    // Referenced enrollments take the joined document, embedded ones keep their own copy, cut down
+    // to the same fields right after the match so the rest of the embedded copy is never carried along
+    private static List<Bson> joinPipeline(Bson match, String from, String localField, String as, List<String> fields) {
+        String joined = "_" + as;
+        List<String> kept = new ArrayList<>(Arrays.asList("enrollmentType", "date", "grade", localField, as + "._id"));
+        for (String field : fields) {
+            kept.add(as + "." + field);
+        }
+        return Arrays.asList(
+                Aggregates.match(match),
+                Aggregates.project(Projections.include(kept)),
+                new Document("$lookup", new Document("from", from)
+                        .append("localField", localField)
+                        .append("foreignField", "_id")
+                        .append("pipeline", Collections.singletonList(Aggregates.project(Projections.include(fields))))
+                        .append("as", joined)),
+                Aggregates.project(new Document("_id", 0)
+                        .append("enrollmentId", "$_id")
+                        .append("enrollmentType", 1)
+                        .append("date", 1)
+                        .append("grade", 1)
+                        .append(as, new Document("$ifNull", Arrays.asList(
+                                new Document("$arrayElemAt", Arrays.asList("$" + joined, 0)),
+                                "$" + as))))
+        );
+    }
+
+    private static ObjectId findObjectId(MongoCollection<Document> collection, String keyField, String key) {
+        Document document = collection.find(Filters.eq(keyField, key)).projection(Projections.include("_id")).first();
+        return document == null ? null : document.getObjectId("_id");
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.query;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A half-open range of ObjectId _id values, [lower, upper), where a null bound is open.
+ * Used to split a collection scan into pieces that can run in parallel.
+ *
+ * @param lower first _id in the range, or null for no lower bound
+ * @param upper first _id after the range, or null for no upper bound
+ */
+public record IdRange(ObjectId lower, ObjectId upper) {
+    private static final int SAMPLES_PER_RANGE = 32;
+
+    /**
+     * Filter matching the _id values of this range.
+     */
+    public Bson filter() {
+        return after(null);
+    }
+
+    /**
+     * Filter matching the _id values of this range that are greater than {@code lastSeen},
+     * for continuing a scan of the range.
+     */
+    public Bson after(ObjectId lastSeen) {
+        List<Bson> conditions = new ArrayList<>(2);
+        if (lastSeen != null) {
+            conditions.add(Filters.gt("_id", lastSeen));
+        } else if (lower != null) {
+            conditions.add(Filters.gte("_id", lower));
+        }
+        if (upper != null) {
+            conditions.add(Filters.lt("_id", upper));
+        }
+        if (conditions.isEmpty()) {
+            return new Document();
+        }
+        return conditions.size() == 1 ? conditions.get(0) : Filters.and(conditions);
+    }
+
+    /**
+     * Splits the _id space of a collection into about {@code count} ranges holding similar numbers of
+     * documents, with boundaries picked from a random sample of _id values. Fewer ranges come back
+     * when the collection is too small to tell them apart.
+     */
+    public static List<IdRange> split(MongoCollection<Document> collection, int count) {
+        return split(collection, new Document(), count);
+    }
+
+    /**
+     * Like {@link #split(MongoCollection, int)}, but balances the ranges over the documents matching
+     * the filter only, for scans that read a small part of the collection.
+     * A single unbounded range comes back if any sampled _id is not an ObjectId.
+     */
+    public static List<IdRange> split(MongoCollection<Document> collection, Bson filter, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Range count must be positive");
+        }
+        if (count == 1) {
+            return List.of(new IdRange(null, null));
+        }
+        List<Bson> pipeline = new ArrayList<>();
+        // A leading $sample on the whole collection can use a random cursor, so only match when needed
+        if (!filter.toBsonDocument().isEmpty()) {
+            pipeline.add(Aggregates.match(filter));
+        }
+        pipeline.addAll(Arrays.asList(
+                Aggregates.sample(count * SAMPLES_PER_RANGE),
+                Aggregates.project(Projections.include("_id")),
+                Aggregates.sort(Sorts.ascending("_id"))));
+        List<ObjectId> sample = new ArrayList<>();
+        for (Document document : collection.aggregate(pipeline)) {
+            if (!(document.get("_id") instanceof ObjectId id)) {
+                return List.of(new IdRange(null, null));
+            }
+            sample.add(id);
+        }
+        List<ObjectId> boundaries = new ArrayList<>();
+        for (int i = 1; i < count && !sample.isEmpty(); i++) {
+            ObjectId boundary = sample.get(i * sample.size() / count);
+            if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                boundaries.add(boundary);
+            }
+        }
+        return fromBoundaries(boundaries);
+    }
+
+    /**
+     * Builds the ranges between ascending boundaries: one below the first, one between each pair
+     * and one from the last upwards.
+     */
+    public static List<IdRange> fromBoundaries(List<ObjectId> boundaries) {
+        List<IdRange> ranges = new ArrayList<>(boundaries.size() + 1);
+        ObjectId lower = null;
+        for (ObjectId boundary : boundaries) {
+            ranges.add(new IdRange(lower, boundary));
+            lower = boundary;
+        }
+        ranges.add(new IdRange(lower, null));
+        return ranges;
+    }
+}
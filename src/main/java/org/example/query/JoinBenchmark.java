@@ -0,0 +1,110 @@
+package org.example.query;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Compares listing a course roster with the client-side join used by queryEnrollments()
+ * (one find per referenced student) against the single $lookup aggregation in {@link EnrollmentQueries}.
+ */
+public class JoinBenchmark {
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final EnrollmentQueries queries;
+
+    public JoinBenchmark(MongoCollection<Document> studentsCollection,
+                         MongoCollection<Document> coursesCollection,
+                         MongoCollection<Document> enrollmentsCollection,
+                         EnrollmentQueries queries) {
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.queries = queries;
+    }
+
+    /**
+     * Runs both approaches for the given course and prints the average time per roster.
+     *
+     * @param courseId   the course business key
+     * @param iterations how many times to list the roster with each approach
+     */
+    public void run(String courseId, int iterations) {
+        System.out.println("\n--- JOIN BENCHMARK: " + courseId + " ---");
+
+        // Warm up both paths once so connection setup is not counted
+        long rows = clientSideJoin(courseId);
+        long lookupRows = lookupJoin(courseId);
+        if (rows != lookupRows) {
+            System.out.println("Warning: client-side join returned " + rows + " rows, $lookup returned " + lookupRows);
+        }
+
+        long clientNanos = 0;
+        long lookupNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            clientSideJoin(courseId);
+            clientNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            lookupJoin(courseId);
+            lookupNanos += System.nanoTime() - start;
+        }
+
+        double clientMillis = clientNanos / 1_000_000.0 / iterations;
+        double lookupMillis = lookupNanos / 1_000_000.0 / iterations;
+        System.out.println("Roster size: " + lookupRows + " enrollments, " + iterations + " iterations");
+        System.out.println("  - Client-side join: " + String.format("%.2f", clientMillis) + " ms per roster ("
+                + (rows + 2) + " queries)");
+        System.out.println("  - $lookup pipeline: " + String.format("%.2f", lookupMillis) + " ms per roster (2 queries)");
+        if (lookupMillis > 0) {
+            System.out.println("  - Speedup: " + String.format("%.1f", clientMillis / lookupMillis) + "x");
+        }
+    }
+
+    /**
+     * The N+1 pattern: find the course, find its enrollments, then look up each student on its own.
+     * Each find reads the same fields as the roster rows, so only the round trips differ.
+     */
+    public long clientSideJoin(String courseId) {
+        Document course = coursesCollection.find(Filters.eq("courseId", courseId))
+                .projection(Projections.include("_id")).first();
+        if (course == null) {
+            return 0;
+        }
+        ObjectId courseObjId = course.getObjectId("_id");
+        long rows = 0;
+        try (MongoCursor<Document> cursor = enrollmentsCollection.find(Filters.eq("courseId", courseObjId))
+                .projection(Projections.include("studentId", "date", "grade")).iterator()) {
+            while (cursor.hasNext()) {
+                Document enrollment = cursor.next();
+                Document student = studentsCollection.find(Filters.eq("_id", enrollment.getObjectId("studentId")))
+                        .projection(Projections.include("name", "studentId", "email")).first();
+                if (student != null) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The same roster as one $lookup aggregation; counts referenced rows so both results compare.
+     */
+    public long lookupJoin(String courseId) {
+        long rows = 0;
+        try (MongoCursor<Document> cursor = queries.rosterForCourse(courseId)) {
+            while (cursor.hasNext()) {
+                Document row = cursor.next();
+                if ("referenced".equals(row.getString("enrollmentType"))) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+}
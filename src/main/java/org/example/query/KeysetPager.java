@@ -0,0 +1,173 @@
+package org.example.query;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.conversions.Bson;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pages through a collection in ascending order of a sort key without skip(). Each page starts
+ * with a range condition on the sort key of the previous page's last row, so with an index on the
+ * sort key page 10,000 costs the same as page 1. The sort key must be unique (end it with "_id"
+ * if in doubt) and present in every document, otherwise rows can be skipped or repeated.
+ * Continuation tokens are opaque URL-safe strings and only valid for the pager that issued them.
+ */
+public class KeysetPager {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 10_000;
+
+    private static final int TOKEN_VERSION = 1;
+
+    private final MongoCollection<Document> collection;
+    private final List<String> sortFields;
+    private final String sortSpec;
+
+    /**
+     * @param collection the collection to page through
+     * @param sortFields the unique sort key, most significant field first
+     */
+    public KeysetPager(MongoCollection<Document> collection, List<String> sortFields) {
+        if (sortFields.isEmpty()) {
+            throw new IllegalArgumentException("At least one sort field is needed");
+        }
+        this.collection = collection;
+        this.sortFields = List.copyOf(sortFields);
+        this.sortSpec = collection.getNamespace().getCollectionName() + ":" + String.join(",", sortFields);
+    }
+
+    /**
+     * Students by their unique studentId.
+     */
+    public static KeysetPager students(MongoCollection<Document> studentsCollection) {
+        return new KeysetPager(studentsCollection, List.of("studentId"));
+    }
+
+    /**
+     * Courses by their unique courseId.
+     */
+    public static KeysetPager courses(MongoCollection<Document> coursesCollection) {
+        return new KeysetPager(coursesCollection, List.of("courseId"));
+    }
+
+    /**
+     * Enrollments by _id, which also orders them by creation time.
+     */
+    public static KeysetPager enrollments(MongoCollection<Document> enrollmentsCollection) {
+        return new KeysetPager(enrollmentsCollection, List.of("_id"));
+    }
+
+    /**
+     * Returns the page that follows the token, or the first page if the token is null.
+     *
+     * @param filter   restricts the listing; must be the same for every page of one listing
+     * @param fields   fields to return, empty for whole documents; the sort key is always included
+     * @param pageSize rows per page
+     * @param token    the previous page's {@link Page#nextToken()}, or null
+     * @throws IllegalArgumentException if the token is malformed or from a different pager
+     */
+    public Page page(Bson filter, List<String> fields, int pageSize, String token) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Bson query = token == null ? filter : Filters.and(filter, after(decode(token)));
+        List<Document> rows = collection.find(query)
+                .projection(projection(fields))
+                .sort(Sorts.ascending(sortFields))
+                // One extra row tells whether another page exists without a count
+                .limit(pageSize + 1)
+                .batchSize(pageSize + 1)
+                .into(new ArrayList<>(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new Page(rows, null);
+        }
+        List<Document> items = rows.subList(0, pageSize);
+        return new Page(new ArrayList<>(items), tokenAfter(items.get(pageSize - 1)));
+    }
+
+    /**
+     * Returns the page that follows the token over the whole collection.
+     */
+    public Page page(int pageSize, String token) {
+        return page(new Document(), List.of(), pageSize, token);
+    }
+
+    /**
+     * Builds the token for the page starting after the given row, which must contain the sort key.
+     */
+    public String tokenAfter(Document row) {
+        BsonArray key = new BsonArray();
+        BsonDocument bsonRow = row.toBsonDocument(BsonDocument.class, collection.getCodecRegistry());
+        for (String field : sortFields) {
+            BsonValue value = bsonRow.get(field);
+            if (value == null || value.isNull()) {
+                throw new IllegalArgumentException("Row has no value for sort field " + field);
+            }
+            key.add(value);
+        }
+        BsonDocument token = new BsonDocument("v", new BsonInt32(TOKEN_VERSION))
+                .append("s", new BsonString(sortSpec))
+                .append("k", key);
+        RawBsonDocument raw = new RawBsonDocument(token, new BsonDocumentCodec());
+        ByteBuffer bytes = raw.getByteBuffer().asNIO();
+        byte[] encoded = new byte[bytes.remaining()];
+        bytes.get(encoded);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(encoded);
+    }
+
+    private BsonArray decode(String token) {
+        int version;
+        String spec;
+        BsonArray key;
+        try {
+            BsonDocument document = new RawBsonDocument(Base64.getUrlDecoder().decode(token));
+            version = document.getInt32("v").getValue();
+            spec = document.getString("s").getValue();
+            key = document.getArray("k");
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+        if (version != TOKEN_VERSION || !spec.equals(sortSpec) || key.size() != sortFields.size()) {
+            throw new IllegalArgumentException("Page token belongs to a different listing");
+        }
+        return key;
+    }
+
+    // (a > x) or (a = x and b > y) or (a = x and b = y and c > z) ...
+    private Bson after(BsonArray key) {
+        List<Bson> branches = new ArrayList<>(sortFields.size());
+        for (int i = 0; i < sortFields.size(); i++) {
+            List<Bson> conditions = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                conditions.add(Filters.eq(sortFields.get(j), key.get(j)));
+            }
+            conditions.add(Filters.gt(sortFields.get(i), key.get(i)));
+            branches.add(conditions.size() == 1 ? conditions.get(0) : Filters.and(conditions));
+        }
+        return branches.size() == 1 ? branches.get(0) : Filters.or(branches);
+    }
+
+    private Bson projection(List<String> fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        Set<String> included = new LinkedHashSet<>(fields);
+        included.addAll(sortFields);
+        return Projections.include(new ArrayList<>(included));
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.query;
+
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * One page of a {@link KeysetPager} listing.
+ *
+ * @param items     the rows of this page, in sort order
+ * @param nextToken pass to the next call to continue after this page; null on the last page
+ */
+public record Page(List<Document> items, String nextToken) {
+
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+}
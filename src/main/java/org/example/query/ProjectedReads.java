@@ -0,0 +1,115 @@
+package org.example.query;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.example.metrics.ProjectionMetrics;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Runs finds that return only the fields of a {@link ReadShape}, as {@link RawBsonDocument}s.
+ * A raw document keeps the reply bytes and only parses the fields that are asked for, so embedded
+ * copies that are never read are never decoded either. The returned bytes of every read are
+ * recorded per shape; a sample of reads also measures the full documents with $bsonSize
+ * (MongoDB 4.4 or later) to estimate what the projection saved. That measurement reruns the read's
+ * filter on the server, so it costs one more query over the same documents. It runs on a virtual
+ * thread after the read has returned, and a sample is dropped if {@value #MAX_SAMPLES_IN_FLIGHT}
+ * are already running, so the caller never waits for it.
+ */
+public class ProjectedReads {
+    public static final double DEFAULT_SAMPLE_RATE = 0.01;
+    public static final int MAX_SAMPLES_IN_FLIGHT = 2;
+
+    private static final Bson FULL_SIZE = new Document("_id", 0).append("bytes", new Document("$bsonSize", "$$ROOT"));
+
+    private final ProjectionMetrics metrics;
+    private final double sampleRate;
+    private final Semaphore samplePermits = new Semaphore(MAX_SAMPLES_IN_FLIGHT);
+
+    /**
+     * @param sampleRate fraction of reads per shape, after the first, that also measure full sizes
+     */
+    public ProjectedReads(ProjectionMetrics metrics, double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.metrics = metrics;
+        this.sampleRate = sampleRate;
+    }
+
+    public ProjectedReads(ProjectionMetrics metrics) {
+        this(metrics, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Returns the shape's fields of the first document matching the filter, or null.
+     */
+    public RawBsonDocument first(MongoCollection<?> collection, ReadShape shape, Bson filter) {
+        RawBsonDocument document = find(collection, shape, filter).limit(1).first();
+        long bytes = document == null ? 0 : document.getByteBuffer().remaining();
+        record(collection, shape, filter, document == null ? 0 : 1, bytes, 1);
+        return document;
+    }
+
+    /**
+     * Hands the shape's fields of every document matching the filter to the action.
+     *
+     * @return the number of documents read
+     */
+    public long forEach(MongoCollection<?> collection, ReadShape shape, Bson filter, Consumer<RawBsonDocument> action) {
+        long documents = 0;
+        long bytes = 0;
+        try (MongoCursor<RawBsonDocument> cursor = find(collection, shape, filter).iterator()) {
+            while (cursor.hasNext()) {
+                RawBsonDocument document = cursor.next();
+                documents++;
+                bytes += document.getByteBuffer().remaining();
+                action.accept(document);
+            }
+        }
+        record(collection, shape, filter, documents, bytes, 0);
+        return documents;
+    }
+
+    private static FindIterable<RawBsonDocument> find(MongoCollection<?> collection, ReadShape shape, Bson filter) {
+        FindIterable<RawBsonDocument> find = collection.withDocumentClass(RawBsonDocument.class).find(filter);
+        return shape.getProjection() == null ? find : find.projection(shape.getProjection());
+    }
+
+    private void record(MongoCollection<?> collection, ReadShape shape, Bson filter, long documents, long bytes,
+                        int limit) {
+        metrics.record(shape.name(), documents, bytes);
+        if (documents == 0 || !metrics.shouldSample(shape.name(), sampleRate)) {
+            return;
+        }
+        if (shape.getProjection() == null) {
+            metrics.recordSample(shape.name(), bytes, bytes);
+            return;
+        }
+        if (!samplePermits.tryAcquire()) {
+            return;
+        }
+        Thread.ofVirtual().name("projection-sample").start(() -> {
+            try {
+                long fullBytes = 0;
+                for (Document size : collection.withDocumentClass(Document.class).find(filter).projection(FULL_SIZE)
+                        .limit(limit)) {
+                    fullBytes += size.getInteger("bytes", 0);
+                }
+                metrics.recordSample(shape.name(), bytes, fullBytes);
+            } catch (MongoCommandException e) {
+                metrics.recordSizeUnavailable(shape.name());
+            } catch (RuntimeException e) {
+                System.err.println("Could not measure full document sizes for " + shape.name() + ": " + e.getMessage());
+            } finally {
+                samplePermits.release();
+            }
+        });
+    }
+}
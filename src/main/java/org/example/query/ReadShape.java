@@ -0,0 +1,46 @@
+package org.example.query;
+
+import com.mongodb.client.model.Projections;
+import org.bson.conversions.Bson;
+
+/**
+ * The fields a read needs, declared up front so the server sends nothing else. Embedded enrollments
+ * carry whole copies of their student and course, so reading only the fields used keeps those
+ * copies off the wire. The shape's name is what {@link org.example.metrics.ProjectionMetrics}
+ * reports under.
+ */
+public enum ReadShape {
+    /**
+     * The whole document, for reads that display or copy all of it.
+     */
+    FULL_DOCUMENT(null),
+    /**
+     * The student reference of a referenced enrollment.
+     */
+    ENROLLMENT_STUDENT_REF(Projections.include("studentId")),
+    /**
+     * The name in an embedded enrollment's copy of its student.
+     */
+    EMBEDDED_STUDENT_NAME(Projections.include("student.name")),
+    /**
+     * The fields a student listing shows.
+     */
+    STUDENT_SUMMARY(Projections.include("name", "studentId", "email", "age")),
+    /**
+     * The fields a course listing shows.
+     */
+    COURSE_SUMMARY(Projections.include("name", "courseId", "credits", "instructor"));
+
+    private final Bson projection;
+
+    ReadShape(Bson projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Returns the projection, or null if the shape is the whole document.
+     */
+    public Bson getProjection() {
+        return projection;
+    }
+}
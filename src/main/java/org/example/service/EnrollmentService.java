@@ -0,0 +1,68 @@
+package org.example.service;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The enrollment operations as non-blocking calls, so callers can keep many requests in flight.
+ * {@link SyncEnrollmentService} runs them on the blocking driver, {@link ReactiveEnrollmentService}
+ * on the reactive streams driver; {@link EnrollmentServices#create} picks one from configuration.
+ */
+public interface EnrollmentService extends AutoCloseable {
+
+    /**
+     * Inserts students with one unordered insertMany.
+     *
+     * @return completes with the number of students inserted
+     */
+    CompletableFuture<Integer> insertStudents(List<Document> students);
+
+    /**
+     * Creates a referenced enrollment from business keys.
+     *
+     * @return completes with the new enrollment's _id, or null if the student or course does not exist
+     */
+    CompletableFuture<ObjectId> enroll(String studentId, String courseId, String grade);
+
+    /**
+     * Creates an embedded enrollment holding copies of the student and course, found by business key.
+     *
+     * @return completes with the new enrollment's _id, or null if the student or course does not exist
+     */
+    CompletableFuture<ObjectId> enrollEmbedded(String studentId, String courseId, String grade);
+
+    /**
+     * Streams the roster rows of a course, in the shape of
+     * {@link org.example.query.EnrollmentQueries#rosterForCourse(String)}.
+     * Rows are only fetched as fast as the subscriber requests them.
+     */
+    Publisher<Document> rosterForCourse(String courseId);
+
+    /**
+     * Streams the transcript rows of a student, in the shape of
+     * {@link org.example.query.EnrollmentQueries#transcriptForStudent(String)}.
+     * Rows are only fetched as fast as the subscriber requests them.
+     */
+    Publisher<Document> transcriptForStudent(String studentId);
+
+    /**
+     * Sets the grade of an enrollment.
+     *
+     * @return completes with false if there is no such enrollment
+     */
+    CompletableFuture<Boolean> updateGrade(ObjectId enrollmentId, String grade);
+
+    /**
+     * Renames a student, drops it from the student cache and rewrites its embedded copies.
+     *
+     * @return completes with the number of student documents modified, once the embedded copies are rewritten
+     */
+    CompletableFuture<Long> updateStudentName(String studentId, String newName);
+
+    @Override
+    void close();
+}
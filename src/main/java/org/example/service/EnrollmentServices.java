@@ -0,0 +1,72 @@
+package org.example.service;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.example.cache.DocumentCache;
+import org.example.config.ClientSettingsFactory;
+import org.example.config.OperationSettings;
+import org.example.exec.RequestExecutor;
+import org.example.metrics.DatabaseMetrics;
+import org.example.propagation.PropagationEngine;
+import org.example.query.EnrollmentQueries;
+import org.example.stats.EnrollmentStats;
+
+import java.util.Properties;
+
+/**
+ * Creates the enrollment service selected by the "mongodb.execution.mode" property:
+ * "sync" (the default) or "async".
+ * The async service opens its own reactive client with its own connection pool, so an application
+ * should create one service, share it, and close it on shutdown, which also closes that client.
+ */
+public final class EnrollmentServices {
+    public static final String MODE_PROPERTY = "mongodb.execution.mode";
+
+    private EnrollmentServices() {
+    }
+
+    /**
+     * @param properties        the application properties
+     * @param database          the blocking database, used by the sync service so it shares the application's client
+     * @param operationSettings per-operation read and write overrides
+     * @param metrics           records every call, the sync executor's queues, and the async client's pool and command events
+     * @param propagationEngine rewrites embedded copies after student renames; not closed by the service
+     * @param studentCache      student cache kept in line with renames
+     * @param enrollmentStats   course and student summaries kept in line with enrolls and grade changes
+     */
+    public static EnrollmentService create(Properties properties, MongoDatabase database,
+                                           OperationSettings operationSettings, DatabaseMetrics metrics,
+                                           PropagationEngine propagationEngine, DocumentCache studentCache,
+                                           EnrollmentStats enrollmentStats) {
+        return new InstrumentedEnrollmentService(createBackend(properties, database, operationSettings, metrics,
+                propagationEngine, studentCache, enrollmentStats), metrics.getOperationMetrics());
+    }
+
+    private static EnrollmentService createBackend(Properties properties, MongoDatabase database,
+                                                   OperationSettings operationSettings, DatabaseMetrics metrics,
+                                                   PropagationEngine propagationEngine, DocumentCache studentCache,
+                                                   EnrollmentStats enrollmentStats) {
+        String mode = properties.getProperty(MODE_PROPERTY, "sync").trim();
+        String students = properties.getProperty("mongodb.collection.students");
+        String courses = properties.getProperty("mongodb.collection.courses");
+        String enrollments = properties.getProperty("mongodb.collection.enrollments");
+
+        switch (mode) {
+            case "sync":
+                RequestExecutor executor = RequestExecutor.fromProperties(properties);
+                metrics.getExecutorMetrics().bind(executor);
+                return new SyncEnrollmentService(database.getCollection(students), database.getCollection(courses),
+                        database.getCollection(enrollments), executor, operationSettings,
+                        propagationEngine, studentCache, enrollmentStats);
+            case "async":
+                return new ReactiveEnrollmentService(
+                        MongoClients.create(ClientSettingsFactory.build(properties,
+                                metrics.getPoolMetrics(), metrics.getCommandMetrics())),
+                        properties.getProperty("mongodb.database.name"), students, courses, enrollments,
+                        operationSettings, EnrollmentQueries.DEFAULT_BATCH_SIZE, propagationEngine, studentCache,
+                        enrollmentStats);
+            default:
+                throw new IllegalArgumentException("Unknown " + MODE_PROPERTY + ": " + mode + " (expected sync or async)");
+        }
+    }
+}
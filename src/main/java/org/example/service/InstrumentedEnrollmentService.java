@@ -0,0 +1,134 @@
+package org.example.service;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.exec.OperationType;
+import org.example.metrics.OperationMetrics;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times every call of another {@link EnrollmentService} and records it in {@link OperationMetrics},
+ * whichever backend is underneath. A roster or transcript is timed from subscription to its last row.
+ */
+public class InstrumentedEnrollmentService implements EnrollmentService {
+    private final EnrollmentService delegate;
+    private final OperationMetrics metrics;
+
+    public InstrumentedEnrollmentService(EnrollmentService delegate, OperationMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertStudents(List<Document> students) {
+        long start = System.nanoTime();
+        return delegate.insertStudents(students).whenComplete((inserted, error) -> metrics.record(
+                OperationType.BULK_LOAD, System.nanoTime() - start, inserted == null ? 0 : inserted, error != null));
+    }
+
+    @Override
+    public CompletableFuture<ObjectId> enroll(String studentId, String courseId, String grade) {
+        long start = System.nanoTime();
+        return delegate.enroll(studentId, courseId, grade).whenComplete((id, error) -> metrics.record(
+                OperationType.ENROLL, System.nanoTime() - start, id == null ? 0 : 1, error != null));
+    }
+
+    @Override
+    public CompletableFuture<ObjectId> enrollEmbedded(String studentId, String courseId, String grade) {
+        long start = System.nanoTime();
+        return delegate.enrollEmbedded(studentId, courseId, grade).whenComplete((id, error) -> metrics.record(
+                OperationType.ENROLL, System.nanoTime() - start, id == null ? 0 : 1, error != null));
+    }
+
+    @Override
+    public Publisher<Document> rosterForCourse(String courseId) {
+        Publisher<Document> roster = delegate.rosterForCourse(courseId);
+        return subscriber -> roster.subscribe(new TimedSubscriber<>(subscriber, OperationType.ROSTER));
+    }
+
+    @Override
+    public Publisher<Document> transcriptForStudent(String studentId) {
+        Publisher<Document> transcript = delegate.transcriptForStudent(studentId);
+        return subscriber -> transcript.subscribe(new TimedSubscriber<>(subscriber, OperationType.TRANSCRIPT));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateGrade(ObjectId enrollmentId, String grade) {
+        long start = System.nanoTime();
+        return delegate.updateGrade(enrollmentId, grade).whenComplete((found, error) -> metrics.record(
+                OperationType.GRADE_UPDATE, System.nanoTime() - start, Boolean.TRUE.equals(found) ? 1 : 0, error != null));
+    }
+
+    @Override
+    public CompletableFuture<Long> updateStudentName(String studentId, String newName) {
+        long start = System.nanoTime();
+        return delegate.updateStudentName(studentId, newName).whenComplete((modified, error) -> metrics.record(
+                OperationType.STUDENT_UPDATE, System.nanoTime() - start, modified == null ? 0 : modified, error != null));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private final class TimedSubscriber<T> implements Subscriber<T>, Subscription {
+        private final Subscriber<? super T> downstream;
+        private final OperationType type;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private final long start = System.nanoTime();
+        private Subscription upstream;
+        private long rows;
+
+        TimedSubscriber(Subscriber<? super T> downstream, OperationType type) {
+            this.downstream = downstream;
+            this.type = type;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T value) {
+            rows++;
+            downstream.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            record(true);
+            downstream.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            record(false);
+            downstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            record(false);
+            upstream.cancel();
+        }
+
+        private void record(boolean failed) {
+            if (recorded.compareAndSet(false, true)) {
+                metrics.record(type, System.nanoTime() - start, rows, failed);
+            }
+        }
+    }
+}
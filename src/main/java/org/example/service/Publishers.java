@@ -0,0 +1,403 @@
+package org.example.service;
+
+import com.mongodb.client.MongoCursor;
+import org.example.exec.OperationType;
+import org.example.exec.RequestExecutor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Small Reactive Streams helpers, enough to bridge driver publishers to CompletableFuture
+ * without pulling in a reactive library.
+ */
+public final class Publishers {
+
+    private Publishers() {
+    }
+
+    /**
+     * Completes with the first value of the publisher, or null if it completes empty.
+     * Meant for publishers that emit at most one value, like insertOne or find().first().
+     */
+    public static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(T value) {
+                future.complete(value);
+                subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(null);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Feeds every value to the consumer while never requesting more than {@code prefetch}
+     * values ahead, so a slow consumer holds back the producer instead of buffering the stream.
+     *
+     * @return completes with the number of values consumed
+     */
+    public static <T> CompletableFuture<Long> forEach(Publisher<T> publisher, Consumer<? super T> consumer, int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("Prefetch must be positive");
+        }
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        int refill = Math.max(1, prefetch / 2);
+        publisher.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+            private long count;
+            private int consumedSinceRequest;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(prefetch);
+            }
+
+            @Override
+            public void onNext(T value) {
+                try {
+                    consumer.accept(value);
+                } catch (RuntimeException e) {
+                    subscription.cancel();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                count++;
+                if (++consumedSinceRequest == refill) {
+                    consumedSinceRequest = 0;
+                    subscription.request(refill);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(count);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Consumes at most {@code limit} values and then cancels, like reading the first page of a listing.
+     *
+     * @return completes with the number of values consumed
+     */
+    public static <T> CompletableFuture<Long> take(Publisher<T> publisher, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+            private long count;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(limit);
+            }
+
+            @Override
+            public void onNext(T value) {
+                if (++count == limit) {
+                    subscription.cancel();
+                    future.complete(count);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(count);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * A publisher that subscribes to the inner publisher once the future completes.
+     * Demand and cancellation signalled before that are passed on when it arrives.
+     */
+    public static <T> Publisher<T> deferred(CompletableFuture<? extends Publisher<T>> futurePublisher) {
+        return subscriber -> {
+            DeferredSubscription<T> deferred = new DeferredSubscription<>(subscriber);
+            subscriber.onSubscribe(deferred);
+            futurePublisher.whenComplete((publisher, error) -> {
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    publisher.subscribe(deferred);
+                }
+            });
+        };
+    }
+
+    /**
+     * A publisher that completes without emitting anything.
+     */
+    public static <T> Publisher<T> empty() {
+        return subscriber -> {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onComplete();
+        };
+    }
+
+    /**
+     * Exposes a blocking driver cursor as a publisher. The cursor is opened on subscription and
+     * read on the executor, only as far as the subscriber has requested.
+     */
+    public static <T> Publisher<T> fromCursor(Supplier<MongoCursor<T>> cursorSupplier, Executor executor) {
+        return subscriber -> new CursorSubscription<>(subscriber, cursorSupplier,
+                CompletableFuture.completedFuture(executor), failed -> {
+                }).start();
+    }
+
+    /**
+     * Like {@link #fromCursor(Supplier, Executor)}, but holds one permit of the operation type from
+     * subscription until the stream completes, fails or is cancelled. The type's cap therefore limits
+     * open cursors, and each stream counts as one request however many chunks it is read in.
+     */
+    public static <T> Publisher<T> fromCursor(Supplier<MongoCursor<T>> cursorSupplier,
+                                              RequestExecutor executor, OperationType type) {
+        return subscriber -> {
+            CompletableFuture<RequestExecutor.Lease> lease = executor.acquire(type);
+            new CursorSubscription<>(subscriber, cursorSupplier, lease,
+                    failed -> lease.thenAccept(held -> held.release(failed))).start();
+        };
+    }
+
+    private static final class DeferredSubscription<T> implements Subscription, Subscriber<T> {
+        private final Subscriber<? super T> downstream;
+        private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+        private final AtomicLong pendingDemand = new AtomicLong();
+        private volatile boolean cancelled;
+
+        DeferredSubscription(Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(long n) {
+            Subscription s = upstream.get();
+            if (s != null) {
+                s.request(n);
+            } else {
+                pendingDemand.accumulateAndGet(n, Publishers::addCapped);
+                // The upstream may have arrived between the check and the add
+                s = upstream.get();
+                if (s != null) {
+                    long demand = pendingDemand.getAndSet(0);
+                    if (demand > 0) {
+                        s.request(demand);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Subscription s = upstream.get();
+            if (s != null) {
+                s.cancel();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream.set(s);
+            if (cancelled) {
+                s.cancel();
+                return;
+            }
+            long demand = pendingDemand.getAndSet(0);
+            if (demand > 0) {
+                s.request(demand);
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            downstream.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            downstream.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            downstream.onComplete();
+        }
+    }
+
+    private static final class CursorSubscription<T> implements Subscription {
+        private final Subscriber<? super T> subscriber;
+        private final Supplier<MongoCursor<T>> cursorSupplier;
+        private final CompletableFuture<? extends Executor> executor;
+        private final Consumer<Boolean> onTerminate;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicReference<Throwable> pendingError = new AtomicReference<>();
+        private volatile boolean done;
+        private boolean failed;
+        private boolean terminated;
+        private MongoCursor<T> cursor;
+
+        /**
+         * @param executor    completes with the executor to read the cursor on; nothing is read before that
+         * @param onTerminate called once after the stream completed, failed (true) or was cancelled
+         */
+        CursorSubscription(Subscriber<? super T> subscriber, Supplier<MongoCursor<T>> cursorSupplier,
+                           CompletableFuture<? extends Executor> executor, Consumer<Boolean> onTerminate) {
+            this.subscriber = subscriber;
+            this.cursorSupplier = cursorSupplier;
+            this.executor = executor;
+            this.onTerminate = onTerminate;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            executor.whenComplete((ready, error) -> {
+                if (error != null) {
+                    pendingError.compareAndSet(null, error);
+                }
+                schedule();
+            });
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Signalled from the drain loop, so it never overlaps an onNext (rule 1.3)
+                pendingError.compareAndSet(null, new IllegalArgumentException("Requested " + n + " items, must be positive"));
+                schedule();
+                return;
+            }
+            demand.accumulateAndGet(n, Publishers::addCapped);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            schedule();
+        }
+
+        private void schedule() {
+            // Until the executor is ready, start() schedules the first drain
+            if (!executor.isDone() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            if (executor.isCompletedExceptionally()) {
+                drain();
+                return;
+            }
+            try {
+                executor.join().execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                pendingError.compareAndSet(null, e);
+                drain();
+            }
+        }
+
+        // Runs on one thread at a time, guarded by the draining flag
+        private void drain() {
+            try {
+                if (!done && pendingError.get() == null && cursor == null) {
+                    cursor = cursorSupplier.get();
+                }
+                while (!done) {
+                    Throwable error = pendingError.get();
+                    if (error != null) {
+                        done = true;
+                        failed = true;
+                        subscriber.onError(error);
+                        break;
+                    }
+                    if (demand.get() == 0) {
+                        break;
+                    }
+                    if (!cursor.hasNext()) {
+                        done = true;
+                        subscriber.onComplete();
+                        break;
+                    }
+                    T value = cursor.next();
+                    demand.decrementAndGet();
+                    subscriber.onNext(value);
+                }
+            } catch (RuntimeException e) {
+                done = true;
+                failed = true;
+                subscriber.onError(e);
+            } finally {
+                if (done && cursor != null) {
+                    cursor.close();
+                    cursor = null;
+                }
+                if (done && !terminated) {
+                    terminated = true;
+                    onTerminate.accept(failed);
+                }
+                draining.set(false);
+            }
+            // Demand, an invalid request or a cancel may have arrived after the loop ended
+            if ((!done && (demand.get() > 0 || pendingError.get() != null)) || (done && !terminated)) {
+                schedule();
+            }
+        }
+    }
+
+    private static long addCapped(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
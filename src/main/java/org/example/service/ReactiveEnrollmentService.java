@@ -0,0 +1,194 @@
+package org.example.service;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.cache.DocumentCache;
+import org.example.config.OperationSettings;
+import org.example.exec.OperationType;
+import org.example.propagation.PropagationEngine;
+import org.example.query.EnrollmentQueries;
+import org.example.stats.EnrollmentStats;
+import org.reactivestreams.Publisher;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the enrollment operations on the reactive streams driver. No thread waits on a round trip,
+ * so the number of requests in flight is limited by the connection pool rather than by threads.
+ * Roster rows are pulled from the server only as fast as the subscriber requests them.
+ * {@link EnrollmentStats} uses the blocking driver, so its updates run on virtual threads of their own.
+ */
+public class ReactiveEnrollmentService implements EnrollmentService {
+    private final MongoClient client;
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final OperationSettings operationSettings;
+    private final int batchSize;
+    private final PropagationEngine propagationEngine;
+    private final DocumentCache studentCache;
+    private final EnrollmentStats enrollmentStats;
+    private final ExecutorService statsExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param client            the reactive client; closed together with this service
+     * @param batchSize         cursor batch size for roster queries
+     * @param propagationEngine rewrites embedded copies of renamed students
+     * @param studentCache      cache that renamed students are dropped from
+     * @param enrollmentStats   summaries that acknowledged enrolls and grade changes are recorded in
+     */
+    public ReactiveEnrollmentService(MongoClient client, String databaseName, String studentsCollectionName,
+                                     String coursesCollectionName, String enrollmentsCollectionName,
+                                     OperationSettings operationSettings, int batchSize,
+                                     PropagationEngine propagationEngine, DocumentCache studentCache,
+                                     EnrollmentStats enrollmentStats) {
+        MongoDatabase database = client.getDatabase(databaseName);
+        this.client = client;
+        this.studentsCollection = database.getCollection(studentsCollectionName);
+        this.coursesCollection = database.getCollection(coursesCollectionName);
+        this.enrollmentsCollection = database.getCollection(enrollmentsCollectionName);
+        this.operationSettings = operationSettings;
+        this.batchSize = batchSize;
+        this.propagationEngine = propagationEngine;
+        this.studentCache = studentCache;
+        this.enrollmentStats = enrollmentStats;
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertStudents(List<Document> students) {
+        return Publishers.first(operationSettings.apply(OperationType.BULK_LOAD, studentsCollection).insertMany(students, new InsertManyOptions().ordered(false)))
+                .thenApply(result -> result.getInsertedIds().size());
+    }
+
+    @Override
+    public CompletableFuture<ObjectId> enroll(String studentId, String courseId, String grade) {
+        // Both lookups are in flight at the same time
+        CompletableFuture<ObjectId> student = findObjectId(studentsCollection, "studentId", studentId);
+        CompletableFuture<ObjectId> course = findObjectId(coursesCollection, "courseId", courseId);
+        return student.thenCombine(course, (studentObjId, courseObjId) -> {
+            if (studentObjId == null || courseObjId == null) {
+                return null;
+            }
+            return new Document()
+                    .append("enrollmentType", "referenced")
+                    .append("date", new Date())
+                    .append("studentId", studentObjId)
+                    .append("courseId", courseObjId)
+                    .append("grade", grade);
+        }).thenCompose(enrollment -> {
+            if (enrollment == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return insertEnrollment(enrollment);
+        });
+    }
+
+    @Override
+    public CompletableFuture<ObjectId> enrollEmbedded(String studentId, String courseId, String grade) {
+        // Both reads are in flight at the same time
+        CompletableFuture<Document> student = Publishers.first(studentsCollection.find(Filters.eq("studentId", studentId)).first());
+        CompletableFuture<Document> course = Publishers.first(coursesCollection.find(Filters.eq("courseId", courseId)).first());
+        return student.thenCombine(course, (studentDocument, courseDocument) -> {
+            if (studentDocument == null || courseDocument == null) {
+                return null;
+            }
+            return new Document()
+                    .append("enrollmentType", "embedded")
+                    .append("date", new Date())
+                    .append("student", studentDocument)
+                    .append("course", courseDocument)
+                    .append("grade", grade);
+        }).thenCompose(enrollment -> {
+            if (enrollment == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return insertEnrollment(enrollment);
+        });
+    }
+
+    @Override
+    public Publisher<Document> rosterForCourse(String courseId) {
+        String studentsCollectionName = studentsCollection.getNamespace().getCollectionName();
+        MongoCollection<Document> enrollments = operationSettings.apply(OperationType.ROSTER, enrollmentsCollection);
+        return Publishers.deferred(findObjectId(coursesCollection, "courseId", courseId).thenApply(courseObjId ->
+                courseObjId == null
+                        ? Publishers.<Document>empty()
+                        : enrollments.aggregate(EnrollmentQueries.rosterPipeline(studentsCollectionName, courseObjId))
+                                .batchSize(batchSize)));
+    }
+
+    @Override
+    public Publisher<Document> transcriptForStudent(String studentId) {
+        String coursesCollectionName = coursesCollection.getNamespace().getCollectionName();
+        MongoCollection<Document> enrollments = operationSettings.apply(OperationType.TRANSCRIPT, enrollmentsCollection);
+        return Publishers.deferred(findObjectId(studentsCollection, "studentId", studentId).thenApply(studentObjId ->
+                studentObjId == null
+                        ? Publishers.<Document>empty()
+                        : enrollments.aggregate(EnrollmentQueries.transcriptPipeline(coursesCollectionName, studentObjId))
+                                .batchSize(batchSize)));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateGrade(ObjectId enrollmentId, String grade) {
+        // The enrollment as it was before tells the statistics which grade to move it from
+        return Publishers.first(operationSettings.apply(OperationType.GRADE_UPDATE, enrollmentsCollection)
+                        .findOneAndUpdate(Filters.eq("_id", enrollmentId), Updates.set("grade", grade),
+                                new FindOneAndUpdateOptions().projection(Projections.include(EnrollmentStats.RECORDED_FIELDS))))
+                .thenApplyAsync(before -> {
+                    if (before == null) {
+                        return false;
+                    }
+                    enrollmentStats.recordGradeChanged(before, grade);
+                    return true;
+                }, statsExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Long> updateStudentName(String studentId, String newName) {
+        // The previous name tells whether anything changed, the _id what to invalidate and propagate
+        return Publishers.first(operationSettings.apply(OperationType.STUDENT_UPDATE, studentsCollection)
+                        .findOneAndUpdate(Filters.eq("studentId", studentId), Updates.set("name", newName),
+                                new FindOneAndUpdateOptions().projection(Projections.include("_id", "name"))))
+                .thenCompose(before -> {
+                    if (before == null || newName.equals(before.getString("name"))) {
+                        return CompletableFuture.completedFuture(0L);
+                    }
+                    ObjectId id = before.getObjectId("_id");
+                    studentCache.invalidate(id);
+                    return propagationEngine.submitStudentChange(id, new Document("name", newName))
+                            .thenApply(ignored -> 1L);
+                });
+    }
+
+    private static CompletableFuture<ObjectId> findObjectId(MongoCollection<Document> collection, String keyField, String key) {
+        return Publishers.first(collection.find(Filters.eq(keyField, key))
+                        .projection(Projections.include("_id")).first())
+                .thenApply(document -> document == null ? null : document.getObjectId("_id"));
+    }
+
+    private CompletableFuture<ObjectId> insertEnrollment(Document enrollment) {
+        return Publishers.first(operationSettings.apply(OperationType.ENROLL, enrollmentsCollection).insertOne(enrollment))
+                .thenApplyAsync(result -> {
+                    enrollmentStats.recordInserted(enrollment);
+                    return enrollment.getObjectId("_id");
+                }, statsExecutor);
+    }
+
+    @Override
+    public void close() {
+        statsExecutor.close();
+        client.close();
+    }
+}
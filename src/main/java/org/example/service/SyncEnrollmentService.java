@@ -0,0 +1,169 @@
+package org.example.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.cache.DocumentCache;
+import org.example.config.OperationSettings;
+import org.example.exec.OperationType;
+import org.example.exec.RequestExecutor;
+import org.example.propagation.PropagationEngine;
+import org.example.query.EnrollmentQueries;
+import org.example.stats.EnrollmentStats;
+import org.reactivestreams.Publisher;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the enrollment operations on the blocking driver. Each call runs on its own virtual thread
+ * through the {@link RequestExecutor}, which also caps how many of each operation run at once.
+ */
+public class SyncEnrollmentService implements EnrollmentService {
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final OperationSettings operationSettings;
+    private final EnrollmentQueries rosterQueries;
+    private final EnrollmentQueries transcriptQueries;
+    private final RequestExecutor executor;
+    private final PropagationEngine propagationEngine;
+    private final DocumentCache studentCache;
+    private final EnrollmentStats enrollmentStats;
+
+    /**
+     * @param executor          runs the requests; closed together with this service
+     * @param propagationEngine rewrites embedded copies of renamed students
+     * @param studentCache      cache that renamed students are dropped from
+     * @param enrollmentStats   summaries that acknowledged enrolls and grade changes are recorded in
+     */
+    public SyncEnrollmentService(MongoCollection<Document> studentsCollection,
+                                 MongoCollection<Document> coursesCollection,
+                                 MongoCollection<Document> enrollmentsCollection,
+                                 RequestExecutor executor,
+                                 OperationSettings operationSettings,
+                                 PropagationEngine propagationEngine,
+                                 DocumentCache studentCache,
+                                 EnrollmentStats enrollmentStats) {
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.operationSettings = operationSettings;
+        this.rosterQueries = new EnrollmentQueries(
+                operationSettings.apply(OperationType.ROSTER, studentsCollection),
+                operationSettings.apply(OperationType.ROSTER, coursesCollection),
+                operationSettings.apply(OperationType.ROSTER, enrollmentsCollection));
+        this.transcriptQueries = new EnrollmentQueries(
+                operationSettings.apply(OperationType.TRANSCRIPT, studentsCollection),
+                operationSettings.apply(OperationType.TRANSCRIPT, coursesCollection),
+                operationSettings.apply(OperationType.TRANSCRIPT, enrollmentsCollection));
+        this.executor = executor;
+        this.propagationEngine = propagationEngine;
+        this.studentCache = studentCache;
+        this.enrollmentStats = enrollmentStats;
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertStudents(List<Document> students) {
+        return executor.submit(OperationType.BULK_LOAD, () -> operationSettings
+                .apply(OperationType.BULK_LOAD, studentsCollection)
+                .insertMany(students, new InsertManyOptions().ordered(false))
+                .getInsertedIds().size());
+    }
+
+    @Override
+    public CompletableFuture<ObjectId> enroll(String studentId, String courseId, String grade) {
+        return executor.submit(OperationType.ENROLL, () -> {
+            Document student = studentsCollection.find(Filters.eq("studentId", studentId))
+                    .projection(Projections.include("_id")).first();
+            Document course = coursesCollection.find(Filters.eq("courseId", courseId))
+                    .projection(Projections.include("_id")).first();
+            if (student == null || course == null) {
+                return null;
+            }
+            Document enrollment = new Document()
+                    .append("enrollmentType", "referenced")
+                    .append("date", new Date())
+                    .append("studentId", student.getObjectId("_id"))
+                    .append("courseId", course.getObjectId("_id"))
+                    .append("grade", grade);
+            operationSettings.apply(OperationType.ENROLL, enrollmentsCollection).insertOne(enrollment);
+            enrollmentStats.recordInserted(enrollment);
+            return enrollment.getObjectId("_id");
+        });
+    }
+
+    @Override
+    public CompletableFuture<ObjectId> enrollEmbedded(String studentId, String courseId, String grade) {
+        return executor.submit(OperationType.ENROLL, () -> {
+            Document student = studentsCollection.find(Filters.eq("studentId", studentId)).first();
+            Document course = coursesCollection.find(Filters.eq("courseId", courseId)).first();
+            if (student == null || course == null) {
+                return null;
+            }
+            Document enrollment = new Document()
+                    .append("enrollmentType", "embedded")
+                    .append("date", new Date())
+                    .append("student", student)
+                    .append("course", course)
+                    .append("grade", grade);
+            operationSettings.apply(OperationType.ENROLL, enrollmentsCollection).insertOne(enrollment);
+            enrollmentStats.recordInserted(enrollment);
+            return enrollment.getObjectId("_id");
+        });
+    }
+
+    @Override
+    public Publisher<Document> rosterForCourse(String courseId) {
+        return Publishers.fromCursor(() -> rosterQueries.rosterForCourse(courseId), executor, OperationType.ROSTER);
+    }
+
+    @Override
+    public Publisher<Document> transcriptForStudent(String studentId) {
+        return Publishers.fromCursor(() -> transcriptQueries.transcriptForStudent(studentId), executor,
+                OperationType.TRANSCRIPT);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateGrade(ObjectId enrollmentId, String grade) {
+        return executor.submit(OperationType.GRADE_UPDATE, () -> {
+            // The enrollment as it was before tells the statistics which grade to move it from
+            Document before = operationSettings.apply(OperationType.GRADE_UPDATE, enrollmentsCollection)
+                    .findOneAndUpdate(Filters.eq("_id", enrollmentId), Updates.set("grade", grade),
+                            new FindOneAndUpdateOptions().projection(Projections.include(EnrollmentStats.RECORDED_FIELDS)));
+            if (before == null) {
+                return false;
+            }
+            enrollmentStats.recordGradeChanged(before, grade);
+            return true;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> updateStudentName(String studentId, String newName) {
+        return executor.submit(OperationType.STUDENT_UPDATE, () -> {
+            // The previous name tells whether anything changed, the _id what to invalidate and propagate
+            Document before = operationSettings.apply(OperationType.STUDENT_UPDATE, studentsCollection)
+                    .findOneAndUpdate(Filters.eq("studentId", studentId), Updates.set("name", newName),
+                            new FindOneAndUpdateOptions().projection(Projections.include("_id", "name")));
+            if (before == null || newName.equals(before.getString("name"))) {
+                return 0L;
+            }
+            ObjectId id = before.getObjectId("_id");
+            studentCache.invalidate(id);
+            propagationEngine.submitStudentChange(id, new Document("name", newName)).join();
+            return 1L;
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
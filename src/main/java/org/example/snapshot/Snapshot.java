@@ -0,0 +1,77 @@
+package org.example.snapshot;
+
+import org.bson.codecs.configuration.CodecRegistry;
+import org.example.storage.StorageAnalytics;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The snapshot files in one directory, one per collection, opened for reading. Needs no database
+ * connection, so it can serve lookups while the database is unreachable or before the connection
+ * pool is warm.
+ */
+public class Snapshot {
+    public static final String FILE_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final Map<String, SnapshotCollection> collections;
+
+    private Snapshot(Path directory, Map<String, SnapshotCollection> collections) {
+        this.directory = directory;
+        this.collections = Collections.unmodifiableMap(collections);
+    }
+
+    /**
+     * Maps every snapshot file in the directory.
+     *
+     * @throws IOException if the directory or one of the files cannot be read
+     */
+    public static Snapshot open(Path directory, CodecRegistry codecRegistry) throws IOException {
+        Map<String, SnapshotCollection> collections = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+                collections.put(name, SnapshotCollection.open(name, file, codecRegistry));
+            }
+        }
+        return new Snapshot(directory, collections);
+    }
+
+    static Path file(Path directory, String collectionName) {
+        return directory.resolve(collectionName + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the snapshot of one collection, or null if the directory has none.
+     */
+    public SnapshotCollection get(String collectionName) {
+        return collections.get(collectionName);
+    }
+
+    public Collection<SnapshotCollection> getCollections() {
+        return collections.values();
+    }
+
+    public void print() {
+        System.out.println("\n--- SNAPSHOT: " + directory + " ---");
+        for (SnapshotCollection collection : collections.values()) {
+            long bytes;
+            try {
+                bytes = Files.size(collection.getFile());
+            } catch (IOException e) {
+                bytes = 0;
+            }
+            System.out.println("  - " + collection + ", " + StorageAnalytics.formatBytes(bytes)
+                    + ", written " + collection.getCreatedAt()
+                    + (collection.getOperationTime() == null ? "" : ", as of " + collection.getOperationTime()));
+        }
+    }
+}
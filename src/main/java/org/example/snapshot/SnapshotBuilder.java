@@ -0,0 +1,256 @@
+package org.example.snapshot;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.example.storage.StorageAnalytics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and refreshes the snapshot files of a directory from the database.
+ * A full write streams the collection in _id order straight into the file. A refresh replays the
+ * collection's change stream from the operation time stored in the existing file, fetches only the
+ * documents that changed, and copies every other document's bytes over from the old file unchanged.
+ * Change streams need a replica set; without one, or when the oplog no longer reaches back to the
+ * snapshot, a refresh falls back to a full write.
+ */
+public class SnapshotBuilder {
+    public static final Path DEFAULT_DIRECTORY = Path.of("snapshot");
+
+    private static final int FETCH_BATCH_SIZE = 10_000;
+    // How long a refresh waits for the change stream to reach the current operation time
+    private static final Duration CATCH_UP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final MongoDatabase database;
+    private final Path directory;
+
+    public SnapshotBuilder(MongoDatabase database, Path directory) {
+        this.database = database;
+        this.directory = directory;
+    }
+
+    /**
+     * Writes a new snapshot of one collection.
+     *
+     * @param keyField string field to build the key index on, or null for none
+     */
+    public void write(String collectionName, String keyField) throws IOException {
+        long start = System.nanoTime();
+        long operationTime = operationTime();
+        MongoCollection<RawBsonDocument> collection = database.getCollection(collectionName, RawBsonDocument.class);
+        Path file = Snapshot.file(directory, collectionName);
+        long count;
+        try (SnapshotWriter writer = new SnapshotWriter(file, keyField, operationTime);
+             MongoCursor<RawBsonDocument> cursor = collection.find().sort(Sorts.ascending("_id")).iterator()) {
+            while (cursor.hasNext()) {
+                writer.add(cursor.next().getByteBuffer().asNIO());
+            }
+            writer.commit();
+            count = writer.getCount();
+        }
+        printResult(collectionName, "full write, " + count + " documents", file, start);
+    }
+
+    /**
+     * Brings the snapshot of one collection up to date, writing it in full if there is none yet or
+     * the changes since it was written cannot be read.
+     */
+    public void refresh(String collectionName, String keyField) throws IOException {
+        long start = System.nanoTime();
+        Path file = Snapshot.file(directory, collectionName);
+        if (Files.exists(file)) {
+            try (SnapshotCollection old = SnapshotCollection.open(collectionName, file, database.getCodecRegistry())) {
+                if (refresh(old, keyField, start)) {
+                    return;
+                }
+            }
+        }
+        write(collectionName, keyField);
+    }
+
+    // Returns false if the snapshot has to be written in full instead. The old collection is closed
+    // once its documents are copied, so its mapping can be collected.
+    private boolean refresh(SnapshotCollection old, String keyField, long start) throws IOException {
+        String collectionName = old.getName();
+        Path file = old.getFile();
+        if (old.getOperationTime() == null || !Objects.equals(old.getKeyField(), keyField)) {
+            return false;
+        }
+
+        long operationTime = operationTime();
+        Set<ObjectId> changed;
+        try {
+            changed = changedIds(collectionName, old.getOperationTime(), new BsonTimestamp(operationTime));
+        } catch (MongoException e) {
+            System.out.println("  - " + collectionName + ": cannot read changes (" + e.getMessage()
+                    + "), writing it in full");
+            return false;
+        }
+        if (changed == null) {
+            System.out.println("  - " + collectionName + ": collection was dropped or renamed, writing it in full");
+            return false;
+        }
+        if (changed.isEmpty()) {
+            old.close();
+            SnapshotWriter.updateOperationTime(file, operationTime);
+            printResult(collectionName, "no changes", file, start);
+            return true;
+        }
+
+        TreeMap<ObjectId, RawBsonDocument> fetched = fetch(collectionName, changed);
+        long count;
+        try (SnapshotWriter writer = new SnapshotWriter(file, keyField, operationTime)) {
+            merge(old, changed, fetched, writer);
+            old.close();
+            writer.commit();
+            count = writer.getCount();
+        }
+        printResult(collectionName, changed.size() + " changed (" + (changed.size() - fetched.size())
+                + " deleted), " + count + " documents", file, start);
+        return true;
+    }
+
+    /**
+     * The _ids touched since the snapshot, or null if the collection itself went away. Reads until
+     * the stream has reached {@code until}: an empty poll only means nothing arrived within the await
+     * time, so the position is taken from the resume token, which the server moves forward with each
+     * batch even when no event matches.
+     *
+     * @throws MongoException if the stream cannot be read or does not catch up within {@link #CATCH_UP_TIMEOUT}
+     */
+    private Set<ObjectId> changedIds(String collectionName, BsonTimestamp since, BsonTimestamp until) {
+        Set<ObjectId> changed = new HashSet<>();
+        long deadline = System.nanoTime() + CATCH_UP_TIMEOUT.toNanos();
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = database.getCollection(collectionName)
+                .watch()
+                .startAtOperationTime(since)
+                .maxAwaitTime(100, TimeUnit.MILLISECONDS)
+                .cursor()) {
+            while (true) {
+                ChangeStreamDocument<Document> event = cursor.tryNext();
+                if (event == null) {
+                    BsonTimestamp reached = clusterTime(cursor.getResumeToken());
+                    if (reached != null && reached.compareTo(until) >= 0) {
+                        return changed;
+                    }
+                    if (System.nanoTime() > deadline) {
+                        throw new MongoException("change stream of " + collectionName + " only reached " + reached
+                                + " of " + until + " within " + CATCH_UP_TIMEOUT.toSeconds() + " s");
+                    }
+                    continue;
+                }
+                if (event.getClusterTime() != null && event.getClusterTime().compareTo(until) > 0) {
+                    return changed;
+                }
+                switch (event.getOperationType()) {
+                    case INSERT, UPDATE, REPLACE, DELETE -> {
+                        BsonValue id = event.getDocumentKey() == null ? null : event.getDocumentKey().get("_id");
+                        if (id != null && id.isObjectId()) {
+                            changed.add(id.asObjectId().getValue());
+                        }
+                    }
+                    case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                        return null;
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+
+    // A resume token's _data is a hex key string that starts with the cluster time: type byte 0x82,
+    // then the timestamp's seconds and increment as two big-endian ints
+    private static BsonTimestamp clusterTime(BsonDocument resumeToken) {
+        if (resumeToken == null || !resumeToken.isString("_data")) {
+            return null;
+        }
+        String data = resumeToken.getString("_data").getValue();
+        if (data.length() < 18 || !data.regionMatches(true, 0, "82", 0, 2)) {
+            return null;
+        }
+        try {
+            return new BsonTimestamp(Long.parseUnsignedLong(data.substring(2, 18), 16));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private TreeMap<ObjectId, RawBsonDocument> fetch(String collectionName, Set<ObjectId> ids) {
+        MongoCollection<RawBsonDocument> collection = database.getCollection(collectionName, RawBsonDocument.class);
+        TreeMap<ObjectId, RawBsonDocument> fetched = new TreeMap<>();
+        List<ObjectId> batch = new ArrayList<>(FETCH_BATCH_SIZE);
+        Iterator<ObjectId> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() == FETCH_BATCH_SIZE || !iterator.hasNext()) {
+                for (RawBsonDocument document : collection.find(Filters.in("_id", batch))) {
+                    fetched.put(document.getObjectId("_id").getValue(), document);
+                }
+                batch.clear();
+            }
+        }
+        return fetched;
+    }
+
+    // Both sides are in _id order, so the new file is written in one pass
+    private static void merge(SnapshotCollection old, Set<ObjectId> changed, TreeMap<ObjectId, RawBsonDocument> fetched,
+                              SnapshotWriter writer) throws IOException {
+        Iterator<Map.Entry<ObjectId, RawBsonDocument>> fresh = fetched.entrySet().iterator();
+        Map.Entry<ObjectId, RawBsonDocument> next = fresh.hasNext() ? fresh.next() : null;
+        for (int i = 0; i < old.size(); i++) {
+            ObjectId id = old.idAt(i);
+            while (next != null && next.getKey().compareTo(id) < 0) {
+                writer.add(next.getValue().getByteBuffer().asNIO());
+                next = fresh.hasNext() ? fresh.next() : null;
+            }
+            if (next != null && next.getKey().equals(id)) {
+                writer.add(next.getValue().getByteBuffer().asNIO());
+                next = fresh.hasNext() ? fresh.next() : null;
+            } else if (!changed.contains(id)) {
+                writer.add(old.rawAt(i));
+            }
+        }
+        while (next != null) {
+            writer.add(next.getValue().getByteBuffer().asNIO());
+            next = fresh.hasNext() ? fresh.next() : null;
+        }
+    }
+
+    // The cluster's operation time, or 0 on a standalone server, which has none
+    private long operationTime() {
+        Document reply = database.runCommand(new Document("ping", 1));
+        BsonTimestamp operationTime = reply.get("operationTime", BsonTimestamp.class);
+        return operationTime == null ? 0 : operationTime.getValue();
+    }
+
+    private static void printResult(String collectionName, String what, Path file, long start) throws IOException {
+        System.out.println("  - " + collectionName + ": " + what + ", "
+                + StorageAnalytics.formatBytes(Files.size(file)) + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+}
@@ -0,0 +1,276 @@
+package org.example.snapshot;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.codecs.Decoder;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * One collection of a snapshot, read through memory-mapped buffers. Opening maps the file and reads
+ * the header; nothing else is read until a document is looked up, and a lookup touches only the
+ * index pages it binary-searches and the document's own bytes. Documents are handed out either as
+ * read-only slices of the mapping or decoded on demand. Safe for concurrent readers.
+ * {@link #close()} drops the collection's references to the mapping, so lookups after it throw and
+ * the file is unmapped by the garbage collector once no reader or handed-out slice still uses it.
+ * Replacing the file does not need it unmapped: {@link SnapshotWriter} moves a new file into place.
+ */
+public class SnapshotCollection implements AutoCloseable {
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final String name;
+    private final Path file;
+    private final CodecRegistry codecRegistry;
+    private final long count;
+    private final long operationTime;
+    private final long createdAt;
+    private final String keyField;
+    // Null once closed; readers take it once, so a concurrent close never pulls buffers out from under them
+    private volatile Mapping mapping;
+
+    private record Mapping(MappedByteBuffer[] chunks, MappedByteBuffer index, MappedByteBuffer keyIndex) {
+    }
+
+    private SnapshotCollection(String name, Path file, CodecRegistry codecRegistry, ByteBuffer header,
+                               MappedByteBuffer[] chunks, MappedByteBuffer index, MappedByteBuffer keyIndex) {
+        this.name = name;
+        this.file = file;
+        this.codecRegistry = codecRegistry;
+        this.count = header.getLong(SnapshotFormat.COUNT_POSITION);
+        this.operationTime = header.getLong(SnapshotFormat.OPERATION_TIME_POSITION);
+        this.createdAt = header.getLong(SnapshotFormat.CREATED_AT_POSITION);
+        int keyFieldLength = header.get(SnapshotFormat.KEY_FIELD_POSITION);
+        byte[] keyFieldBytes = new byte[keyFieldLength];
+        header.get(SnapshotFormat.KEY_FIELD_POSITION + 1, keyFieldBytes);
+        this.keyField = keyFieldLength == 0 ? null : new String(keyFieldBytes, StandardCharsets.UTF_8);
+        this.mapping = new Mapping(chunks, index, keyIndex);
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param name          the collection name, used in messages
+     * @param codecRegistry used to decode documents
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static SnapshotCollection open(String name, Path file, CodecRegistry codecRegistry) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < SnapshotFormat.HEADER_BYTES) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SnapshotFormat.HEADER_BYTES);
+            if (header.getLong(0) != SnapshotFormat.MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            if (header.getInt(8) != SnapshotFormat.VERSION) {
+                throw new IOException("Unsupported snapshot version " + header.getInt(8) + " in " + file);
+            }
+            long count = header.getLong(SnapshotFormat.COUNT_POSITION);
+            long indexOffset = header.getLong(SnapshotFormat.INDEX_POSITION);
+            long keyIndexOffset = header.getLong(SnapshotFormat.KEY_INDEX_POSITION);
+            long indexBytes = count * SnapshotFormat.INDEX_ENTRY_BYTES;
+            long end = keyIndexOffset > 0 ? keyIndexOffset : indexOffset + indexBytes;
+            if (indexOffset < SnapshotFormat.HEADER_BYTES || end > channel.size() || indexBytes > Integer.MAX_VALUE) {
+                throw new IOException("Truncated snapshot file: " + file);
+            }
+
+            // A document never crosses a chunk boundary, so each chunk is mapped separately
+            int chunkCount = (int) ((indexOffset + SnapshotFormat.CHUNK_BYTES - 1) / SnapshotFormat.CHUNK_BYTES);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = (long) i * SnapshotFormat.CHUNK_BYTES;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(SnapshotFormat.CHUNK_BYTES, indexOffset - start));
+                chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexBytes);
+            MappedByteBuffer keyIndex = null;
+            if (keyIndexOffset > 0) {
+                keyIndex = channel.map(FileChannel.MapMode.READ_ONLY, keyIndexOffset, channel.size() - keyIndexOffset);
+            }
+            return new SnapshotCollection(name, file, codecRegistry, header, chunks, index, keyIndex);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * The database operation time the snapshot is current as of, or null if it was written without one.
+     */
+    public BsonTimestamp getOperationTime() {
+        return operationTime == 0 ? null : new BsonTimestamp(operationTime);
+    }
+
+    public Instant getCreatedAt() {
+        return Instant.ofEpochMilli(createdAt);
+    }
+
+    /**
+     * The field the key index is ordered by, or null if there is no key index.
+     */
+    public String getKeyField() {
+        return keyField;
+    }
+
+    /**
+     * Returns the encoded document with the given _id as a read-only view of the mapping, or null.
+     */
+    public ByteBuffer raw(ObjectId id) {
+        Mapping mapping = mapping();
+        long position = find(mapping, id.toByteArray());
+        return position < 0 ? null : documentAt(mapping, offsetAt(mapping, (int) position));
+    }
+
+    public Document findById(ObjectId id) {
+        return findById(id, Document.class);
+    }
+
+    /**
+     * Decodes the document with the given _id with the codec registered for the class, or returns null.
+     */
+    public <T> T findById(ObjectId id, Class<T> documentClass) {
+        ByteBuffer raw = raw(id);
+        return raw == null ? null : decode(raw, codecRegistry.get(documentClass));
+    }
+
+    public Document findByKey(String key) {
+        return findByKey(key, Document.class);
+    }
+
+    /**
+     * Looks a document up by its key field (studentId for students, courseId for courses).
+     *
+     * @throws IllegalStateException if the collection has no key index
+     */
+    public <T> T findByKey(String key, Class<T> documentClass) {
+        Mapping mapping = mapping();
+        MappedByteBuffer keyIndex = mapping.keyIndex();
+        if (keyIndex == null) {
+            throw new IllegalStateException("Snapshot of " + name + " has no key index");
+        }
+        int low = 0;
+        int high = keyIndex.capacity() / SnapshotFormat.KEY_ENTRY_BYTES - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            ByteBuffer candidate = documentAt(mapping, keyIndex.getLong(middle * SnapshotFormat.KEY_ENTRY_BYTES));
+            int comparison = SnapshotFormat.readFields(candidate, keyField).key().compareTo(key);
+            if (comparison == 0) {
+                return decode(candidate, codecRegistry.get(documentClass));
+            } else if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the _id of the document at the given position in _id order.
+     */
+    public ObjectId idAt(int position) {
+        byte[] id = new byte[12];
+        mapping().index().get(position * SnapshotFormat.INDEX_ENTRY_BYTES, id);
+        return new ObjectId(id);
+    }
+
+    /**
+     * Returns the encoded document at the given position in _id order.
+     */
+    public ByteBuffer rawAt(int position) {
+        Mapping mapping = mapping();
+        return documentAt(mapping, offsetAt(mapping, position));
+    }
+
+    /**
+     * Hands every encoded document to the consumer in _id order.
+     */
+    public void forEachRaw(Consumer<ByteBuffer> consumer) {
+        Mapping mapping = mapping();
+        for (int i = 0; i < count; i++) {
+            consumer.accept(documentAt(mapping, offsetAt(mapping, i)));
+        }
+    }
+
+    private static long offsetAt(Mapping mapping, int position) {
+        return mapping.index().getLong(position * SnapshotFormat.INDEX_ENTRY_BYTES + 12);
+    }
+
+    private static ByteBuffer documentAt(Mapping mapping, long offset) {
+        MappedByteBuffer chunk = mapping.chunks()[(int) (offset / SnapshotFormat.CHUNK_BYTES)];
+        int position = (int) (offset % SnapshotFormat.CHUNK_BYTES);
+        return chunk.slice(position, chunk.getInt(position));
+    }
+
+    // Binary search of the _id index; returns the entry's position or -1
+    private long find(Mapping mapping, byte[] id) {
+        MappedByteBuffer index = mapping.index();
+        byte[] candidate = new byte[12];
+        int low = 0;
+        int high = (int) count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            index.get(middle * SnapshotFormat.INDEX_ENTRY_BYTES, candidate);
+            int comparison = Arrays.compareUnsigned(candidate, id);
+            if (comparison == 0) {
+                return middle;
+            } else if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static <T> T decode(ByteBuffer raw, Decoder<T> decoder) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(raw.duplicate())) {
+            return decoder.decode(reader, DECODER_CONTEXT);
+        }
+    }
+
+    /**
+     * Drops the mapping; lookups afterwards throw {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        mapping = null;
+    }
+
+    private Mapping mapping() {
+        Mapping current = mapping;
+        if (current == null) {
+            throw new IllegalStateException("Snapshot of " + name + " is closed");
+        }
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + count + " documents" + (keyField == null ? "" : ", keyed by " + keyField);
+    }
+}
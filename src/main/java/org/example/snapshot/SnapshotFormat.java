@@ -0,0 +1,67 @@
+package org.example.snapshot;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a snapshot file:
+ * <pre>
+ * header   HEADER_BYTES: magic, version, document count, index and key index offsets,
+ *          the database operation time the snapshot is current as of, creation time, key field name
+ * data     the documents as plain BSON, back to back; a document never crosses a CHUNK_BYTES
+ *          boundary, so each chunk can be mapped on its own
+ * index    one entry per document, ascending by _id: the 12 _id bytes and the document's offset
+ * keys     offsets of the documents ordered by their key field (studentId, courseId), if there is one
+ * </pre>
+ */
+final class SnapshotFormat {
+    static final long MAGIC = 0x454E524C534E4150L; // "ENRLSNAP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 128;
+    static final int CHUNK_BYTES = 1 << 30;
+    static final int INDEX_ENTRY_BYTES = 20;
+    static final int KEY_ENTRY_BYTES = 8;
+    static final int MAX_KEY_FIELD_BYTES = 64;
+
+    static final int COUNT_POSITION = 16;
+    static final int INDEX_POSITION = 24;
+    static final int KEY_INDEX_POSITION = 32;
+    static final int OPERATION_TIME_POSITION = 40;
+    static final int CREATED_AT_POSITION = 48;
+    static final int KEY_FIELD_POSITION = 56;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * The _id and, if asked for, the string key field of an encoded document, read without decoding
+     * the rest of it.
+     */
+    record Fields(ObjectId id, String key) {
+    }
+
+    static Fields readFields(ByteBuffer document, String keyField) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(document.duplicate())) {
+            reader.readStartDocument();
+            ObjectId id = null;
+            String key = null;
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (name.equals("_id") && reader.getCurrentBsonType() == BsonType.OBJECT_ID) {
+                    id = reader.readObjectId();
+                } else if (name.equals(keyField) && reader.getCurrentBsonType() == BsonType.STRING) {
+                    key = reader.readString();
+                } else {
+                    reader.skipValue();
+                }
+                if (id != null && (keyField == null || key != null)) {
+                    break;
+                }
+            }
+            return new Fields(id, key);
+        }
+    }
+}
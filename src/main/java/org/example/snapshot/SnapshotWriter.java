@@ -0,0 +1,201 @@
+package org.example.snapshot;
+
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes one snapshot file. Documents must be added in ascending _id order, which is how they come
+ * from a find sorted on _id, so the _id index is written without sorting. The file is written under
+ * a temporary name and moved into place on {@link #commit()}, so readers of the old file are not
+ * disturbed.
+ */
+class SnapshotWriter implements AutoCloseable {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private record KeyEntry(String key, long offset) {
+    }
+
+    private final Path file;
+    private final Path temp;
+    private final String keyField;
+    private final long operationTime;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final ByteBuffer index = ByteBuffer.allocate(SnapshotFormat.INDEX_ENTRY_BYTES);
+    private final Path indexTemp;
+    private final FileChannel indexChannel;
+    private final List<KeyEntry> keys = new ArrayList<>();
+    private long position = SnapshotFormat.HEADER_BYTES;
+    private long count;
+    private ObjectId lastId;
+    private boolean committed;
+
+    /**
+     * @param keyField      string field to index besides _id, or null
+     * @param operationTime the database time the documents are current as of, 0 if unknown
+     */
+    SnapshotWriter(Path file, String keyField, long operationTime) throws IOException {
+        if (keyField != null && keyField.getBytes(StandardCharsets.UTF_8).length > SnapshotFormat.MAX_KEY_FIELD_BYTES) {
+            throw new IllegalArgumentException("Snapshot key field name is too long: " + keyField);
+        }
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.indexTemp = file.resolveSibling(file.getFileName() + ".idx.tmp");
+        this.keyField = keyField;
+        this.operationTime = operationTime;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(indexTemp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.position(SnapshotFormat.HEADER_BYTES);
+    }
+
+    /**
+     * Adds one BSON document; documents without an ObjectId _id are skipped.
+     *
+     * @return whether the document was added
+     * @throws IllegalArgumentException if the _id is not above the previous one
+     */
+    boolean add(ByteBuffer document) throws IOException {
+        SnapshotFormat.Fields fields = SnapshotFormat.readFields(document, keyField);
+        if (fields.id() == null) {
+            return false;
+        }
+        if (lastId != null && fields.id().compareTo(lastId) <= 0) {
+            throw new IllegalArgumentException("Snapshot documents must be added in ascending _id order");
+        }
+        lastId = fields.id();
+
+        int length = document.remaining();
+        long chunkEnd = (position / SnapshotFormat.CHUNK_BYTES + 1) * SnapshotFormat.CHUNK_BYTES;
+        if (position + length > chunkEnd) {
+            // Leave a gap so the document starts a new chunk
+            flushBuffer();
+            position = chunkEnd;
+            channel.position(position);
+        }
+        if (length > buffer.remaining()) {
+            flushBuffer();
+        }
+        if (length > buffer.capacity()) {
+            write(channel, document.duplicate());
+        } else {
+            buffer.put(document.duplicate());
+        }
+
+        index.clear();
+        index.put(fields.id().toByteArray()).putLong(position).flip();
+        write(indexChannel, index);
+        if (fields.key() != null) {
+            keys.add(new KeyEntry(fields.key(), position));
+        }
+        position += length;
+        count++;
+        return true;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the indexes and header, forces the file to disk and moves it into place.
+     */
+    void commit() throws IOException {
+        flushBuffer();
+        long indexOffset = position;
+        indexChannel.position(0);
+        long indexBytes = indexChannel.size();
+        long copied = 0;
+        while (copied < indexBytes) {
+            copied += indexChannel.transferTo(copied, indexBytes - copied, channel.position(indexOffset + copied));
+        }
+
+        long keyIndexOffset = 0;
+        if (keyField != null) {
+            keyIndexOffset = indexOffset + indexBytes;
+            keys.sort(Comparator.comparing(KeyEntry::key));
+            channel.position(keyIndexOffset);
+            for (KeyEntry entry : keys) {
+                if (buffer.remaining() < SnapshotFormat.KEY_ENTRY_BYTES) {
+                    flushBuffer();
+                }
+                buffer.putLong(entry.offset());
+            }
+            flushBuffer();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.HEADER_BYTES);
+        header.putLong(0, SnapshotFormat.MAGIC);
+        header.putInt(8, SnapshotFormat.VERSION);
+        header.putLong(SnapshotFormat.COUNT_POSITION, count);
+        header.putLong(SnapshotFormat.INDEX_POSITION, indexOffset);
+        header.putLong(SnapshotFormat.KEY_INDEX_POSITION, keyIndexOffset);
+        header.putLong(SnapshotFormat.OPERATION_TIME_POSITION, operationTime);
+        header.putLong(SnapshotFormat.CREATED_AT_POSITION, System.currentTimeMillis());
+        byte[] keyFieldBytes = keyField == null ? new byte[0] : keyField.getBytes(StandardCharsets.UTF_8);
+        header.put(SnapshotFormat.KEY_FIELD_POSITION, (byte) keyFieldBytes.length);
+        header.put(SnapshotFormat.KEY_FIELD_POSITION + 1, keyFieldBytes);
+        channel.position(0);
+        write(channel, header);
+        channel.force(true);
+        channel.close();
+        indexChannel.close();
+        Files.deleteIfExists(indexTemp);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    /**
+     * Moves an existing snapshot forward in time without rewriting it, for when nothing has changed.
+     */
+    static void updateOperationTime(Path file, long operationTime) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            write(channel.position(SnapshotFormat.OPERATION_TIME_POSITION),
+                    ByteBuffer.allocate(Long.BYTES).putLong(0, operationTime));
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Discards the file unless it was committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            indexChannel.close();
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(indexTemp);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        write(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.stats;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of one course: how many enrollments it has and how many of them have each grade.
+ */
+public record CourseStats(ObjectId courseId, long enrollmentCount, Map<String, Long> gradeCounts) {
+
+    static CourseStats fromDocument(Document document) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        Document grades = document.get("gradeCounts", Document.class);
+        if (grades != null) {
+            for (Map.Entry<String, Object> grade : grades.entrySet()) {
+                long count = ((Number) grade.getValue()).longValue();
+                if (count != 0) {
+                    counts.put(grade.getKey(), count);
+                }
+            }
+        }
+        return new CourseStats(document.getObjectId("_id"), number(document, "enrollmentCount"), counts);
+    }
+
+    static long number(Document document, String field) {
+        Object value = document.get(field);
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
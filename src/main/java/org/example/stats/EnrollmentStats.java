@@ -0,0 +1,275 @@
+package org.example.stats;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.cache.DocumentCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one summary document per course ("courseStats") and per student ("studentStats") so that
+ * enrollment counts, grade distributions, credits and GPA are single _id reads instead of
+ * aggregations over all enrollments. Writes made through this application record their change
+ * here once the database has acknowledged them, and the summaries are adjusted with $inc. A failed
+ * $inc is reported and left as drift rather than failing the write it belongs to.
+ * {@link #rebuild()} recomputes everything from the enrollments with $merge. Run it to repair drift,
+ * including from writes made elsewhere. Referenced and embedded enrollments both count.
+ */
+public class EnrollmentStats {
+    public static final String COURSE_STATS_COLLECTION = "courseStats";
+    public static final String STUDENT_STATS_COLLECTION = "studentStats";
+
+    /**
+     * The enrollment fields the record methods read; a projection of these is enough.
+     */
+    public static final List<String> RECORDED_FIELDS =
+            List.of("studentId", "courseId", "student._id", "course._id", "course.credits", "grade");
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private final MongoCollection<Document> enrollmentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> courseStatsCollection;
+    private final MongoCollection<Document> studentStatsCollection;
+    private final DocumentCache courseCache;
+
+    /**
+     * @param database    the database holding the summary collections
+     * @param courseCache used to find the credits of referenced courses
+     */
+    public EnrollmentStats(MongoDatabase database, MongoCollection<Document> enrollmentsCollection,
+                           MongoCollection<Document> coursesCollection, DocumentCache courseCache) {
+        this.enrollmentsCollection = enrollmentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.courseStatsCollection = database.getCollection(COURSE_STATS_COLLECTION);
+        this.studentStatsCollection = database.getCollection(STUDENT_STATS_COLLECTION);
+        this.courseCache = courseCache;
+    }
+
+    /**
+     * Counts newly inserted enrollments. Changes to the same course or student are merged into one update.
+     */
+    public void recordInserted(List<Document> enrollments) {
+        Deltas deltas = new Deltas();
+        for (Document enrollment : enrollments) {
+            deltas.add(enrollment, gradeOf(enrollment), 1);
+        }
+        deltas.write();
+    }
+
+    public void recordInserted(Document enrollment) {
+        recordInserted(List.of(enrollment));
+    }
+
+    /**
+     * Moves an enrollment from its old grade to the new one.
+     *
+     * @param before the enrollment as it was before the change, read in the same operation as the update
+     *               so concurrent changes each see their own old grade; needs its student, course and grade
+     */
+    public void recordGradeChanged(Document before, String newGrade) {
+        Deltas deltas = new Deltas();
+        deltas.add(before, gradeOf(before), -1);
+        deltas.add(before, newGrade, 1);
+        deltas.write();
+    }
+
+    /**
+     * @return the course's summary, or null if it has no enrollments
+     */
+    public CourseStats getCourseStats(ObjectId courseId) {
+        Document document = courseStatsCollection.find(Filters.eq("_id", courseId)).first();
+        return document == null ? null : CourseStats.fromDocument(document);
+    }
+
+    /**
+     * @return the student's summary, or null if they have no enrollments
+     */
+    public StudentStats getStudentStats(ObjectId studentId) {
+        Document document = studentStatsCollection.find(Filters.eq("_id", studentId)).first();
+        return document == null ? null : StudentStats.fromDocument(document);
+    }
+
+    /**
+     * Empties both summary collections, e.g. after all enrollments were deleted.
+     */
+    public void clear() {
+        courseStatsCollection.deleteMany(new Document());
+        studentStatsCollection.deleteMany(new Document());
+    }
+
+    /**
+     * Recomputes every summary from the enrollments. Summaries are replaced in place with $merge, so
+     * readers never see an empty collection; summaries of courses and students that no longer have
+     * enrollments are removed afterwards. Incremental updates made while this runs may be overwritten.
+     */
+    public void rebuild() {
+        Date rebuiltAt = new Date();
+        long start = System.nanoTime();
+
+        enrollmentsCollection.aggregate(Arrays.asList(
+                new Document("$project", new Document("course", new Document("$ifNull", Arrays.asList("$courseId", "$course._id")))
+                        .append("grade", 1)),
+                new Document("$match", new Document("course", new Document("$ne", null))),
+                new Document("$group", new Document("_id", new Document("c", "$course").append("g", "$grade"))
+                        .append("n", new Document("$sum", 1))),
+                new Document("$group", new Document("_id", "$_id.c")
+                        .append("enrollmentCount", new Document("$sum", "$n"))
+                        .append("grades", new Document("$push", new Document("k", countKeyExpression("$_id.g")).append("v", "$n")))),
+                new Document("$project", new Document("enrollmentCount", 1)
+                        .append("gradeCounts", new Document("$arrayToObject", "$grades"))
+                        .append("rebuiltAt", rebuiltAt)),
+                merge(COURSE_STATS_COLLECTION)
+        )).toCollection();
+
+        enrollmentsCollection.aggregate(Arrays.asList(
+                new Document("$project", new Document("student", new Document("$ifNull", Arrays.asList("$studentId", "$student._id")))
+                        .append("courseRef", "$courseId")
+                        .append("embeddedCredits", "$course.credits")
+                        .append("grade", 1)),
+                new Document("$match", new Document("student", new Document("$ne", null))),
+                new Document("$lookup", new Document("from", coursesCollection.getNamespace().getCollectionName())
+                        .append("localField", "courseRef")
+                        .append("foreignField", "_id")
+                        .append("pipeline", List.of(new Document("$project", new Document("credits", 1))))
+                        .append("as", "referencedCourse")),
+                new Document("$set", new Document("credits", new Document("$ifNull", Arrays.asList(
+                        new Document("$first", "$referencedCourse.credits"), "$embeddedCredits", 0)))
+                        .append("points", GradeScale.pointsExpression("$grade"))),
+                new Document("$group", new Document("_id", "$student")
+                        .append("enrollmentCount", new Document("$sum", 1))
+                        .append("credits", new Document("$sum", "$credits"))
+                        .append("gradedCredits", new Document("$sum", new Document("$cond", Arrays.asList(
+                                new Document("$eq", Arrays.asList("$points", null)), 0, "$credits"))))
+                        .append("gradePoints", new Document("$sum", new Document("$multiply", Arrays.asList("$points", "$credits"))))),
+                new Document("$set", new Document("rebuiltAt", rebuiltAt)),
+                merge(STUDENT_STATS_COLLECTION)
+        )).toCollection();
+
+        // Anything not rewritten above has no enrollments left; upserts made meanwhile have no rebuiltAt
+        long staleCourses = courseStatsCollection.deleteMany(Filters.lt("rebuiltAt", rebuiltAt)).getDeletedCount();
+        long staleStudents = studentStatsCollection.deleteMany(Filters.lt("rebuiltAt", rebuiltAt)).getDeletedCount();
+
+        System.out.println("\n--- STATISTICS REBUILT ---");
+        System.out.println("  - Courses: " + courseStatsCollection.countDocuments() + " (" + staleCourses + " stale removed)");
+        System.out.println("  - Students: " + studentStatsCollection.countDocuments() + " (" + staleStudents + " stale removed)");
+        System.out.println("  - Took " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static Document merge(String into) {
+        return new Document("$merge", new Document("into", into)
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert"));
+    }
+
+    // Same keys as GradeScale.countKey: missing or empty grades become "none", "." and "$" become "_"
+    private static Document countKeyExpression(String gradeField) {
+        Document grade = new Document("$toString", new Document("$ifNull", Arrays.asList(gradeField, "")));
+        Document dotsReplaced = new Document("$replaceAll", new Document("input", "$$g")
+                .append("find", ".").append("replacement", "_"));
+        Document dollarsReplaced = new Document("$replaceAll", new Document("input", dotsReplaced)
+                .append("find", new Document("$literal", "$")).append("replacement", "_"));
+        return new Document("$let", new Document("vars", new Document("g", grade))
+                .append("in", new Document("$cond", Arrays.asList(
+                        new Document("$eq", Arrays.asList("$$g", "")), GradeScale.NO_GRADE, dollarsReplaced))));
+    }
+
+    private static String gradeOf(Document enrollment) {
+        Object grade = enrollment.get("grade");
+        return grade == null ? null : grade.toString();
+    }
+
+    /**
+     * $inc amounts per course and per student, written as one unordered bulkWrite per collection.
+     */
+    private final class Deltas {
+        private final Map<ObjectId, Document> courses = new LinkedHashMap<>();
+        private final Map<ObjectId, Document> students = new LinkedHashMap<>();
+
+        void add(Document enrollment, String grade, int sign) {
+            ObjectId courseId = referenceOf(enrollment, "courseId", "course");
+            ObjectId studentId = referenceOf(enrollment, "studentId", "student");
+            if (courseId != null) {
+                Document inc = courses.computeIfAbsent(courseId, id -> new Document());
+                increment(inc, "enrollmentCount", sign);
+                increment(inc, "gradeCounts." + GradeScale.countKey(grade), sign);
+            }
+            if (studentId != null) {
+                long credits = creditsOf(enrollment, courseId);
+                Double points = GradeScale.points(grade);
+                Document inc = students.computeIfAbsent(studentId, id -> new Document());
+                increment(inc, "enrollmentCount", sign);
+                increment(inc, "credits", sign * credits);
+                if (points != null) {
+                    increment(inc, "gradedCredits", sign * credits);
+                    increment(inc, "gradePoints", sign * points * credits);
+                }
+            }
+        }
+
+        void write() {
+            write(courseStatsCollection, courses);
+            write(studentStatsCollection, students);
+        }
+
+        private void write(MongoCollection<Document> collection, Map<ObjectId, Document> increments) {
+            List<WriteModel<Document>> updates = new ArrayList<>(increments.size());
+            for (Map.Entry<ObjectId, Document> entry : increments.entrySet()) {
+                Bson update = new Document("$inc", entry.getValue());
+                updates.add(new UpdateOneModel<>(Filters.eq("_id", entry.getKey()), update, UPSERT));
+            }
+            if (updates.isEmpty()) {
+                return;
+            }
+            try {
+                collection.bulkWrite(updates, UNORDERED);
+            } catch (MongoException e) {
+                System.err.println("Could not update " + collection.getNamespace().getCollectionName()
+                        + ", run --rebuild-stats to repair: " + e.getMessage());
+            }
+        }
+
+        private void increment(Document inc, String field, long amount) {
+            inc.put(field, ((Number) inc.getOrDefault(field, 0L)).longValue() + amount);
+        }
+
+        private void increment(Document inc, String field, double amount) {
+            inc.put(field, ((Number) inc.getOrDefault(field, 0.0)).doubleValue() + amount);
+        }
+
+        // Embedded enrollments carry the course's credits, referenced ones are looked up
+        private long creditsOf(Document enrollment, ObjectId courseId) {
+            Document course = enrollment.get("course", Document.class);
+            if (course == null && courseId != null) {
+                course = courseCache.getById(courseId);
+            }
+            Object credits = course == null ? null : course.get("credits");
+            return credits instanceof Number number ? number.longValue() : 0;
+        }
+    }
+
+    private static ObjectId referenceOf(Document enrollment, String referenceField, String embeddedField) {
+        Object reference = enrollment.get(referenceField);
+        if (reference instanceof ObjectId id) {
+            return id;
+        }
+        Document embedded = enrollment.get(embeddedField, Document.class);
+        return embedded == null ? null : embedded.getObjectId("_id");
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.stats;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Letter grades and their grade points on the usual 4.0 scale. Grades not listed here
+ * (missing, "IP", "W", ...) count as enrolled but not graded, so they do not affect GPA.
+ */
+public final class GradeScale {
+    /**
+     * Key used in grade counts for enrollments without a grade.
+     */
+    public static final String NO_GRADE = "none";
+
+    private static final Map<String, Double> POINTS = new LinkedHashMap<>();
+
+    static {
+        POINTS.put("A", 4.0);
+        POINTS.put("A-", 3.7);
+        POINTS.put("B+", 3.3);
+        POINTS.put("B", 3.0);
+        POINTS.put("B-", 2.7);
+        POINTS.put("C+", 2.3);
+        POINTS.put("C", 2.0);
+        POINTS.put("C-", 1.7);
+        POINTS.put("D+", 1.3);
+        POINTS.put("D", 1.0);
+        POINTS.put("F", 0.0);
+    }
+
+    private GradeScale() {
+    }
+
+    /**
+     * @return the grade points, or null if the grade does not count towards GPA
+     */
+    public static Double points(String grade) {
+        return grade == null ? null : POINTS.get(grade);
+    }
+
+    /**
+     * The key a grade is counted under; field names cannot contain "." or start with "$".
+     */
+    static String countKey(String grade) {
+        if (grade == null || grade.isEmpty()) {
+            return NO_GRADE;
+        }
+        return grade.replace('.', '_').replace('$', '_');
+    }
+
+    /**
+     * Aggregation expression giving the points of the grade held in the field, or null.
+     */
+    static Document pointsExpression(String gradeField) {
+        List<Document> branches = new ArrayList<>();
+        for (Map.Entry<String, Double> grade : POINTS.entrySet()) {
+            branches.add(new Document("case", new Document("$eq", List.of(gradeField, grade.getKey())))
+                    .append("then", grade.getValue()));
+        }
+        return new Document("$switch", new Document("branches", branches).append("default", null));
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.stats;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Summary of one student: enrollments, credits taken, and the credit-weighted grade point average.
+ *
+ * @param gradedCredits credits of the enrollments that have a grade on the GPA scale
+ * @param gradePoints   sum of grade points times credits over those enrollments
+ */
+public record StudentStats(ObjectId studentId, long enrollmentCount, long credits, long gradedCredits,
+                           double gradePoints) {
+
+    /**
+     * @return the GPA, or NaN if nothing has been graded yet
+     */
+    public double gpa() {
+        return gradedCredits == 0 ? Double.NaN : gradePoints / gradedCredits;
+    }
+
+    static StudentStats fromDocument(Document document) {
+        Object points = document.get("gradePoints");
+        return new StudentStats(document.getObjectId("_id"),
+                CourseStats.number(document, "enrollmentCount"),
+                CourseStats.number(document, "credits"),
+                CourseStats.number(document, "gradedCredits"),
+                points instanceof Number number ? number.doubleValue() : 0);
+    }
+}
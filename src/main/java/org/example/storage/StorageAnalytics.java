@@ -0,0 +1,234 @@
+package org.example.storage;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.conversions.Bson;
+import org.example.index.IndexManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Storage figures for the enrollment schema: exact BSON document sizes, the server's
+ * collection statistics, and a projection of what the referenced and embedded models
+ * would cost at a given number of students, courses and enrollments.
+ */
+public class StorageAnalytics {
+    private static final int SAMPLE_SIZE = 200;
+
+    private final MongoCollection<Document> studentsCollection;
+    private final MongoCollection<Document> coursesCollection;
+    private final MongoCollection<Document> enrollmentsCollection;
+
+    /**
+     * Server-side statistics for one collection, from $collStats.
+     *
+     * @param count          number of documents
+     * @param dataSize       uncompressed size of all documents
+     * @param storageSize    size on disk after compression
+     * @param totalIndexSize size of all indexes on disk
+     * @param indexSizes     size of each index on disk, by index name
+     */
+    public record CollectionStats(String name, long count, long dataSize, long storageSize, long totalIndexSize,
+                                  Map<String, Long> indexSizes) {
+
+        public double compressionRatio() {
+            return storageSize == 0 ? 1.0 : (double) dataSize / storageSize;
+        }
+
+        public double indexBytesPerDocument() {
+            return count == 0 ? 0 : (double) totalIndexSize / count;
+        }
+
+        /**
+         * Returns the combined on-disk size of the named indexes; names that do not exist count as 0.
+         */
+        public long indexSize(Collection<String> names) {
+            long total = 0;
+            for (String name : names) {
+                total += indexSizes.getOrDefault(name, 0L);
+            }
+            return total;
+        }
+    }
+
+    public StorageAnalytics(MongoCollection<Document> studentsCollection,
+                            MongoCollection<Document> coursesCollection,
+                            MongoCollection<Document> enrollmentsCollection) {
+        this.studentsCollection = studentsCollection;
+        this.coursesCollection = coursesCollection;
+        this.enrollmentsCollection = enrollmentsCollection;
+    }
+
+    /**
+     * Returns the exact size of the document as the server stores it, in bytes.
+     */
+    public static int bsonSize(Document document, Codec<Document> codec) {
+        return new RawBsonDocument(document, codec).getByteBuffer().remaining();
+    }
+
+    /**
+     * Reads data, storage and index sizes for a collection with $collStats.
+     * Returns null if the server does not support it or the collection does not exist.
+     */
+    public static CollectionStats collectionStats(MongoCollection<Document> collection) {
+        String name = collection.getNamespace().getCollectionName();
+        try {
+            Document result = collection.aggregate(Collections.singletonList(
+                    new Document("$collStats", new Document("storageStats", new Document())))).first();
+            if (result == null) {
+                return null;
+            }
+            Document storage = result.get("storageStats", Document.class);
+            Map<String, Long> indexSizes = new LinkedHashMap<>();
+            Document sizes = storage == null ? null : storage.get("indexSizes", Document.class);
+            if (sizes != null) {
+                for (String index : sizes.keySet()) {
+                    indexSizes.put(index, number(sizes, index));
+                }
+            }
+            return new CollectionStats(name,
+                    number(storage, "count"),
+                    number(storage, "size"),
+                    number(storage, "storageSize"),
+                    number(storage, "totalIndexSize"),
+                    indexSizes);
+        } catch (MongoCommandException e) {
+            System.out.println("  - $collStats unavailable for " + name + ": " + e.getErrorMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Average exact BSON size of documents matching the filter, from a random sample
+     * read as raw bytes so nothing is decoded.
+     *
+     * @return the average size, or 0 if no document matches
+     */
+    public static double averageDocumentSize(MongoCollection<Document> collection, Bson filter) {
+        long total = 0;
+        int count = 0;
+        try (MongoCursor<RawBsonDocument> cursor = collection.withDocumentClass(RawBsonDocument.class)
+                .aggregate(Arrays.asList(Aggregates.match(filter), Aggregates.sample(SAMPLE_SIZE))).iterator()) {
+            while (cursor.hasNext()) {
+                total += cursor.next().getByteBuffer().remaining();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Prints the current collection statistics and projects the storage and working set of both
+     * enrollment models. Average document sizes, compression ratios and index cost per document
+     * are taken from the live collections. The model-specific indexes are not sparse, so every
+     * index holds an entry for every enrollment of either model; each index is therefore divided
+     * over the total enrollment count to get its cost per entry, and each model is charged the
+     * per-entry cost of its own enrollment indexes plus the _id index.
+     *
+     * @param students              projected number of students
+     * @param courses               projected number of courses
+     * @param enrollmentsPerStudent projected enrollments per student
+     */
+    public void printReport(long students, long courses, long enrollmentsPerStudent) {
+        System.out.println("\n--- STORAGE REPORT ---");
+        CollectionStats studentStats = collectionStats(studentsCollection);
+        CollectionStats courseStats = collectionStats(coursesCollection);
+        CollectionStats enrollmentStats = collectionStats(enrollmentsCollection);
+        for (CollectionStats stats : Arrays.asList(studentStats, courseStats, enrollmentStats)) {
+            if (stats != null) {
+                System.out.println("  - " + stats.name() + ": " + stats.count() + " documents, data "
+                        + formatBytes(stats.dataSize()) + ", on disk " + formatBytes(stats.storageSize())
+                        + " (" + String.format("%.1f", stats.compressionRatio()) + "x compression), indexes "
+                        + formatBytes(stats.totalIndexSize()));
+            }
+        }
+
+        double studentSize = averageDocumentSize(studentsCollection, new Document());
+        double courseSize = averageDocumentSize(coursesCollection, new Document());
+        double referencedSize = averageDocumentSize(enrollmentsCollection, Filters.eq("enrollmentType", "referenced"));
+        double embeddedSize = averageDocumentSize(enrollmentsCollection, Filters.eq("enrollmentType", "embedded"));
+        if (studentSize == 0 || courseSize == 0 || referencedSize == 0 || embeddedSize == 0) {
+            System.out.println("Projection needs at least one student, course, referenced and embedded enrollment");
+            return;
+        }
+        System.out.println("\nAverage BSON document size:");
+        System.out.println("  - Student: " + String.format("%.0f", studentSize) + " bytes");
+        System.out.println("  - Course: " + String.format("%.0f", courseSize) + " bytes");
+        System.out.println("  - Referenced enrollment: " + String.format("%.0f", referencedSize) + " bytes");
+        System.out.println("  - Embedded enrollment: " + String.format("%.0f", embeddedSize) + " bytes");
+
+        long enrollments = students * enrollmentsPerStudent;
+        double compression = enrollmentStats == null ? 1.0 : enrollmentStats.compressionRatio();
+        double referencedIndexPerEnrollment = 0;
+        double embeddedIndexPerEnrollment = 0;
+        if (enrollmentStats != null) {
+            long total = enrollmentStats.count();
+            double idIndexPerEnrollment = perDocument(
+                    enrollmentStats.indexSize(Collections.singletonList("_id_")), total);
+            referencedIndexPerEnrollment = idIndexPerEnrollment + perDocument(
+                    enrollmentStats.indexSize(IndexManager.REFERENCED_ENROLLMENT_INDEXES), total);
+            embeddedIndexPerEnrollment = idIndexPerEnrollment + perDocument(
+                    enrollmentStats.indexSize(IndexManager.EMBEDDED_ENROLLMENT_INDEXES), total);
+            System.out.println("\nEnrollment index cost per document:");
+            System.out.println("  - Referenced: " + String.format("%.0f", referencedIndexPerEnrollment) + " bytes ("
+                    + String.join(", ", IndexManager.REFERENCED_ENROLLMENT_INDEXES) + ", _id_)");
+            System.out.println("  - Embedded: " + String.format("%.0f", embeddedIndexPerEnrollment) + " bytes ("
+                    + String.join(", ", IndexManager.EMBEDDED_ENROLLMENT_INDEXES) + ", _id_)");
+        }
+        double studentBytes = students * studentSize;
+        double courseBytes = courses * courseSize;
+
+        System.out.println("\nProjection for " + students + " students x " + courses + " courses, "
+                + enrollmentsPerStudent + " enrollments per student (" + enrollments + " enrollments):");
+        printModel("Referenced", studentBytes, courseBytes, enrollments * referencedSize,
+                compression, enrollments * referencedIndexPerEnrollment, true);
+        printModel("Embedded", studentBytes, courseBytes, enrollments * embeddedSize,
+                compression, enrollments * embeddedIndexPerEnrollment, false);
+    }
+
+    // Reading a referenced enrollment also touches its student and course, an embedded one does not
+    private static void printModel(String label, double studentBytes, double courseBytes, double enrollmentBytes,
+                                   double compression, double indexBytes, boolean readsReferences) {
+        double dataBytes = studentBytes + courseBytes + enrollmentBytes;
+        double workingSet = enrollmentBytes + indexBytes + (readsReferences ? studentBytes + courseBytes : 0);
+        System.out.println("  " + label + " model:");
+        System.out.println("    - Enrollment data: " + formatBytes((long) enrollmentBytes));
+        System.out.println("    - Total data: " + formatBytes((long) dataBytes)
+                + ", on disk ~" + formatBytes((long) (dataBytes / compression)));
+        System.out.println("    - Enrollment indexes: ~" + formatBytes((long) indexBytes));
+        System.out.println("    - Read working set (enrollment reads): ~" + formatBytes((long) workingSet));
+    }
+
+    private static double perDocument(long bytes, long count) {
+        return count == 0 ? 0 : (double) bytes / count;
+    }
+
+    private static long number(Document document, String field) {
+        Object value = document == null ? null : document.get(field);
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+}
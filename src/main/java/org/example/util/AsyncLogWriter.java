@@ -0,0 +1,312 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log lines from any number of threads to a file on one background thread. Callers only
+ * put the line into a {@link LogRingBuffer}; the writer takes lines in batches and writes each
+ * batch with a single {@link FileChannel} write (and, if enabled, a single console print), so
+ * neither the file nor stdout is contended by callers. When the file would grow past the size
+ * limit it is rotated to "name.1", "name.2", ... keeping a fixed number of old files.
+ * When the buffer is full, a line is either dropped and counted, or the caller waits for space.
+ */
+public class AsyncLogWriter implements AutoCloseable {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final long DEFAULT_MAX_FILE_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 5;
+
+    /**
+     * What {@link #append} does when the buffer is full.
+     */
+    public enum WhenFull {
+        DROP,
+        BLOCK
+    }
+
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final WhenFull whenFull;
+    private final PrintStream console;
+    private final LogRingBuffer buffer;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final Object channelLock = new Object();
+    private ByteBuffer encoded = ByteBuffer.allocateDirect(64 * 1024);
+    private FileChannel channel;
+    private long fileSize;
+    // Lines fully written (or failed); only advanced by the writer thread
+    private volatile long written;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+
+    /**
+     * @param file         the log file; appended to if it exists
+     * @param maxFileBytes size at which the file is rotated
+     * @param maxFiles     rotated files to keep besides the current one
+     * @param bufferSize   lines that can wait to be written
+     * @param whenFull     drop or block when that many lines are waiting
+     * @param console      also print every line here from the writer thread, or null
+     */
+    public AsyncLogWriter(Path file, long maxFileBytes, int maxFiles, int bufferSize, WhenFull whenFull,
+                          PrintStream console) throws IOException {
+        if (maxFileBytes < 1 || maxFiles < 0) {
+            throw new IllegalArgumentException("Max file bytes must be positive and max files not negative");
+        }
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.whenFull = whenFull;
+        this.console = console;
+        this.buffer = new LogRingBuffer(bufferSize);
+        openFile();
+        this.writer = new Thread(this::runWriter, "output-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues one line. Never blocks under {@link WhenFull#DROP}.
+     *
+     * @return false if the line was dropped
+     */
+    public boolean append(String line) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        if (!buffer.offer(line)) {
+            if (whenFull == WhenFull.DROP) {
+                dropped.increment();
+                if (writerParked) {
+                    LockSupport.unpark(writer);
+                }
+                return false;
+            }
+            blocked.increment();
+            do {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                if (closed) {
+                    dropped.increment();
+                    return false;
+                }
+            } while (!buffer.offer(line));
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every line queued before this call has been written.
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = buffer.claimed();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (written < target) {
+            if (System.nanoTime() > deadline || !writer.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Empties the current log file and deletes the rotated ones.
+     */
+    public void truncate() throws IOException {
+        flush(5, TimeUnit.SECONDS);
+        synchronized (channelLock) {
+            channel.truncate(0);
+            fileSize = 0;
+            for (int i = 1; i <= maxFiles; i++) {
+                Files.deleteIfExists(rotatedFile(i));
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Lines whose caller had to wait for space under {@link WhenFull#BLOCK}.
+     */
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getRotations() {
+        return rotations.sum();
+    }
+
+    public long getWriteErrors() {
+        return writeErrors.sum();
+    }
+
+    /**
+     * Lines queued but not yet written.
+     */
+    public long getPending() {
+        return buffer.claimed() - written;
+    }
+
+    /**
+     * Writes what is queued, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                writeErrors.increment();
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            batch.clear();
+            if (buffer.drainTo(batch, MAX_BATCH) > 0) {
+                write(batch);
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            writerParked = true;
+            // Re-check after announcing the park so a line queued in between is not left waiting
+            if (buffer.consumed() == buffer.claimed()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            writerParked = false;
+        }
+    }
+
+    private void write(List<String> batch) {
+        StringBuilder text = new StringBuilder();
+        for (String line : batch) {
+            text.append(line).append(System.lineSeparator());
+        }
+        if (console != null) {
+            console.print(text);
+            console.flush();
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (channelLock) {
+            try {
+                if (fileSize > 0 && fileSize + bytes.length > maxFileBytes) {
+                    rotate();
+                }
+                if (encoded.capacity() < bytes.length) {
+                    encoded = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes.length) << 1);
+                }
+                encoded.clear();
+                encoded.put(bytes).flip();
+                while (encoded.hasRemaining()) {
+                    channel.write(encoded);
+                }
+                fileSize += bytes.length;
+                bytesWritten.add(bytes.length);
+            } catch (IOException e) {
+                writeErrors.increment();
+            }
+        }
+        written += batch.size();
+    }
+
+    // Called with channelLock held
+    private void rotate() throws IOException {
+        channel.close();
+        if (maxFiles == 0) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.deleteIfExists(rotatedFile(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path source = rotatedFile(i);
+                if (Files.exists(source)) {
+                    Files.move(source, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        rotations.increment();
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        if (fileSize == 0) {
+            String header = "MongoDB Student Enrollment System - Operation Log" + System.lineSeparator()
+                    + "Started: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))
+                    + System.lineSeparator() + "=".repeat(50) + System.lineSeparator();
+            ByteBuffer headerBytes = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
+            while (headerBytes.hasRemaining()) {
+                channel.write(headerBytes);
+            }
+            fileSize = channel.size();
+        }
+    }
+
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer. Each slot carries a sequence
+ * number: producers claim a position with one compare-and-set and publish the entry by advancing
+ * the slot's sequence, the consumer frees a slot by moving its sequence one lap ahead.
+ */
+final class LogRingBuffer {
+    private final String[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Only advanced by the consumer; volatile so producers and flush() can read it
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    LogRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.entries = new String[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(String entry) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entries[index] = entry;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                // Another producer took this position first
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to max published entries into the list. Must only be called by the consumer thread.
+     *
+     * @return the number of entries moved
+     */
+    int drainTo(List<String> out, int max) {
+        long position = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            out.add(entries[index]);
+            entries[index] = null;
+            sequences.set(index, position + entries.length);
+            position++;
+            count++;
+        }
+        head = position;
+        return count;
+    }
+
+    /**
+     * Positions claimed by producers so far.
+     */
+    long claimed() {
+        return tail.get();
+    }
+
+    /**
+     * Positions taken by the consumer so far.
+     */
+    long consumed() {
+        return head;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+}
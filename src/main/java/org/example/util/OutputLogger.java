@@ -1,73 +1,95 @@
 package org.example.util;
 
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A utility class to log output for documentation purposes.
  * This can be used to capture console output for screenshots in the README.
+ * Once configured, everything printed to {@link System#out} is still written to the console
+ * straight away and is also handed, line by line, to an {@link AsyncLogWriter}, which appends it
+ * to the log file on a background thread. The application's reports therefore reach the log without
+ * waiting on the disk, and the log survives the process dying part way through. Only the file copy
+ * can be dropped when the writer falls behind; the console never is.
+ * Settings come from "mongodb.log.*" properties.
  */
 public class OutputLogger {
-    private static final List<String> logEntries = new ArrayList<>();
     private static final String LOG_FILE = "mongodb_operations.log";
-    private static boolean loggingEnabled = true;
+    private static volatile boolean loggingEnabled = true;
+    private static volatile Properties settings = new Properties();
+    private static volatile AsyncLogWriter writer;
+    // The real stdout while System.out is being copied to the log, otherwise null
+    private static volatile PrintStream console;
 
     /**
-     * Logs a message to both console and the log buffer.
-     * 
+     * Applies "mongodb.log.file", "mongodb.log.maxFileBytes", "mongodb.log.maxFiles",
+     * "mongodb.log.bufferSize", "mongodb.log.whenFull" (drop or block) and "mongodb.log.captureStdout".
+     * A writer that is already running is closed and replaced on the next log call.
+     * With captureStdout (the default) System.out is replaced by a stream that also copies each
+     * line to the log file, until {@link #shutdown()}.
+     */
+    public static synchronized void configure(Properties properties) {
+        settings = properties;
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        boolean capture = Boolean.parseBoolean(properties.getProperty("mongodb.log.captureStdout", "true").trim());
+        if (capture && console == null) {
+            console = System.out;
+            System.setOut(new PrintStream(new FileCopy(console), true, StandardCharsets.UTF_8));
+        } else if (!capture && console != null) {
+            restoreStdout();
+        }
+    }
+
+    /**
+     * Logs a message to both console and the log file.
+     *
      * @param message the message to log
      */
     public static void log(String message) {
         System.out.println(message);
-        if (loggingEnabled) {
-            logEntries.add(message);
+        if (loggingEnabled && !capturing()) {
+            writer().append(message);
         }
     }
 
     /**
-     * Logs a section header to both console and the log buffer.
-     * 
+     * Logs a section header to both console and the log file.
+     *
      * @param section the section title
      */
     public static void logSection(String section) {
-        String header = "\n--- " + section.toUpperCase() + " ---";
-        System.out.println(header);
-        if (loggingEnabled) {
-            logEntries.add(header);
-        }
+        log("\n--- " + section.toUpperCase() + " ---");
     }
 
     /**
-     * Saves all logged entries to a file for documentation.
+     * Waits until everything logged so far has been written to the log file.
      */
     public static void saveToFile() {
-        if (!loggingEnabled || logEntries.isEmpty()) {
+        AsyncLogWriter current = currentWriter();
+        if (current == null) {
             return;
         }
-
-        try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE))) {
-            writer.println("MongoDB Student Enrollment System - Operation Log");
-            writer.println("Generated: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-            writer.println("=".repeat(50));
-            
-            for (String entry : logEntries) {
-                writer.println(entry);
-            }
-            
-            System.out.println("\nLog saved to file: " + LOG_FILE);
-        } catch (IOException e) {
-            System.err.println("Failed to save log to file: " + e.getMessage());
+        if (current.flush(10, TimeUnit.SECONDS)) {
+            System.out.println("\nLog saved to file: " + current.getFile());
+        } else {
+            System.err.println("Timed out saving log to file: " + current.getFile());
         }
     }
 
     /**
      * Enables or disables logging.
-     * 
+     *
      * @param enabled true to enable logging, false to disable
      */
     public static void setLoggingEnabled(boolean enabled) {
@@ -78,6 +100,168 @@ public class OutputLogger {
      * Clears all log entries.
      */
     public static void clear() {
-        logEntries.clear();
+        AsyncLogWriter current = currentWriter();
+        if (current == null) {
+            return;
+        }
+        try {
+            current.truncate();
+        } catch (IOException e) {
+            System.err.println("Failed to clear log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Entries that were not logged because the buffer was full.
+     */
+    public static long getDroppedCount() {
+        AsyncLogWriter current = currentWriter();
+        return current == null ? 0 : current.getDropped();
+    }
+
+    /**
+     * Entries whose caller waited for room in the buffer.
+     */
+    public static long getBlockedCount() {
+        AsyncLogWriter current = currentWriter();
+        return current == null ? 0 : current.getBlocked();
+    }
+
+    public static long getRotationCount() {
+        AsyncLogWriter current = currentWriter();
+        return current == null ? 0 : current.getRotations();
+    }
+
+    public static long getWriteErrorCount() {
+        AsyncLogWriter current = currentWriter();
+        return current == null ? 0 : current.getWriteErrors();
+    }
+
+    public static void printStats() {
+        AsyncLogWriter current = currentWriter();
+        if (current == null) {
+            return;
+        }
+        System.out.println("Output logger:");
+        System.out.println("  - Written: " + current.getWritten() + " entries, "
+                + current.getBytesWritten() + " bytes to " + current.getFile());
+        System.out.println("  - Pending: " + current.getPending() + ", dropped: " + current.getDropped()
+                + ", blocked: " + current.getBlocked() + ", rotations: " + current.getRotations()
+                + (current.getWriteErrors() > 0 ? ", write errors: " + current.getWriteErrors() : ""));
+    }
+
+    /**
+     * Puts the original System.out back, writes what is still queued and stops the background writer.
+     */
+    public static synchronized void shutdown() {
+        restoreStdout();
+        if (writer != null) {
+            if (writer.getDropped() > 0) {
+                System.out.println("Log file is missing " + writer.getDropped() + " lines that were dropped while the writer was behind");
+            }
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private static boolean capturing() {
+        return console != null;
+    }
+
+    private static synchronized void restoreStdout() {
+        if (console != null) {
+            System.setOut(console);
+            console = null;
+        }
+    }
+
+    private static AsyncLogWriter currentWriter() {
+        return writer;
+    }
+
+    // Only the first call (and the first after configure) takes the lock
+    private static AsyncLogWriter writer() {
+        AsyncLogWriter current = writer;
+        if (current != null) {
+            return current;
+        }
+        return openWriter();
+    }
+
+    private static synchronized AsyncLogWriter openWriter() {
+        if (writer == null) {
+            Properties properties = settings;
+            try {
+                writer = new AsyncLogWriter(
+                        Path.of(properties.getProperty("mongodb.log.file", LOG_FILE).trim()),
+                        Long.parseLong(properties.getProperty("mongodb.log.maxFileBytes",
+                                String.valueOf(AsyncLogWriter.DEFAULT_MAX_FILE_BYTES)).trim()),
+                        Integer.parseInt(properties.getProperty("mongodb.log.maxFiles",
+                                String.valueOf(AsyncLogWriter.DEFAULT_MAX_FILES)).trim()),
+                        Integer.parseInt(properties.getProperty("mongodb.log.bufferSize",
+                                String.valueOf(AsyncLogWriter.DEFAULT_BUFFER_SIZE)).trim()),
+                        AsyncLogWriter.WhenFull.valueOf(
+                                properties.getProperty("mongodb.log.whenFull", "drop").trim().toUpperCase(Locale.ROOT)),
+                        // The console is written by the caller, so only the file copy can be dropped
+                        null);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open log file", e);
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Passes every byte to the console and queues each complete line for the log file.
+     * PrintStream serializes its writes, so the line buffer needs no further locking.
+     */
+    private static final class FileCopy extends OutputStream {
+        private final PrintStream target;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        FileCopy(PrintStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            target.write(b);
+            if (b == '\n') {
+                endLine();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            target.write(bytes, offset, length);
+            int start = offset;
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    line.write(bytes, start, i - start);
+                    endLine();
+                    start = i + 1;
+                }
+            }
+            line.write(bytes, start, offset + length - start);
+        }
+
+        @Override
+        public void flush() {
+            target.flush();
+        }
+
+        private void endLine() {
+            String text = line.toString(StandardCharsets.UTF_8);
+            line.reset();
+            if (text.endsWith("\r")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            // Lines written after shutdown only reach the console
+            if (loggingEnabled && capturing()) {
+                writer().append(text);
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,156 @@
+package org.example.writebehind;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.metrics.LatencyStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same mix of enrollment inserts and grade updates twice from many threads: once with a
+ * round trip per write and once through a {@link WriteBehindBuffer}, so the throughput gained can be
+ * weighed against how much later the writes reach the database. Uses a scratch collection that is
+ * dropped afterwards.
+ */
+public class WriteBehindBenchmark {
+    private static final String COLLECTION = "writeBehindBenchmark";
+    private static final int HOT_DOCUMENTS = 100;
+    private static final String[] GRADES = {"A", "B+", "B", "C", "A-"};
+
+    private final MongoDatabase database;
+    private final WriteBehindSettings settings;
+
+    public WriteBehindBenchmark(MongoDatabase database, WriteBehindSettings settings) {
+        this.database = database;
+        this.settings = settings;
+    }
+
+    /**
+     * @param operations writes per run; every other one is a grade update on one of a small set of enrollments
+     * @param threads    concurrent writers
+     */
+    public void run(int operations, int threads) throws IOException {
+        if (operations < 1 || threads < 1) {
+            throw new IllegalArgumentException("Operations and threads must be positive");
+        }
+        System.out.println("\n--- WRITE-BEHIND BENCHMARK: " + operations + " writes on " + threads + " threads ---");
+        MongoCollection<Document> collection = database.getCollection(COLLECTION);
+        Path journalDirectory = Files.createTempDirectory("write-behind-benchmark");
+        try {
+            List<ObjectId> hot = seed(collection);
+            LatencyStats direct = new LatencyStats(Map.of("writeBehindBenchmark", "direct"));
+            long directNanos = runWriters(operations, threads, i -> {
+                long start = System.nanoTime();
+                if (i % 2 == 0) {
+                    collection.insertOne(newEnrollment());
+                } else {
+                    collection.updateOne(Filters.eq("_id", hot.get(i % hot.size())),
+                            Updates.set("grade", GRADES[i % GRADES.length]));
+                }
+                direct.record(System.nanoTime() - start, 1, false);
+            });
+
+            List<ObjectId> bufferedHot = seed(collection);
+            long bufferedNanos;
+            WriteBehindMetrics buffered;
+            try (WriteBehindBuffer buffer = new WriteBehindBuffer(database,
+                    settings.withJournal(journalDirectory.resolve("journal")))) {
+                bufferedNanos = runWriters(operations, threads, i -> {
+                    if (i % 2 == 0) {
+                        buffer.insert(collection, newEnrollment());
+                    } else {
+                        buffer.set(collection, bufferedHot.get(i % bufferedHot.size()), new Document("grade", GRADES[i % GRADES.length]));
+                    }
+                });
+                // Counted until the last write is in the database, not just acknowledged
+                long start = System.nanoTime();
+                buffer.flush();
+                bufferedNanos += System.nanoTime() - start;
+                buffered = buffer.getMetrics();
+            }
+
+            System.out.println("Direct (one round trip per write):");
+            System.out.println("  - Throughput: " + String.format("%.0f", operations * 1_000_000_000.0 / directNanos)
+                    + " writes/sec, " + operations + " round trips");
+            System.out.println("  - Latency (ms): p50=" + String.format("%.2f", direct.getP50Millis())
+                    + ", p99=" + String.format("%.2f", direct.getP99Millis())
+                    + ", max=" + String.format("%.2f", direct.getMaxMillis()));
+            System.out.println("Write-behind (fsync=" + settings.fsync().name().toLowerCase() + ", window "
+                    + settings.flushInterval().toMillis() + " ms, batch " + settings.batchSize() + "):");
+            System.out.println("  - Throughput: " + String.format("%.0f", operations * 1_000_000_000.0 / bufferedNanos)
+                    + " writes/sec, " + buffered.getFlushes().getCount() + " round trips");
+            buffered.print();
+        } finally {
+            collection.drop();
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private interface Writer {
+        void write(int index);
+    }
+
+    private static long runWriters(int operations, int threads, Writer writer) {
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < operations; i += threads) {
+                        writer.write(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Benchmark interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Benchmark write failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<ObjectId> seed(MongoCollection<Document> collection) {
+        collection.drop();
+        List<Document> documents = new ArrayList<>(HOT_DOCUMENTS);
+        for (int i = 0; i < HOT_DOCUMENTS; i++) {
+            documents.add(newEnrollment().append("_id", new ObjectId()));
+        }
+        collection.insertMany(documents);
+        return documents.stream().map(document -> document.getObjectId("_id")).toList();
+    }
+
+    private static Document newEnrollment() {
+        return new Document("enrollmentType", "referenced")
+                .append("date", new Date())
+                .append("studentId", new ObjectId())
+                .append("courseId", new ObjectId())
+                .append("grade", "B");
+    }
+}
@@ -0,0 +1,505 @@
+package org.example.writebehind;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Buffers inserts and $set updates and writes them with one unordered bulkWrite per collection when
+ * the flush window ends or the batch size is reached. Writes to the same document that arrive before
+ * it is flushed are merged into one. Each write is appended to a local {@link WriteJournal} before the
+ * call returns, and journaled writes that were not flushed are replayed on the next start. Inserts are
+ * sent as insertOne and updates as $set. An insert whose _id already exists counts as done, and its
+ * $sets that arrived after it are applied on their own. Replaying a write that already reached the
+ * database therefore never overwrites changes made to the document since. A bulkWrite that reports
+ * a write concern error is retried as a whole. Once {@code maxPending} documents are buffered or
+ * being flushed, new writes wait for room. An optional insert listener sees the documents each
+ * flush inserted, before their futures complete; inserts found to be in the database already are
+ * not passed on again.
+ */
+public class WriteBehindBuffer implements AutoCloseable {
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final int DUPLICATE_KEY = 11000;
+
+    private record Key(String collection, Object id) {
+    }
+
+    private static final class PendingWrite {
+        // The inserted document with later $sets applied; the $sets are also kept on their own in
+        // case the insert turns out to be in the database already
+        Document insert;
+        final Document set = new Document();
+        final List<Long> submittedAt = new ArrayList<>();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        void apply(Document insertDocument, Document fields) {
+            if (insertDocument != null) {
+                insert = new Document(insertDocument);
+                set.clear();
+            } else {
+                if (insert != null) {
+                    for (Map.Entry<String, Object> field : fields.entrySet()) {
+                        setPath(insert, field.getKey(), field.getValue());
+                    }
+                }
+                set.putAll(fields);
+            }
+        }
+    }
+
+    private final MongoDatabase database;
+    private final WriteBehindSettings settings;
+    private final WriteJournal journal;
+    private final WriteBehindMetrics metrics = new WriteBehindMetrics();
+    private final BiConsumer<String, List<Document>> insertListener;
+    private final Map<String, MongoCollection<Document>> collections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+    private final int recovered;
+
+    // Guarded by this
+    private Map<Key, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean flushRequested;
+    private boolean closed;
+    // Documents taken by the flush in progress, counted against maxPending until it finishes
+    private int flushing;
+
+    // Guarded by flushLock; journal segments holding writes that are not known to be in the database
+    private final List<Path> unflushedSegments = new ArrayList<>();
+
+    public WriteBehindBuffer(MongoDatabase database, WriteBehindSettings settings) throws IOException {
+        this(database, settings, (collection, inserted) -> { });
+    }
+
+    /**
+     * Opens the journal, writes out anything an earlier run journaled but did not flush,
+     * and starts the flush timer.
+     *
+     * @param insertListener called from the flushing thread with a collection name and the documents
+     *                       just inserted into it, including replayed ones; failures are reported and ignored
+     */
+    public WriteBehindBuffer(MongoDatabase database, WriteBehindSettings settings,
+                             BiConsumer<String, List<Document>> insertListener) throws IOException {
+        this.database = database;
+        this.settings = settings;
+        this.insertListener = insertListener;
+        this.journal = new WriteJournal(settings.journal(), database.getCodecRegistry().get(Document.class),
+                settings.fsync());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Path> leftOver = journal.segments();
+            List<Document> records = journal.read(leftOver);
+            for (Document record : records) {
+                replay(record);
+            }
+            unflushedSegments.addAll(leftOver);
+            recovered = records.size();
+            if (!leftOver.isEmpty()) {
+                System.out.println("Replaying " + recovered + " journaled writes from " + leftOver.size()
+                        + " write-behind journal segments");
+                if (!flushNow()) {
+                    throw new IllegalStateException("Could not write out the journaled writes of an earlier run");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            flusher.shutdownNow();
+            journal.close();
+            throw e;
+        }
+        long interval = settings.flushInterval().toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Buffers an insert. Like insertOne, a missing _id is generated and set on the document.
+     *
+     * @return completes once the document is in the database
+     */
+    public CompletableFuture<Void> insert(MongoCollection<Document> collection, Document document) {
+        if (!document.containsKey("_id")) {
+            Document withId = new Document("_id", new ObjectId());
+            withId.putAll(document);
+            document.clear();
+            document.putAll(withId);
+        }
+        return submit(collection, document.get("_id"), document, null);
+    }
+
+    /**
+     * Buffers a $set of the given fields on the document with this _id.
+     *
+     * @return completes once the update is in the database
+     */
+    public CompletableFuture<Void> set(MongoCollection<Document> collection, Object id, Document fields) {
+        if (fields.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(collection, id, null, fields);
+    }
+
+    public WriteBehindMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Journaled writes replayed when this buffer was opened.
+     */
+    public int getRecovered() {
+        return recovered;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes everything buffered so far.
+     *
+     * @throws IllegalStateException if the bulkWrite failed; the writes stay buffered and journaled
+     */
+    public void flush() {
+        if (!flushNow()) {
+            throw new IllegalStateException("Write-behind flush failed, the writes stay buffered for the next window");
+        }
+    }
+
+    private CompletableFuture<Void> submit(MongoCollection<Document> collection, Object id,
+                                           Document insertDocument, Document fields) {
+        long start = System.nanoTime();
+        String name = collection.getNamespace().getCollectionName();
+        collections.putIfAbsent(name, collection);
+        Document record = insertDocument != null
+                ? new Document("op", "insert").append("collection", name).append("document", insertDocument)
+                : new Document("op", "set").append("collection", name).append("id", id).append("fields", fields);
+
+        long position;
+        boolean merged;
+        CompletableFuture<Void> future;
+        Key key = new Key(name, id);
+        synchronized (this) {
+            awaitRoom(key);
+            // Appending under the same lock as the merge keeps journal order and buffer order the same
+            try {
+                position = journal.append(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not journal write", e);
+            }
+            PendingWrite write = pending.get(key);
+            merged = write != null;
+            if (!merged) {
+                write = new PendingWrite();
+                pending.put(key, write);
+            }
+            write.apply(insertDocument, fields);
+            write.submittedAt.add(start);
+            future = write.future;
+            if (pending.size() >= settings.batchSize() && !flushRequested) {
+                flushRequested = true;
+                flusher.execute(this::flushQuietly);
+            }
+        }
+        if (settings.fsync() == WriteBehindSettings.Fsync.ALWAYS) {
+            try {
+                journal.sync(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not sync write-behind journal", e);
+            }
+        }
+        metrics.recordAcknowledged(System.nanoTime() - start, merged);
+        return future;
+    }
+
+    // Called holding this. A write that merges into a pending one takes no room, so it never waits.
+    private void awaitRoom(Key key) {
+        long start = 0;
+        while (!closed && !pending.containsKey(key) && pending.size() + flushing >= settings.maxPending()) {
+            if (start == 0) {
+                start = System.nanoTime();
+            }
+            if (!flushRequested) {
+                flushRequested = true;
+                flusher.execute(this::flushQuietly);
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for room in the write-behind buffer", e);
+            }
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-behind buffer is closed");
+        }
+        if (start != 0) {
+            metrics.recordHeldBack(System.nanoTime() - start);
+        }
+    }
+
+    private void replay(Document record) {
+        String name = record.getString("collection");
+        collections.computeIfAbsent(name, database::getCollection);
+        boolean insert = "insert".equals(record.getString("op"));
+        Document document = insert ? record.get("document", Document.class) : null;
+        Object id = insert ? document.get("_id") : record.get("id");
+        pending.computeIfAbsent(new Key(name, id), key -> new PendingWrite())
+                .apply(document, insert ? null : record.get("fields", Document.class));
+    }
+
+    private void flushQuietly() {
+        try {
+            flushNow();
+        } catch (RuntimeException e) {
+            System.err.println("Write-behind flush failed: " + e.getMessage());
+        }
+    }
+
+    private boolean flushNow() {
+        synchronized (flushLock) {
+            Map<Key, PendingWrite> batch;
+            synchronized (this) {
+                flushRequested = false;
+                if (pending.isEmpty() && unflushedSegments.isEmpty()) {
+                    return true;
+                }
+                // Later writes go to a new segment, so the closed ones can be deleted once this batch is written
+                try {
+                    Path closedSegment = journal.roll();
+                    if (closedSegment != null) {
+                        unflushedSegments.add(closedSegment);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not roll write-behind journal", e);
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                flushing = batch.size();
+            }
+
+            long start = System.nanoTime();
+            Map<String, List<Map.Entry<Key, PendingWrite>>> byCollection = new LinkedHashMap<>();
+            for (Map.Entry<Key, PendingWrite> entry : batch.entrySet()) {
+                byCollection.computeIfAbsent(entry.getKey().collection(), name -> new ArrayList<>()).add(entry);
+            }
+            List<Map.Entry<Key, PendingWrite>> retry = new ArrayList<>();
+            RuntimeException failure = null;
+            for (Map.Entry<String, List<Map.Entry<Key, PendingWrite>>> group : byCollection.entrySet()) {
+                try {
+                    write(collections.get(group.getKey()), group.getValue());
+                } catch (RuntimeException e) {
+                    retry.addAll(group.getValue());
+                    failure = e;
+                }
+            }
+            if (!batch.isEmpty()) {
+                metrics.recordFlush(System.nanoTime() - start, batch.size(), failure != null);
+            }
+
+            if (failure == null) {
+                try {
+                    journal.delete(unflushedSegments);
+                } catch (IOException e) {
+                    System.err.println("Could not delete write-behind journal segment: " + e.getMessage());
+                }
+                unflushedSegments.clear();
+                synchronized (this) {
+                    flushing = 0;
+                    notifyAll();
+                }
+                return true;
+            }
+            synchronized (this) {
+                for (Map.Entry<Key, PendingWrite> entry : retry) {
+                    requeue(entry.getKey(), entry.getValue());
+                }
+                flushing = 0;
+                notifyAll();
+            }
+            metrics.recordRequeued(retry.size());
+            System.err.println("Write-behind flush of " + retry.size() + " documents failed, retrying next window: "
+                    + failure.getMessage());
+            return false;
+        }
+    }
+
+    // Throws, leaving the whole group to be retried, if the bulkWrite fails or reports a write concern error
+    private void write(MongoCollection<Document> collection, List<Map.Entry<Key, PendingWrite>> writes) {
+        List<WriteModel<Document>> models = new ArrayList<>(writes.size());
+        for (Map.Entry<Key, PendingWrite> entry : writes) {
+            PendingWrite write = entry.getValue();
+            if (write.insert != null) {
+                models.add(new InsertOneModel<>(write.insert));
+            } else {
+                models.add(setModel(entry.getKey(), write.set));
+            }
+        }
+        Map<Integer, BulkWriteError> rejected = new HashMap<>();
+        for (BulkWriteError error : bulkWrite(collection, models)) {
+            rejected.put(error.getIndex(), error);
+        }
+
+        // Inserts that were already in the database, from a replay or a retried flush, only need their later $sets
+        Set<Integer> duplicates = new HashSet<>();
+        List<Integer> alreadyInserted = new ArrayList<>();
+        List<WriteModel<Document>> laterSets = new ArrayList<>();
+        for (Map.Entry<Integer, BulkWriteError> entry : new ArrayList<>(rejected.entrySet())) {
+            PendingWrite write = writes.get(entry.getKey()).getValue();
+            if (write.insert != null && isDuplicateId(entry.getValue())) {
+                rejected.remove(entry.getKey());
+                duplicates.add(entry.getKey());
+                if (!write.set.isEmpty()) {
+                    alreadyInserted.add(entry.getKey());
+                    laterSets.add(setModel(writes.get(entry.getKey()).getKey(), write.set));
+                }
+            }
+        }
+        if (!laterSets.isEmpty()) {
+            for (BulkWriteError error : bulkWrite(collection, laterSets)) {
+                rejected.put(alreadyInserted.get(error.getIndex()), error);
+            }
+        }
+
+        List<Document> inserted = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            PendingWrite write = writes.get(i).getValue();
+            if (write.insert != null && !duplicates.contains(i) && !rejected.containsKey(i)) {
+                inserted.add(write.insert);
+            }
+        }
+        if (!inserted.isEmpty()) {
+            try {
+                insertListener.accept(collection.getNamespace().getCollectionName(), inserted);
+            } catch (RuntimeException e) {
+                System.err.println("Write-behind insert listener failed: " + e.getMessage());
+            }
+        }
+
+        long now = System.nanoTime();
+        for (int i = 0; i < writes.size(); i++) {
+            PendingWrite write = writes.get(i).getValue();
+            BulkWriteError error = rejected.get(i);
+            if (error != null) {
+                metrics.recordFailed(write.submittedAt.size());
+                write.future.completeExceptionally(new IllegalStateException(
+                        "Write to " + writes.get(i).getKey() + " was rejected: " + error.getMessage()));
+                continue;
+            }
+            for (long submittedAt : write.submittedAt) {
+                metrics.recordCommitted(now - submittedAt);
+            }
+            write.future.complete(null);
+        }
+    }
+
+    // Writes the server rejected would be rejected again, so they are returned to fail on their own;
+    // anything else, including a write concern error, fails the whole bulkWrite
+    private static List<BulkWriteError> bulkWrite(MongoCollection<Document> collection, List<WriteModel<Document>> models) {
+        try {
+            collection.bulkWrite(models, UNORDERED);
+            return List.of();
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                throw e;
+            }
+            return e.getWriteErrors();
+        }
+    }
+
+    private static UpdateOneModel<Document> setModel(Key key, Document set) {
+        return new UpdateOneModel<>(Filters.eq("_id", key.id()), new Document("$set", set));
+    }
+
+    private static boolean isDuplicateId(BulkWriteError error) {
+        return error.getCode() == DUPLICATE_KEY && error.getMessage().contains("index: _id_ ");
+    }
+
+    // Puts a write that failed to flush back in front of anything submitted for the same document since
+    private void requeue(Key key, PendingWrite older) {
+        PendingWrite newer = pending.get(key);
+        if (newer != null) {
+            if (newer.insert != null) {
+                older.apply(newer.insert, null);
+            }
+            if (!newer.set.isEmpty()) {
+                older.apply(null, newer.set);
+            }
+            older.submittedAt.addAll(newer.submittedAt);
+            older.future.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    newer.future.complete(null);
+                } else {
+                    newer.future.completeExceptionally(error);
+                }
+            });
+        }
+        pending.put(key, older);
+    }
+
+    // Applies a $set field to a buffered insert, following dotted paths into copies of embedded documents
+    private static void setPath(Document document, String path, Object value) {
+        int dot = path.indexOf('.');
+        if (dot < 0) {
+            document.put(path, value);
+            return;
+        }
+        String head = path.substring(0, dot);
+        Document nested = document.get(head) instanceof Document existing ? new Document(existing) : new Document();
+        document.put(head, nested);
+        setPath(nested, path.substring(dot + 1), value);
+    }
+
+    /**
+     * Stops accepting writes and flushes what is buffered. If that flush fails the writes
+     * stay in the journal and are replayed on the next start.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Could not close write-behind journal: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.writebehind;
+
+import org.example.metrics.LatencyStats;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Figures for the write-behind buffer: how long a caller waited for its write to be journaled,
+ * how long until it was in the database, and how many writes each flush carried.
+ */
+public class WriteBehindMetrics {
+    private final LatencyStats acknowledged = new LatencyStats(Map.of("writeBehind", "acknowledged"));
+    private final LatencyStats committed = new LatencyStats(Map.of("writeBehind", "committed"));
+    private final LatencyStats flushes = new LatencyStats(Map.of("writeBehind", "flush"));
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder requeued = new LongAdder();
+    private final LongAdder heldBack = new LongAdder();
+    private final LatencyStats heldBackFor = new LatencyStats(Map.of("writeBehind", "heldBack"));
+
+    void recordAcknowledged(long nanos, boolean merged) {
+        acknowledged.record(nanos, 1, false);
+        submitted.increment();
+        if (merged) {
+            coalesced.increment();
+        }
+    }
+
+    void recordCommitted(long nanos) {
+        committed.record(nanos, 1, false);
+    }
+
+    void recordFlush(long nanos, int documents, boolean failedFlush) {
+        flushes.record(nanos, documents, failedFlush);
+    }
+
+    void recordFailed(int writes) {
+        failed.add(writes);
+    }
+
+    void recordRequeued(int documents) {
+        requeued.add(documents);
+    }
+
+    void recordHeldBack(long nanos) {
+        heldBack.increment();
+        heldBackFor.record(nanos, 1, false);
+    }
+
+    /**
+     * Writes that had to wait because the buffer held maxPending documents.
+     */
+    public long getHeldBack() {
+        return heldBack.sum();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public LatencyStats getAcknowledged() {
+        return acknowledged;
+    }
+
+    public LatencyStats getCommitted() {
+        return committed;
+    }
+
+    public LatencyStats getFlushes() {
+        return flushes;
+    }
+
+    public double getDocumentsPerFlush() {
+        long count = flushes.getCount();
+        return count == 0 ? 0 : (double) flushes.getDocuments() / count;
+    }
+
+    public void print() {
+        System.out.println("Write-behind metrics:");
+        System.out.println("  - Writes submitted: " + getSubmitted() + " (" + getCoalesced()
+                + " merged into a pending write)" + (failed.sum() > 0 ? ", failed: " + failed.sum() : ""));
+        System.out.println("  - Flushes: " + flushes.getCount() + ", documents per flush: "
+                + String.format("%.1f", getDocumentsPerFlush())
+                + (requeued.sum() > 0 ? ", documents requeued after failed flushes: " + requeued.sum() : ""));
+        printLatency("Acknowledged after (ms)", acknowledged);
+        printLatency("Committed after (ms)", committed);
+        printLatency("Flush bulkWrite (ms)", flushes);
+        if (heldBack.sum() > 0) {
+            System.out.println("  - Writes held back by a full buffer: " + heldBack.sum());
+            printLatency("Held back for (ms)", heldBackFor);
+        }
+    }
+
+    private static void printLatency(String label, LatencyStats stats) {
+        System.out.println("  - " + label + ": p50=" + String.format("%.2f", stats.getP50Millis())
+                + ", p99=" + String.format("%.2f", stats.getP99Millis())
+                + ", max=" + String.format("%.2f", stats.getMaxMillis()));
+    }
+}
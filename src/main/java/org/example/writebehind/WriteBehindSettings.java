@@ -0,0 +1,66 @@
+package org.example.writebehind;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Settings for a {@link WriteBehindBuffer}, read from "mongodb.writeBehind.*" properties.
+ *
+ * @param journal       base name of the journal segment files
+ * @param batchSize     pending documents that trigger a flush before the window ends
+ * @param flushInterval longest time a write waits in the buffer
+ * @param fsync         when the journal is forced to disk
+ * @param maxPending    documents buffered or being flushed at which new writes wait for room
+ */
+public record WriteBehindSettings(Path journal, int batchSize, Duration flushInterval, Fsync fsync, int maxPending) {
+    public static final Path DEFAULT_JOURNAL = Path.of("write-behind.journal");
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(50);
+    public static final int DEFAULT_MAX_PENDING = 10_000;
+
+    /**
+     * When journal appends reach the disk.
+     */
+    public enum Fsync {
+        /** Before each write returns; writers that arrive together share one fsync. */
+        ALWAYS,
+        /** Once per flush, before the buffered writes are sent; survives a process crash, not a power cut. */
+        BATCH,
+        /** Left to the operating system. */
+        NEVER
+    }
+
+    public WriteBehindSettings {
+        if (batchSize < 1 || maxPending < 1 || flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Write-behind batch size, max pending and flush interval must be positive");
+        }
+    }
+
+    public static WriteBehindSettings defaults() {
+        return new WriteBehindSettings(DEFAULT_JOURNAL, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, Fsync.BATCH,
+                DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Reads "mongodb.writeBehind.journal", "mongodb.writeBehind.batchSize",
+     * "mongodb.writeBehind.flushIntervalMs", "mongodb.writeBehind.fsync" (always, batch or never)
+     * and "mongodb.writeBehind.maxPending".
+     */
+    public static WriteBehindSettings fromProperties(Properties properties) {
+        return new WriteBehindSettings(
+                Path.of(properties.getProperty("mongodb.writeBehind.journal", DEFAULT_JOURNAL.toString()).trim()),
+                Integer.parseInt(properties.getProperty("mongodb.writeBehind.batchSize",
+                        String.valueOf(DEFAULT_BATCH_SIZE)).trim()),
+                Duration.ofMillis(Long.parseLong(properties.getProperty("mongodb.writeBehind.flushIntervalMs",
+                        String.valueOf(DEFAULT_FLUSH_INTERVAL.toMillis())).trim())),
+                Fsync.valueOf(properties.getProperty("mongodb.writeBehind.fsync", "batch").trim().toUpperCase(Locale.ROOT)),
+                Integer.parseInt(properties.getProperty("mongodb.writeBehind.maxPending",
+                        String.valueOf(DEFAULT_MAX_PENDING)).trim()));
+    }
+
+    public WriteBehindSettings withJournal(Path journal) {
+        return new WriteBehindSettings(journal, batchSize, flushInterval, fsync, maxPending);
+    }
+}
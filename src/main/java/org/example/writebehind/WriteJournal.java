@@ -0,0 +1,210 @@
+package org.example.writebehind;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of buffered writes, split into numbered segment files ("base.1", "base.2", ...).
+ * Each record is its BSON length, a CRC32 of the bytes and the BSON document. A new segment is started
+ * for every flush so a segment can be deleted as a whole once its writes are in the database; a torn
+ * record at the end of a segment, left by a crash during an append, is ignored on replay.
+ */
+class WriteJournal implements Closeable {
+    private static final int HEADER_BYTES = 8;
+
+    private final Path base;
+    private final Codec<Document> codec;
+    private final WriteBehindSettings.Fsync fsync;
+    private final Object syncLock = new Object();
+
+    // Guarded by this
+    private FileChannel channel;
+    private Path segment;
+    private long sequence;
+    private long segmentBytes;
+    private long appended;
+    private long forcedByRoll;
+
+    // Guarded by syncLock
+    private long synced;
+
+    WriteJournal(Path base, Codec<Document> codec, WriteBehindSettings.Fsync fsync) throws IOException {
+        this.base = base;
+        this.codec = codec;
+        this.fsync = fsync;
+        List<Path> existing = segments();
+        this.sequence = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1));
+        openSegment();
+    }
+
+    /**
+     * The segment files left by earlier runs, oldest first.
+     */
+    List<Path> segments() throws IOException {
+        Path directory = base.toAbsolutePath().getParent();
+        String prefix = base.getFileName() + ".";
+        // Files.list gives absolute paths, the open segment may be relative
+        Path open = segment == null ? null : segment.toAbsolutePath().normalize();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.length() > prefix.length()
+                                && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+                    })
+                    .filter(file -> !file.toAbsolutePath().normalize().equals(open))
+                    .sorted((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)))
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads every complete record of the given segments in order.
+     */
+    List<Document> read(List<Path> segments) throws IOException {
+        List<Document> records = new ArrayList<>();
+        for (Path file : segments) {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (bytes.remaining() >= HEADER_BYTES) {
+                int length = bytes.getInt();
+                int crc = bytes.getInt();
+                if (length < 5 || length > bytes.remaining() || crc != checksum(bytes.array(), bytes.position(), length)) {
+                    System.err.println("Ignoring torn write-behind journal record at the end of " + file);
+                    break;
+                }
+                records.add(new RawBsonDocument(bytes.array(), bytes.position(), length).decode(codec));
+                bytes.position(bytes.position() + length);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends a record to the current segment.
+     *
+     * @return the journal position after the record, for {@link #sync(long)}
+     */
+    synchronized long append(Document record) throws IOException {
+        ByteBuffer body = new RawBsonDocument(record, codec).getByteBuffer().asNIO();
+        int length = body.remaining();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(length);
+        header.putInt(checksum(body.array(), body.arrayOffset() + body.position(), length));
+        header.flip();
+        ByteBuffer[] buffers = {header, body};
+        while (header.hasRemaining() || body.hasRemaining()) {
+            channel.write(buffers);
+        }
+        segmentBytes += HEADER_BYTES + length;
+        appended += HEADER_BYTES + length;
+        return appended;
+    }
+
+    /**
+     * Forces the journal to disk up to the given position. Callers that arrive while another one is
+     * forcing wait for it and usually find their records already covered, so concurrent writers
+     * share one fsync.
+     */
+    void sync(long position) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                if (forcedByRoll >= position) {
+                    synced = Math.max(synced, forcedByRoll);
+                    return;
+                }
+                target = appended;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // Rolled in the meantime, which forced it
+            }
+            synced = target;
+        }
+    }
+
+    /**
+     * Closes the current segment, forcing it to disk unless fsync is off, and starts a new one.
+     *
+     * @return the closed segment, or null if nothing was written to it
+     */
+    synchronized Path roll() throws IOException {
+        Path closed = closeSegment();
+        openSegment();
+        return closed;
+    }
+
+    void delete(List<Path> segments) throws IOException {
+        for (Path file : segments) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+    }
+
+    private Path closeSegment() throws IOException {
+        if (fsync != WriteBehindSettings.Fsync.NEVER && segmentBytes > 0) {
+            channel.force(false);
+        }
+        forcedByRoll = appended;
+        channel.close();
+        if (segmentBytes == 0) {
+            Files.deleteIfExists(segment);
+            return null;
+        }
+        return segment;
+    }
+
+    private void openSegment() throws IOException {
+        sequence++;
+        segment = base.resolveSibling(base.getFileName() + "." + sequence);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+        if (fsync != WriteBehindSettings.Fsync.NEVER) {
+            syncDirectory();
+        }
+    }
+
+    // Forcing the file does not persist its directory entry; without this a new segment can vanish in a power cut
+    private void syncDirectory() throws IOException {
+        try (FileChannel directory = FileChannel.open(segment.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            // Directories cannot be opened or forced on this platform (Windows)
+        }
+    }
+
+    private long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}